@@ -0,0 +1,164 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * BenchNode:
+ * - MySQL 없이 띄우는 ServerMain 노드 (startServer를 부르지 않고 메모리 DB로 initComponents + ClusterBus)
+ * - 라우팅(sendToUsers, deliverLocal, 방 주인 요청)은 ServerMain 그대로, 바꾼 것은 바깥 두 곳뿐
+ *   - DB: MemoryDb (방 멤버/메시지를 JVM 안의 노드들이 같이 씀 = 같은 DB를 쓰는 것처럼)
+ *   - 클라이언트 소켓: BenchClient (보내는 프레임을 received에 기록)
+ * - deliverCalls: 다른 노드에서 이 노드로 넘어와 전달된 프레임 수 (유저 수 기준)
+ */
+class BenchNode extends ServerMain {
+    static final String SECRET = "bench-secret";
+    static final Map<Integer, Set<Integer>> ROOMS = new ConcurrentHashMap<>(); // roomId -> 멤버
+    private static final AtomicInteger messageIds = new AtomicInteger();
+
+    final int nodeId;
+    final ClusterBus bus;
+    final MemoryDb db = new MemoryDb();
+    final List<String> received = new CopyOnWriteArrayList<>(); // "userId frame"
+    final AtomicInteger deliverCalls = new AtomicInteger();
+    private final Map<Integer, BenchClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * @param ports 노드 i(1부터)의 클러스터 포트 = ports[i-1]
+     */
+    BenchNode(int nodeId, int[] ports) {
+        this.nodeId = nodeId;
+        StringBuilder peers = new StringBuilder();
+        for(int i=1; i<=ports.length; i++) {
+            if(i==nodeId) continue;
+            if(peers.length()>0) peers.append(',');
+            peers.append(i).append("@localhost:").append(ports[i-1]);
+        }
+        if(System.getProperty("cluster.secret")==null) System.setProperty("cluster.secret", SECRET);
+        enableCluster(nodeId, ports[nodeId-1], peers.toString());
+        initComponents(db);
+        bus = getCluster();
+    }
+
+    /**
+     * 이 노드에 유저 접속/종료 (ServerMain.setUserOnline/Offline 그대로)
+     */
+    void connect(int userId, boolean online) {
+        if(online) {
+            BenchClient c = new BenchClient(userId);
+            clients.put(userId, c);
+            setUserOnline(userId, c);
+        } else {
+            BenchClient c = clients.remove(userId);
+            if(c!=null) setUserOffline(userId, c);
+        }
+    }
+
+    @Override
+    public void deliverLocal(int userId, String ev) {
+        deliverCalls.incrementAndGet();
+        super.deliverLocal(userId, ev);
+    }
+
+    static void addRoom(int roomId, Integer... members) {
+        Set<Integer> s = ConcurrentHashMap.newKeySet();
+        Collections.addAll(s, members);
+        ROOMS.put(roomId, s);
+    }
+
+    /**
+     * 소켓 대신 받은 프레임을 기록
+     */
+    private class BenchClient extends ClientHandler {
+        private final int uid;
+
+        BenchClient(int uid) {
+            super(null, BenchNode.this);
+            this.uid = uid;
+            setUserId(uid);
+        }
+
+        @Override
+        public void sendMessage(String msg) {
+            received.add(uid+" "+msg);
+        }
+    }
+
+    /**
+     * 라우팅에 필요한 쿼리만 메모리로 (저장한 메시지 수는 노드별로 셈 -> 방 주인 노드 확인용)
+     */
+    static class MemoryDb extends DBManager {
+        private static final Map<Integer, Long> maxSeq = new ConcurrentHashMap<>();
+        final AtomicInteger saved = new AtomicInteger();
+
+        @Override
+        public JSONArray getMembersOfRoom(int roomId) {
+            JSONArray arr = new JSONArray();
+            for(int uid : ROOMS.getOrDefault(roomId, Collections.emptySet())) {
+                arr.put(new JSONObject().put("user_id", uid).put("nickname", "user"+uid));
+            }
+            return arr;
+        }
+
+        @Override
+        public String getNicknameByUserId(int userId) {
+            return "user"+userId;
+        }
+
+        @Override
+        public long getMaxSeq(int roomId) {
+            return maxSeq.getOrDefault(roomId, 0L);
+        }
+
+        @Override
+        public int saveMessage(int roomId, int senderId, String msg, long seq, long timestamp) {
+            // (room, seq) 유일 제약처럼
+            if(maxSeq.merge(roomId, seq, Math::max)!=seq) return -1;
+            saved.incrementAndGet();
+            return messageIds.incrementAndGet();
+        }
+
+        @Override
+        public List<Integer> getFollowerIds(int userId) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public List<long[]> getPendingScheduledMessages() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public boolean updateReadMarks(Map<Long, Integer> marks) {
+            return true;
+        }
+    }
+
+    /**
+     * 여러 노드를 띄우고 서로 연결될 때까지 기다림
+     * @return 연결되면 노드 배열 (nodes[i-1] = 노드 i), 시간 안에 안 되면 null
+     */
+    static BenchNode[] startCluster(int basePort, int count, long timeoutMs) throws Exception {
+        int[] ports = new int[count];
+        for(int i=0; i<count; i++) ports[i] = basePort+i;
+        BenchNode[] nodes = new BenchNode[count];
+        for(int i=0; i<count; i++) nodes[i] = new BenchNode(i+1, ports);
+        for(BenchNode n : nodes) n.bus.start();
+        long deadline = System.currentTimeMillis()+timeoutMs;
+        while(System.currentTimeMillis()<deadline) {
+            boolean up = true;
+            for(BenchNode n : nodes) up &= n.bus.upPeers().size()==count-1;
+            if(up) return nodes;
+            Thread.sleep(20);
+        }
+        return null;
+    }
+}
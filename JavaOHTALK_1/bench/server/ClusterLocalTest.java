@@ -0,0 +1,117 @@
+package server;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import org.json.JSONObject;
+
+/**
+ * ClusterLocalTest:
+ * - localhost에 노드 3개를 띄우고 ServerMain 라우팅 + ClusterBus 동작 확인 (MySQL 없음, BenchNode)
+ *   1) 노드끼리 모두 연결
+ *   2) 방 주인 노드가 모든 노드에서 같음
+ *   3) 접속 현황이 다른 노드에 전파 (수렴 시간 출력)
+ *   4) sendToUsers: 그 유저가 있는 노드에만 한 번씩, 멤버가 없는 노드로는 0 프레임
+ *   5) postMessage: 다른 노드에서 보내도 방 주인 노드가 seq를 매기고 저장, 멤버가 있는 노드에만 fan-out
+ *   6) 종료도 전파
+ * - 실패가 있으면 exit 1
+ *
+ * 실행:
+ *   javac -d out -cp json.jar $(find src/server bench/server -name '*.java')
+ *   java -cp out:json.jar server.ClusterLocalTest [basePort(기본 17000)]
+ */
+public class ClusterLocalTest {
+    private static final long WAIT_MS = 5000;
+    private static int failed = 0;
+
+    public static void main(String[] args) throws Exception {
+        int basePort = args.length>0 ? Integer.parseInt(args[0]) : 17000;
+        BenchNode[] nodes = BenchNode.startCluster(basePort, 3, WAIT_MS);
+        check("links up", nodes!=null);
+        if(nodes==null) System.exit(1);
+        BenchNode n1 = nodes[0], n2 = nodes[1], n3 = nodes[2];
+
+        boolean sameOwner = true;
+        for(int room=1; room<=1000; room++) {
+            int o = n1.bus.ownerOf(room);
+            sameOwner &= o==n2.bus.ownerOf(room) && o==n3.bus.ownerOf(room);
+        }
+        check("room owners agree", sameOwner);
+
+        // 101은 노드 1, 202는 노드 2, 노드 3에는 유저 없음
+        long t = System.nanoTime();
+        n1.connect(101, true);
+        n2.connect(202, true);
+        boolean converged = await(() -> at(n2, 101, 1) && at(n3, 101, 1) && at(n1, 202, 2) && at(n3, 202, 2));
+        check("presence converged in "+(System.nanoTime()-t)/1_000_000+"ms", converged);
+        check("no self entry", n1.bus.nodesOf(101).isEmpty() && n2.bus.nodesOf(202).isEmpty());
+
+        // n3에서 101, 202에게 (ServerMain.sendToUsers)
+        String ev = MessageProtocol.createEvent("typing", new JSONObject().put("room_id", 7));
+        n3.sendToUsers(Arrays.asList(101, 202), ev);
+        boolean routed = await(() -> n1.received.size()==1 && n2.received.size()==1);
+        Thread.sleep(100); // 잘못된 노드로 더 가는지
+        check("sendToUsers reaches only the nodes holding the users", routed
+            && n1.received.get(0).startsWith("101 ") && n2.received.get(0).startsWith("202 ")
+            && n1.deliverCalls.get()==1 && n2.deliverCalls.get()==1 && n3.deliverCalls.get()==0);
+
+        // 방 주인이 노드 3인 방 (멤버 101, 202) -> 노드 2에서 보냄
+        int room = 1;
+        while(n1.bus.ownerOf(room)!=3) room++;
+        BenchNode.addRoom(room, 101, 202);
+        reset(nodes);
+        JSONObject m = n2.postMessage(room, 202, "hello");
+        routed = await(() -> n1.received.size()==1 && n2.received.size()==1);
+        Thread.sleep(100);
+        check("post forwarded to owner node 3 (seq "+(m==null ? "-" : m.optLong("seq"))+")",
+            m!=null && m.getLong("seq")==1 && n3.db.saved.get()==1 && n1.db.saved.get()+n2.db.saved.get()==0);
+        check("new_message fanned out to member nodes only", routed
+            && n1.received.get(0).contains("\"new_message\"") && n2.received.get(0).contains("\"new_message\"")
+            && n3.deliverCalls.get()==0 && n3.received.isEmpty());
+
+        // 멤버가 노드 1에만 있는 방 -> 노드 2는 아무것도 받지 않음
+        int solo = room+1;
+        while(n1.bus.ownerOf(solo)!=3) solo++;
+        BenchNode.addRoom(solo, 101);
+        reset(nodes);
+        m = n1.postMessage(solo, 101, "only me");
+        routed = await(() -> n1.received.size()==1);
+        Thread.sleep(100);
+        check("room without members on a node sends it zero frames", m!=null && routed
+            && n2.deliverCalls.get()==0 && n2.received.isEmpty() && n3.deliverCalls.get()==0);
+
+        t = System.nanoTime();
+        n1.connect(101, false);
+        converged = await(() -> n2.bus.nodesOf(101).isEmpty() && n3.bus.nodesOf(101).isEmpty());
+        check("offline converged in "+(System.nanoTime()-t)/1_000_000+"ms", converged);
+
+        System.out.println(failed==0 ? "ALL PASSED" : failed+" FAILED");
+        System.exit(failed==0 ? 0 : 1);
+    }
+
+    private static void reset(BenchNode[] nodes) {
+        for(BenchNode n : nodes) {
+            n.received.clear();
+            n.deliverCalls.set(0);
+        }
+    }
+
+    private static boolean at(BenchNode n, int userId, int node) {
+        Set<Integer> s = n.bus.nodesOf(userId);
+        return s.size()==1 && s.contains(node);
+    }
+
+    private static boolean await(BooleanSupplier cond) throws InterruptedException {
+        long deadline = System.currentTimeMillis()+WAIT_MS;
+        while(System.currentTimeMillis()<deadline) {
+            if(cond.getAsBoolean()) return true;
+            Thread.sleep(5);
+        }
+        return cond.getAsBoolean();
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "PASS " : "FAIL ")+name);
+        if(!ok) failed++;
+    }
+}
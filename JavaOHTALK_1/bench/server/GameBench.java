@@ -0,0 +1,101 @@
+package server;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.json.JSONObject;
+
+/**
+ * GameBench:
+ * - GameEngine에 tap_race 세션 N개를 띄우고 DURATION_MS 동안 입력을 넣으면서
+ *   실제 tick 수(예정 대비), tick당 평균 시간, game-tick 스레드 CPU 사용량 측정
+ * - 세션/코어 = 세션 수 / 사용한 코어 수 (tick이 예정의 95%보다 적으면 못 따라간 것 -> behind)
+ * - 전송은 세지만 실제로 보내지 않음 (BenchServer) -> 게임 엔진 자체 비용
+ *
+ * 실행:
+ *   javac -d out -cp json.jar $(find src/server bench/server -name '*.java')
+ *   java -cp out:json.jar server.GameBench [sessions...(기본 1000 5000 20000)]
+ */
+public class GameBench {
+    private static final int PLAYERS = 4;
+    private static final long DURATION_MS = 5000;
+    private static final int TAP_ONE_IN = 8; // tick마다 플레이어당 1/8 확률로 tap (게임이 측정 중에 끝나지 않도록)
+    private static final Pattern STAT = Pattern.compile("ticks=(\\d+) avgTickUs=(\\d+)");
+
+    /**
+     * 이벤트를 보내지 않고 개수만 셈
+     */
+    private static class BenchServer extends ServerMain {
+        final LongAdder frames = new LongAdder();
+
+        @Override
+        public void sendToUsers(Collection<Integer> userIds, String ev) {
+            frames.add(userIds.size());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] counts = args.length>0 ? new int[args.length] : new int[]{1000, 5000, 20000};
+        for(int i=0; i<args.length; i++) counts[i] = Integer.parseInt(args[i]);
+        System.out.println("cores="+Runtime.getRuntime().availableProcessors()+" tick="+GameEngine.TICK_MS+"ms players="+PLAYERS);
+        System.out.println("sessions   ticks(%)  avgTickUs  cpuCores  sessions/core  frames/s");
+        for(int n : counts) run(n);
+        System.exit(0);
+    }
+
+    private static void run(int sessions) throws Exception {
+        BenchServer server = new BenchServer();
+        GameEngine games = new GameEngine(server);
+        for(int room=1; room<=sessions; room++) {
+            List<Integer> players = new ArrayList<>();
+            for(int p=0; p<PLAYERS; p++) players.add(room*PLAYERS+p);
+            games.start(room, "tap_race", players);
+        }
+        JSONObject tap = new JSONObject().put("action", "tap");
+        long cpu0 = tickCpuNanos();
+        long start = System.currentTimeMillis();
+        long frames0 = server.frames.sum();
+        while(System.currentTimeMillis()-start<DURATION_MS) {
+            long t = System.currentTimeMillis();
+            for(int room=1; room<=sessions; room++) {
+                for(int p=0; p<PLAYERS; p++) {
+                    if(Math.floorMod(room*31+p+t/GameEngine.TICK_MS, TAP_ONE_IN)==0) games.input(room, room*PLAYERS+p, tap);
+                }
+            }
+            long sleep = GameEngine.TICK_MS-(System.currentTimeMillis()-t);
+            if(sleep>0) Thread.sleep(sleep);
+        }
+        long elapsed = System.currentTimeMillis()-start;
+        double cores = (tickCpuNanos()-cpu0)/(elapsed*1e6);
+        long frames = server.frames.sum()-frames0;
+
+        Matcher m = STAT.matcher(games.getStats());
+        long ticks = m.find() ? Long.parseLong(m.group(1)) : 0;
+        long avgUs = m.find(0) ? Long.parseLong(m.group(2)) : 0;
+        double pct = ticks*100/((double)sessions*elapsed/GameEngine.TICK_MS);
+        System.out.printf("%8d %9.1f %10d %9.2f %14s %9.0f%n", sessions, pct, avgUs, cores,
+            pct<95 ? "behind" : String.format("%.0f", sessions/Math.max(cores, 0.01)), frames*1000.0/elapsed);
+        for(int room=1; room<=sessions; room++) games.stop(room);
+    }
+
+    /**
+     * game-tick 스레드들의 CPU 시간 합
+     */
+    private static long tickCpuNanos() {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        long sum = 0;
+        for(ThreadInfo ti : mx.getThreadInfo(mx.getAllThreadIds())) {
+            if(ti!=null && ti.getThreadName().equals("game-tick")) {
+                long c = mx.getThreadCpuTime(ti.getThreadId());
+                if(c>0) sum += c;
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,99 @@
+package server;
+
+import org.json.JSONArray;
+
+/**
+ * PresenceBench:
+ * 1) ClusterPresence 반영 처리량 (네트워크 없음): BATCH개씩 묶인 online/offline 프레임을 applyUpdate
+ *    + nodesOf 조회 시간
+ * 2) 대량 재접속 (localhost 노드 2개, BenchNode): 한 노드에 USERS명이 한꺼번에 접속/종료/재접속했을 때
+ *    다른 노드가 전부 반영하기까지 걸린 시간 (수렴 시간 목표: BATCH_MS + 네트워크 1회)
+ *    접속/종료는 ServerMain.setUserOnline/Offline 그대로 (친구 알림 등 접속 처리 비용 포함)
+ *
+ * 실행:
+ *   javac -d out -cp json.jar $(find src/server bench/server -name '*.java')
+ *   java -cp out:json.jar server.PresenceBench [users(기본 100000)] [basePort(기본 17100)]
+ */
+public class PresenceBench {
+    private static final int BATCH = 1000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length>0 ? Integer.parseInt(args[0]) : 100_000;
+        int basePort = args.length>1 ? Integer.parseInt(args[1]) : 17100;
+        registryThroughput(users);
+        massReconnect(users, basePort);
+        System.exit(0);
+    }
+
+    private static void registryThroughput(int users) {
+        JSONArray[] batches = new JSONArray[(users+BATCH-1)/BATCH];
+        for(int b=0; b<batches.length; b++) {
+            batches[b] = new JSONArray();
+            for(int u=b*BATCH; u<Math.min(users, (b+1)*BATCH); u++) batches[b].put(u);
+        }
+        System.out.println("registry: "+users+" users, "+BATCH+" per frame");
+        for(int round=0; round<ROUNDS; round++) {
+            ClusterPresence reg = new ClusterPresence();
+            long seq = 0;
+            long t = System.nanoTime();
+            for(JSONArray b : batches) reg.applyUpdate(2, 1, ++seq, b, null, false);
+            long onNs = System.nanoTime()-t;
+
+            t = System.nanoTime();
+            long found = 0;
+            for(int u=0; u<users; u++) found += reg.nodesOf(u).size();
+            long lookupNs = System.nanoTime()-t;
+
+            t = System.nanoTime();
+            for(JSONArray b : batches) reg.applyUpdate(2, 1, ++seq, null, b, false);
+            long offNs = System.nanoTime()-t;
+            System.out.printf("  online %,.0f/s   offline %,.0f/s   lookup %.0fns (found %d)%n",
+                users/(onNs/1e9), users/(offNs/1e9), lookupNs/(double)users, found);
+        }
+    }
+
+    private static void massReconnect(int users, int basePort) throws Exception {
+        BenchNode[] nodes = BenchNode.startCluster(basePort, 2, 5000);
+        if(nodes==null) {
+            System.out.println("mass reconnect: nodes did not connect");
+            return;
+        }
+        BenchNode n1 = nodes[0], n2 = nodes[1];
+        System.out.println("mass reconnect over the bus: "+users+" users on node 1");
+        for(int round=0; round<ROUNDS; round++) {
+            long t = System.nanoTime();
+            for(int u=0; u<users; u++) n1.connect(u, true);
+            long onMs = awaitSeen(n2, users, true);
+            long online = (System.nanoTime()-t)/1_000_000;
+
+            t = System.nanoTime();
+            for(int u=0; u<users; u++) n1.connect(u, false);
+            long offMs = awaitSeen(n2, users, false);
+            long offline = (System.nanoTime()-t)/1_000_000;
+            if(onMs<0 || offMs<0) {
+                System.out.println("  did not converge ("+n2.bus.getStats()+")");
+                return;
+            }
+            System.out.printf("  connect all: %dms (%,.0f updates/s)   disconnect all: %dms   [%s]%n",
+                online, users/(online/1000.0), offline, n2.bus.getStats());
+        }
+    }
+
+    /**
+     * n에서 모든 유저가 보이게(online) / 안 보이게 될 때까지 대기
+     * @return 대기 시간 ms, 30초 안에 안 되면 -1
+     */
+    private static long awaitSeen(BenchNode n, int users, boolean online) throws InterruptedException {
+        long t = System.currentTimeMillis();
+        while(System.currentTimeMillis()-t<30_000) {
+            int seen = 0;
+            for(int u=0; u<users; u++) {
+                if(!n.bus.nodesOf(u).isEmpty()) seen++;
+            }
+            if(seen==(online ? users : 0)) return System.currentTimeMillis()-t;
+            Thread.sleep(1);
+        }
+        return -1;
+    }
+}
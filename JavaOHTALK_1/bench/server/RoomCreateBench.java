@@ -0,0 +1,175 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * RoomCreateBench:
+ * - 채팅방 생성 비용 비교 (멤버 10 / 100 / 1000명)
+ *   old: 기준 코드 그대로 (아래 old* 메서드에 복사): 방 INSERT + 멤버마다 SELECT+INSERT
+ *        + 멤버마다 chat_rooms_updated용 방 목록 조회 (방마다 멤버 조회, N+1)
+ *   new: 지금 서버가 쓰는 경로: createChatRoomWithMembers(트랜잭션 1회, 다중 INSERT)
+ *        + room_added용 getChatRoomInfo 한 번
+ * - 실제 MySQL이 필요함 (Javaoh.sql 스키마), bench_0 ~ bench_999 유저를 만들어 두고 재사용, 만든 방은 지움
+ *
+ * 실행 (src와 bench를 같이 컴파일, MySQL 드라이버 필요):
+ *   javac -d out -cp json.jar:mysql.jar $(find src/server bench/server -name '*.java')
+ *   java -cp out:json.jar:mysql.jar server.RoomCreateBench [jdbcUrl] user pass
+ */
+public class RoomCreateBench {
+    private static final int[] SIZES = {10, 100, 1000};
+    private static final int WARMUP = 2;
+
+    public static void main(String[] args) throws Exception {
+        String url  = args.length>2 ? args[0] : "jdbc:mysql://localhost:3306/chat_app?useSSL=false&serverTimezone=UTC";
+        String user = args.length>2 ? args[1] : args[0];
+        String pass = args.length>2 ? args[2] : args[1];
+        DBManager db = new DBManager(url, user, pass);
+
+        List<Integer> users = benchUsers(db, SIZES[SIZES.length-1]);
+        System.out.println("members   old(ms)   new(ms)   speedup");
+        for(int n : SIZES) {
+            List<Integer> members = users.subList(0, n);
+            int reps = n>=1000 ? 5 : 20;
+            for(int i=0; i<WARMUP; i++) {
+                runOld(db, members);
+                runNew(db, members);
+            }
+            double oldMs = 0, newMs = 0;
+            for(int i=0; i<reps; i++) {
+                oldMs += runOld(db, members);
+                newMs += runNew(db, members);
+            }
+            oldMs /= reps;
+            newMs /= reps;
+            System.out.printf("%7d %9.1f %9.1f %8.1fx%n", n, oldMs, newMs, oldMs/newMs);
+        }
+        db.close();
+    }
+
+    /**
+     * 예전 방식 (기준 create_chat_room): 멤버마다 SELECT+INSERT, 멤버마다 pushChatRoomsUpdated의 방 목록 조회
+     */
+    private static double runOld(DBManager db, List<Integer> members) {
+        Connection conn = db.getConnection();
+        long t = System.nanoTime();
+        int roomId = oldCreateChatRoom(conn, "bench", "group");
+        for(int uid : members) oldAddChatRoomMember(conn, roomId, uid);
+        for(int uid : members) oldGetChatRoomsForUser(conn, uid);
+        double ms = (System.nanoTime()-t)/1e6;
+        db.deleteChatRoom(roomId);
+        return ms;
+    }
+
+    /**
+     * 지금 방식: 트랜잭션 1회 + notifyRoomAdded의 방 정보 조회 1회
+     */
+    private static double runNew(DBManager db, List<Integer> members) {
+        long t = System.nanoTime();
+        int roomId = db.createChatRoomWithMembers("bench", "group", members);
+        db.getChatRoomInfo(roomId);
+        double ms = (System.nanoTime()-t)/1e6;
+        db.deleteChatRoom(roomId);
+        return ms;
+    }
+
+    // ------------------------------------------------
+    // 기준 코드 (DBManager에서 바뀌기 전 그대로)
+    // ------------------------------------------------
+
+    private static int oldCreateChatRoom(Connection conn, String name, String type) {
+        String sql = "INSERT INTO chat_rooms(name,type) VALUES(?,?)";
+        try(PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, name);
+            ps.setString(2, type);
+            ps.executeUpdate();
+            ResultSet rs = ps.getGeneratedKeys();
+            if(rs.next()) return rs.getInt(1);
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    private static boolean oldAddChatRoomMember(Connection conn, int roomId, int userId) {
+        String chk = "SELECT id FROM chat_room_members WHERE room_id=? AND user_id=?";
+        try(PreparedStatement c = conn.prepareStatement(chk)) {
+            c.setInt(1, roomId);
+            c.setInt(2, userId);
+            ResultSet r = c.executeQuery();
+            if(r.next()) return false;
+        } catch(Exception e) { e.printStackTrace(); }
+
+        String sql = "INSERT INTO chat_room_members(room_id,user_id) VALUES(?,?)";
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, roomId);
+            ps.setInt(2, userId);
+            ps.executeUpdate();
+            return true;
+        } catch(Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private static JSONArray oldGetMembersOfRoom(Connection conn, int roomId) {
+        String sql = "SELECT u.id,u.nickname "
+                   + "FROM chat_room_members m JOIN users u ON m.user_id=u.id "
+                   + "WHERE m.room_id=?";
+        JSONArray arr = new JSONArray();
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, roomId);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                JSONObject mem = new JSONObject();
+                mem.put("user_id", rs.getInt("id"));
+                mem.put("nickname", rs.getString("nickname"));
+                arr.put(mem);
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return arr;
+    }
+
+    private static JSONArray oldGetChatRoomsForUser(Connection conn, int userId) {
+        String sql = "SELECT c.id,c.name,c.type "
+                   + "FROM chat_room_members m JOIN chat_rooms c ON m.room_id=c.id "
+                   + "WHERE m.user_id=?";
+        JSONArray arr = new JSONArray();
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                JSONObject room = new JSONObject();
+                room.put("id", rs.getInt("id"));
+                room.put("name", rs.getString("name"));
+                room.put("type", rs.getString("type"));
+                room.put("participants", oldGetMembersOfRoom(conn, rs.getInt("id")));
+                arr.put(room);
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return arr;
+    }
+
+    /**
+     * bench_0 ~ bench_(n-1) 유저 ID (없으면 만듦)
+     */
+    private static List<Integer> benchUsers(DBManager db, int n) {
+        List<Integer> ids = new ArrayList<>();
+        for(int i=0; i<n; i++) {
+            String name = "bench_"+i;
+            db.registerUser(name, "bench", name);
+            ids.add(db.authenticate(name, "bench").getInt("id"));
+        }
+        return ids;
+    }
+}
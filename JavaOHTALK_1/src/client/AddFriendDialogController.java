@@ -2,7 +2,6 @@ package client;
 
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.application.Platform;
 import org.json.JSONObject;
 import javafx.stage.Stage;
 import server.MessageProtocol;
@@ -11,18 +10,18 @@ import server.MessageProtocol;
  * "친구 추가" 다이얼로그 컨트롤러 클래스.
  * 사용자 입력을 처리하고 서버와 통신하며 UI를 업데이트합니다.
  */
-public class AddFriendDialogController implements MessageListener {
+public class AddFriendDialogController {
 
     @FXML private TextField usernameField; // 사용자 이름 입력 필드
     @FXML private Label statusLabel;      // 상태를 표시하는 라벨
 
     /**
-     * 초기화 메서드: 메시지 리스너를 등록합니다.
+     * 초기화 메서드: 서버 응답을 구독합니다.
      */
     @FXML
     public void initialize() {
-        // 네트워크 클라이언트에 메시지 리스너를 추가
-        MainApp.getNetworkClient().addMessageListener(this);
+        // 창이 닫히면 자동 해제
+        MainApp.getNetworkClient().subscribe(usernameField, this::onServerMessage, "add_friend");
     }
 
     /**
@@ -55,29 +54,23 @@ public class AddFriendDialogController implements MessageListener {
      * 서버에서 수신한 메시지를 처리합니다.
      * 메시지 유형에 따라 UI를 업데이트합니다.
      */
-    @Override
-    public void onMessageReceived(String message) {
-        // UI 스레드에서 실행되도록 설정
-        Platform.runLater(() -> {
-            // JSON 형식으로 수신 메시지를 파싱
-            JSONObject resp = new JSONObject(message);
-            String type = resp.getString("type");
-            String status = resp.optString("status", "fail");
-            JSONObject data = resp.optJSONObject("data");
+    private void onServerMessage(JSONObject resp) {
+        String type = resp.getString("type");
+        String status = resp.optString("status", "fail");
+        JSONObject data = resp.optJSONObject("data");
 
-            // 친구 추가 응답 메시지를 처리
-            if (type.equals("add_friend")) {
-                if (status.equals("ok")) {
-                    // 성공 메시지 표시 및 창 닫기
-                    statusLabel.setText("친구 추가 성공!");
-                    Stage stage = (Stage) usernameField.getScene().getWindow();
-                    stage.close();
-                } else {
-                    // 실패 사유를 사용자에게 표시
-                    String reason = data.optString("reason", "친구 추가 실패");
-                    statusLabel.setText("추가 실패: " + reason);
-                }
+        // 친구 추가 응답 메시지를 처리
+        if (type.equals("add_friend")) {
+            if (status.equals("ok")) {
+                // 성공 메시지 표시 및 창 닫기
+                statusLabel.setText("친구 추가 성공!");
+                Stage stage = (Stage) usernameField.getScene().getWindow();
+                stage.close();
+            } else {
+                // 실패 사유를 사용자에게 표시
+                String reason = data.optString("reason", "친구 추가 실패");
+                statusLabel.setText("추가 실패: " + reason);
             }
-        });
+        }
     }
 }
@@ -0,0 +1,63 @@
+package client;
+
+import org.json.JSONObject;
+
+/**
+ * ChatMessage:
+ * - 채팅 메시지 한 개 (화면 노드 없이 데이터만).
+ * - ListView<ChatMessage>에서 사용되며, 화면에 보이는 줄만 ChatMessageCell이 노드로 그립니다.
+ */
+public class ChatMessage {
+    private final int id;                // 메시지 ID (방 안에서 증가)
+    private final int senderId;          // 보낸 사람 ID
+    private final String senderNickname; // 보낸 사람 닉네임
+    private final String text;           // 메시지 내용 (<EMOJI:xxx>, <IMAGE:해시> 태그 포함)
+
+    public ChatMessage(int id, int senderId, String senderNickname, String text) {
+        this.id = id;
+        this.senderId = senderId;
+        this.senderNickname = senderNickname;
+        this.text = text;
+    }
+
+    /**
+     * 서버 메시지 JSON (load_messages, new_message, sync_messages)에서 생성
+     */
+    public static ChatMessage fromJson(JSONObject m) {
+        return new ChatMessage(m.optInt("id", 0), m.optInt("sender_id", 0),
+                m.optString("sender_nickname", "?"), m.optString("message", ""));
+    }
+
+    /**
+     * 로컬 기록 캐시(HistoryCache)에 저장할 형식 (fromJson과 같은 키)
+     */
+    public JSONObject toJson() {
+        JSONObject m = new JSONObject();
+        m.put("id", id);
+        m.put("sender_id", senderId);
+        m.put("sender_nickname", senderNickname);
+        m.put("message", text);
+        return m;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getSenderId() {
+        return senderId;
+    }
+
+    public String getSenderNickname() {
+        return senderNickname;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return senderNickname + ": " + text;
+    }
+}
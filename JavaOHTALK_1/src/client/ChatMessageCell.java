@@ -0,0 +1,158 @@
+package client;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
+import javafx.stage.Stage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ChatMessageCell:
+ * ListView<ChatMessage>에서 사용할 커스텀 ListCell 클래스.
+ * - ListView는 화면에 보이는 줄 수만큼만 셀을 만들고 스크롤할 때 재사용하므로,
+ *   메시지 노드(TextFlow, ImageView)는 보이는 메시지에 대해서만 만들어집니다.
+ * - <EMOJI:xxx>는 EmojiCache 이미지, <IMAGE:해시>는 썸네일로 표시 (클릭하면 원본).
+ * - 셀이 표시될 때 onShow(index)를 호출 -> 목록 끝에 닿으면 다음 페이지를 요청하는 데 사용.
+ */
+public class ChatMessageCell extends ListCell<ChatMessage> {
+    private static final int CHAT_THUMB_SIZE = 256; // 서버 ThumbnailCache.SIZES 중 하나
+    private static final int MAX_THUMB_IMAGES = 64; // decode된 썸네일을 들고 있을 개수
+    // 메시지 안의 <EMOJI:xxx>, <IMAGE:해시> 태그 (한 번만 컴파일)
+    private static final Pattern TOKEN = Pattern.compile("<EMOJI:([^>]+)>|<IMAGE:([0-9a-f]{64})>");
+
+    // 썸네일 해시 -> 이미지 (셀을 재사용할 때마다 다시 decode하지 않도록, FX 스레드에서만 사용)
+    private static final Map<String, Image> thumbImages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+            return size() > MAX_THUMB_IMAGES;
+        }
+    };
+
+    private final IntConsumer onShow; // 셀에 메시지가 표시될 때 (목록 index)
+    private ChatMessage shown;        // 지금 그려져 있는 메시지 (같은 메시지면 다시 그리지 않음)
+
+    public ChatMessageCell(IntConsumer onShow) {
+        this.onShow = onShow;
+        setStyle("-fx-padding:5;");
+    }
+
+    /**
+     * 셀의 내용을 업데이트합니다.
+     *
+     * @param item  현재 셀에 할당된 메시지
+     * @param empty 셀이 비어 있는지 여부
+     */
+    @Override
+    protected void updateItem(ChatMessage item, boolean empty) {
+        super.updateItem(item, empty);
+        setText(null);
+
+        if (empty || item == null) {
+            shown = null;
+            setGraphic(null);
+            return;
+        }
+        if (item != shown) {
+            shown = item;
+            setGraphic(createFlow(item.getSenderNickname(), item.getText()));
+        }
+        onShow.accept(getIndex());
+    }
+
+    /**
+     * 메시지에 포함된 <EMOJI:xxx>, <IMAGE:해시> 태그를 이미지로 변환하여 표시합니다.
+     * - <IMAGE:해시>는 자리만 잡아 두고 파일 채널로 받아지면 표시
+     *
+     * @param sender 메시지를 보낸 사람
+     * @param text   메시지 내용
+     * @return 변환된 메시지
+     */
+    private TextFlow createFlow(String sender, String text) {
+        TextFlow flow = new TextFlow();
+        flow.getChildren().add(new Label(sender + ": ")); // 발신자 표시
+
+        Matcher m = TOKEN.matcher(text);
+
+        int lastEnd = 0;
+        while (m.find()) {
+            // 태그 이전의 텍스트 추가
+            if (m.start() > lastEnd) {
+                flow.getChildren().add(new Text(text.substring(lastEnd, m.start())));
+            }
+            if (m.group(2) != null) {
+                flow.getChildren().add(createImageView(m.group(2)));
+                lastEnd = m.end();
+                continue;
+            }
+            String emojiName = m.group(1);
+            Image img = EmojiCache.get(emojiName, EmojiCache.CHAT_SIZE);
+            if (img != null) {
+                // 같은 이모티콘은 decode된 이미지 하나를 공유
+                ImageView iv = new ImageView(img);
+                iv.setFitWidth(EmojiCache.CHAT_SIZE);
+                iv.setFitHeight(EmojiCache.CHAT_SIZE);
+                flow.getChildren().add(iv);
+            } else {
+                // 없는 이모티콘이면 태그 그대로 표시
+                flow.getChildren().add(new Text("<EMOJI:" + emojiName + ">"));
+            }
+            lastEnd = m.end();
+        }
+        // 태그 이후의 텍스트 추가
+        if (lastEnd < text.length()) {
+            flow.getChildren().add(new Text(text.substring(lastEnd)));
+        }
+        return flow;
+    }
+
+    /**
+     * 첨부 이미지 (받는 동안은 빈 자리, 목록에는 썸네일만 / 클릭하면 원본)
+     */
+    private ImageView createImageView(String hash) {
+        ImageView iv = new ImageView();
+        iv.setFitWidth(200);
+        iv.setPreserveRatio(true);
+        Image cached = thumbImages.get(hash);
+        if (cached != null) {
+            iv.setImage(cached);
+        } else {
+            MainApp.getFileClient().downloadThumb(FileTransferClient.thumbId(hash, CHAT_THUMB_SIZE)).thenAccept(path ->
+                    Platform.runLater(() -> {
+                        Image img = thumbImages.computeIfAbsent(hash, h -> new Image(path.toUri().toString(), true));
+                        iv.setImage(img);
+                    }));
+        }
+        iv.setOnMouseClicked(e -> showOriginal(hash));
+        return iv;
+    }
+
+    /**
+     * 원본 이미지를 새 창으로
+     */
+    private static void showOriginal(String hash) {
+        MainApp.getFileClient().download(hash).whenComplete((path, ex) -> Platform.runLater(() -> {
+            if (ex != null) {
+                MainApp.showErrorDialog("이미지 로딩 실패");
+                return;
+            }
+            ImageView iv = new ImageView(new Image(path.toUri().toString(), true));
+            iv.setPreserveRatio(true);
+            iv.setFitWidth(800);
+            Stage st = new Stage();
+            st.setTitle("Image");
+            st.setScene(new Scene(new StackPane(iv)));
+            st.show();
+        }));
+    }
+}
@@ -8,36 +8,70 @@ import javafx.scene.control.*;
 import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
-import javafx.scene.text.TextFlow;
-import javafx.scene.text.Text;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * ChatRoomController:
  * 채팅방 내부에서 메시지 송수신과 UI 업데이트를 담당하는 컨트롤러 클래스.
  * - 이모티콘 삽입, 메시지 전송, 방 나가기 등 다양한 기능 포함.
+ * - 메시지 목록은 ChatMessage(데이터)만 들고, 보이는 줄만 ChatMessageCell이 그림
+ * - 메모리에는 최대 MAX_WINDOW개만 두고, 위/아래 끝까지 스크롤하면 load_messages로 PAGE_SIZE개씩 더 받음
  */
-public class ChatRoomController implements MessageListener {
+public class ChatRoomController {
 
     @FXML private Label roomNameLabel;      // 채팅방 이름을 표시하는 라벨
-    @FXML private ListView<Label> messageListView; // 메시지를 표시하는 리스트뷰
+    @FXML private ListView<ChatMessage> messageListView; // 메시지를 표시하는 리스트뷰
     @FXML private TextField messageField;  // 메시지 입력 필드
     @FXML private Button leaveButton;      // 방 나가기 버튼
+    @FXML private Label typingLabel;       // "OO님이 입력 중..." 표시
 
     private int chatRoomId; // 현재 채팅방의 ID
+    private int lastMarkedId = 0; // 서버에 마지막으로 보낸 읽음 위치
+    private long lastTypingSent = 0; // 마지막 typing_start 전송 시각 (키 입력마다 보내지 않도록)
+    private static final long TYPING_RESEND_MS = 1000;
+    private static final int PAGE_SIZE = 50;   // 서버 load_messages 한 페이지
+    private static final int MAX_WINDOW = 300; // 목록에 들고 있는 최대 메시지 수 (넘으면 반대쪽 끝부터 버림)
+
+    private boolean hasOlder = false;    // 목록 위쪽에 더 오래된 메시지가 있음
+    private boolean hasNewer = false;    // 목록 아래쪽을 버렸음 (그 동안 온 메시지는 내려오면 다시 받음)
+    private boolean loadingPage = false; // 이전/다음 페이지 요청 중
+    private boolean ready = false;       // 첫 페이지의 맨 아래가 표시된 뒤부터 페이지 요청
+    private boolean catchingUp = false;  // 로컬 캐시를 표시하고 그 이후 메시지를 받는 중
+    private boolean closed = false;      // 창이 닫힌 뒤 도착한 응답은 무시
+    // 아래쪽을 받는 동안(hasNewer) 도착한 실시간 메시지 (응답과 엇갈려 빠지지 않도록, 최근 PAGE_SIZE개)
+    private final List<ChatMessage> pendingLive = new ArrayList<>();
 
     /**
      * 컨트롤러 초기화 메서드
-     * - 메시지 리스너를 등록합니다.
+     * - 입력 중 표시, 메시지 셀을 설정합니다. (서버 구독은 방 ID가 정해지는 setChatRoomId에서)
      */
     @FXML
     public void initialize() {
-        MainApp.getNetworkClient().addMessageListener(this);
+        messageListView.setCellFactory(lv -> new ChatMessageCell(this::onCellShown));
+        // 입력 중 표시: 글자가 있으면 1초에 한 번 typing_start, 비우면 typing_stop
+        messageField.textProperty().addListener((obs, oldText, newText) -> {
+            if (newText.isEmpty()) {
+                if (lastTypingSent > 0) sendTyping("typing_stop");
+                lastTypingSent = 0;
+            } else if (System.currentTimeMillis() - lastTypingSent >= TYPING_RESEND_MS) {
+                lastTypingSent = System.currentTimeMillis();
+                sendTyping("typing_start");
+            }
+        });
+    }
+
+    /**
+     * 입력 중 상태를 서버에 알립니다. (응답 없음)
+     */
+    private void sendTyping(String type) {
+        JSONObject data = new JSONObject();
+        data.put("room_id", chatRoomId);
+        MainApp.getNetworkClient().sendMessage(MessageProtocol.createRequest(type, data));
     }
 
     /**
@@ -47,17 +81,180 @@ public class ChatRoomController implements MessageListener {
      */
     public void setChatRoomId(int roomId) {
         this.chatRoomId = roomId;
-        loadMessages(); // 서버로부터 메시지를 로드
+        SyncState.openRoom(roomId); // 재접속 sync 대상
+        // 이 방 이벤트만 받음 (창이 닫히면 자동 해제)
+        NetworkClient net = MainApp.getNetworkClient();
+        net.subscribe(messageField, roomId, this::onServerMessage,
+                "new_message", "sync_messages", "typing", "leave_chat_room");
+        // sync 응답은 모든 방 창이 자기 방이 left_rooms에 있는지 확인 (load_messages/send_message 응답은 request()로 이 창에만)
+        net.subscribe(messageField, this::onServerMessage, "sync");
+        openFromCache(); // 로컬 기록을 먼저 표시하고 그 이후만 서버에서
         roomNameLabel.setText("Chat Room #" + roomId); // 채팅방 이름 설정
     }
 
+    /**
+     * 창이 닫힐 때 호출됩니다. (재접속 sync 대상에서 제외)
+     */
+    public void onClosed() {
+        closed = true;
+        SyncState.closeRoom(chatRoomId);
+    }
+
+    /**
+     * 이 창의 요청을 보냅니다. 응답은 request_id로 이 창에만 옵니다. (다른 방 창이 이 방의 실패 응답을 받지 않음)
+     */
+    private void request(String type, JSONObject data) {
+        MainApp.getNetworkClient().request(type, data).whenComplete((resp, ex) -> Platform.runLater(() -> {
+            if (closed) return;
+            if (resp != null) {
+                onServerMessage(resp);
+            } else if (type.equals("load_messages")) {
+                loadingPage = false; // 시간 초과/연결 끊김 -> 다음에 셀이 보일 때 다시 요청
+            } else if (type.equals("send_message")) {
+                MainApp.showErrorDialog("메시지 전송 실패: 서버 응답 없음");
+            }
+        }));
+    }
+
+    /**
+     * 로컬 기록 캐시가 있으면 바로 표시하고 마지막 캐시 ID 이후만 요청, 없으면 최신 페이지를 요청합니다.
+     */
+    private void openFromCache() {
+        hasNewer = true; // 첫 표시 전에 온 실시간 메시지는 pendingLive로
+        loadingPage = true;
+        HistoryCache cache = MainApp.getHistoryCache();
+        if (cache == null) {
+            loadMessages();
+            return;
+        }
+        cache.load(chatRoomId).whenComplete((cached, ex) -> Platform.runLater(() -> {
+            if (ex != null || cached.isEmpty()) {
+                loadMessages();
+                return;
+            }
+            messageListView.getItems().setAll(cached);
+            hasOlder = true;
+            catchingUp = true;
+            messageListView.scrollTo(cached.size() - 1);
+            loadPage("after_id", cached.get(cached.size() - 1).getId());
+        }));
+    }
+
     /**
      * 서버에 메시지 로드 요청을 전송합니다.
      */
     private void loadMessages() {
         JSONObject data = new JSONObject();
         data.put("room_id", chatRoomId);
-        String req = MessageProtocol.createRequest("load_messages", data);
+        request("load_messages", data);
+    }
+
+    /**
+     * 이전/다음 페이지를 요청합니다.
+     *
+     * @param key "before_id" (위로) 또는 "after_id" (아래로)
+     * @param id  목록 끝에 있는 메시지 ID
+     */
+    private void loadPage(String key, int id) {
+        loadingPage = true;
+        JSONObject data = new JSONObject();
+        data.put("room_id", chatRoomId);
+        data.put(key, id);
+        request("load_messages", data);
+    }
+
+    /**
+     * 셀이 표시될 때 호출됩니다. 목록 맨 위/맨 아래가 보이면 다음 페이지를 요청.
+     *
+     * @param index 표시된 셀의 목록 index
+     */
+    private void onCellShown(int index) {
+        List<ChatMessage> items = messageListView.getItems();
+        if (!ready) {
+            // 첫 페이지는 맨 아래로 스크롤해서 보여 주므로, 그 전의 배치 중에 위 페이지를 요청하지 않음
+            if (index == items.size() - 1) ready = true;
+            return;
+        }
+        if (loadingPage) return;
+        if (index == 0 && hasOlder) {
+            loadPage("before_id", items.get(0).getId());
+        } else if (index == items.size() - 1 && hasNewer) {
+            loadPage("after_id", items.get(items.size() - 1).getId());
+        }
+    }
+
+    /**
+     * 목록 아래에 메시지를 붙입니다. (아래쪽을 버린 상태면 붙이지 않고 내려올 때 다시 받음)
+     * - 목록이 MAX_WINDOW + PAGE_SIZE를 넘으면 오래된 쪽을 MAX_WINDOW까지 버림 (한 번에 모아서)
+     */
+    private void appendLive(ChatMessage m) {
+        if (hasNewer) {
+            pendingLive.add(m);
+            if (pendingLive.size() > PAGE_SIZE) pendingLive.remove(0);
+            return;
+        }
+        List<ChatMessage> items = messageListView.getItems();
+        items.add(m);
+        cacheAppend(List.of(m));
+        if (items.size() > MAX_WINDOW + PAGE_SIZE) {
+            items.subList(0, items.size() - MAX_WINDOW).clear();
+            hasOlder = true;
+        }
+    }
+
+    /**
+     * 아래쪽을 다 받았으면 그 사이 보류한 실시간 메시지 중 목록 끝 이후 것만 붙입니다.
+     */
+    private void flushPendingLive() {
+        if (hasNewer) return;
+        List<ChatMessage> items = messageListView.getItems();
+        int last = items.isEmpty() ? 0 : items.get(items.size() - 1).getId();
+        List<ChatMessage> tail = new ArrayList<>();
+        for (ChatMessage m : pendingLive) {
+            if (m.getId() > last) {
+                tail.add(m);
+                last = m.getId();
+            }
+        }
+        pendingLive.clear();
+        items.addAll(tail);
+        cacheAppend(tail);
+    }
+
+    /**
+     * 목록 끝에 붙인 메시지를 로컬 기록에도
+     */
+    private void cacheAppend(List<ChatMessage> msgs) {
+        HistoryCache cache = MainApp.getHistoryCache();
+        if (cache != null && !msgs.isEmpty()) cache.append(chatRoomId, msgs);
+    }
+
+    /**
+     * 서버 메시지 배열을 ChatMessage 목록으로
+     *
+     * @param reverse true면 뒤에서부터 (최신 순 -> 오래된 순)
+     */
+    private static List<ChatMessage> toMessages(JSONArray arr, boolean reverse) {
+        List<ChatMessage> list = new ArrayList<>(arr.length());
+        for (int i = 0; i < arr.length(); i++) {
+            list.add(ChatMessage.fromJson(arr.getJSONObject(reverse ? arr.length() - 1 - i : i)));
+        }
+        return list;
+    }
+
+    /**
+     * 읽음 위치를 서버에 알립니다. (이미 보낸 위치 이하라면 전송하지 않음)
+     *
+     * @param messageId 화면에 표시된 마지막 메시지 ID
+     */
+    private void markRead(int messageId) {
+        if (messageId <= lastMarkedId) return;
+        lastMarkedId = messageId;
+
+        JSONObject data = new JSONObject();
+        data.put("room_id", chatRoomId);
+        data.put("message_id", messageId);
+        String req = MessageProtocol.createRequest("mark_read", data);
         MainApp.getNetworkClient().sendMessage(req);
     }
 
@@ -73,12 +270,36 @@ public class ChatRoomController implements MessageListener {
         JSONObject data = new JSONObject();
         data.put("room_id", chatRoomId); // 채팅방 ID 추가
         data.put("message", msg); // 메시지 추가
-        String req = MessageProtocol.createRequest("send_message", data);
-        MainApp.getNetworkClient().sendMessage(req); // 서버로 메시지 전송
+        request("send_message", data); // 서버로 메시지 전송
 
+        lastTypingSent = 0; // 전송하면 서버가 입력 중을 해제함
         messageField.clear(); // 입력 필드 초기화
     }
 
+    /**
+     * 사진을 골라 파일 채널로 올린 뒤 <IMAGE:해시> 메시지로 전송합니다.
+     * - 업로드는 FileTransferClient 스레드에서 (채팅 소켓과 화면을 막지 않음)
+     */
+    @FXML
+    public void onSendImage() {
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Select Image");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Images", "*.png", "*.jpg", "*.jpeg", "*.gif"));
+        File f = fc.showOpenDialog(messageField.getScene().getWindow());
+        if (f == null) return;
+
+        MainApp.getFileClient().upload(f).whenComplete((hash, ex) -> Platform.runLater(() -> {
+            if (ex != null) {
+                MainApp.showErrorDialog("사진 업로드 실패: " + ex.getMessage());
+                return;
+            }
+            JSONObject data = new JSONObject();
+            data.put("room_id", chatRoomId);
+            data.put("message", "<IMAGE:" + hash + ">");
+            request("send_message", data);
+        }));
+    }
+
     /**
      * 이모티콘 선택 다이얼로그를 열고 선택한 이모티콘을 메시지 필드에 삽입합니다.
      */
@@ -127,88 +348,132 @@ public class ChatRoomController implements MessageListener {
     /**
      * 서버로부터 수신한 메시지를 UI에 반영합니다.
      *
-     * @param message 서버에서 수신한 메시지
-     */
-    @Override
-    public void onMessageReceived(String message) {
-        Platform.runLater(() -> {
-            JSONObject resp = new JSONObject(message);
-            String type = resp.getString("type");
-            String status = resp.optString("status", "");
-            JSONObject d = resp.optJSONObject("data");
-
-            if (type.equals("load_messages") && status.equals("ok")) {
-                // 서버에서 메시지 목록을 받아와 리스트뷰에 추가
+     * @param resp 서버 프레임 {type, status, data}
+     */
+    private void onServerMessage(JSONObject resp) {
+        String type = resp.getString("type");
+        String status = resp.optString("status", "");
+        JSONObject d = resp.optJSONObject("data");
+
+        if (type.equals("load_messages")) {
+            if (d == null || d.optInt("room_id", chatRoomId) != chatRoomId) return; // 다른 방 창의 응답
+            loadingPage = false;
+            if (!status.equals("ok")) return;
+            List<ChatMessage> items = messageListView.getItems();
+            JSONArray arr = d.getJSONArray("messages");
+            if (d.has("before_id")) {
+                // 이전 페이지 (최신 순) -> 위에 붙이고, 넘치면 아래쪽을 버림
+                List<ChatMessage> page = toMessages(arr, true);
+                items.addAll(0, page);
+                hasOlder = d.optBoolean("has_more");
+                if (items.size() > MAX_WINDOW) {
+                    items.subList(MAX_WINDOW, items.size()).clear();
+                    hasNewer = true;
+                }
+                messageListView.scrollTo(page.size()); // 보고 있던 메시지를 그 자리에
+                return;
+            } else if (d.has("after_id")) {
+                if (catchingUp && d.optBoolean("has_more")) {
+                    // 캐시 이후로 너무 많이 쌓임 -> 최신 페이지로 교체
+                    catchingUp = false;
+                    loadingPage = true;
+                    loadMessages();
+                    return;
+                }
+                // 다음 페이지 (오래된 순) -> 아래에 붙이고, 넘치면 위쪽을 버림
+                int anchor = items.size() - 1;
+                List<ChatMessage> page = toMessages(arr, false);
+                items.addAll(page);
+                cacheAppend(page);
+                hasNewer = d.optBoolean("has_more");
+                int drop = Math.max(0, items.size() - MAX_WINDOW);
+                if (drop > 0) {
+                    items.subList(0, drop).clear();
+                    hasOlder = true;
+                }
+                flushPendingLive();
+                messageListView.scrollTo(catchingUp ? items.size() - 1 : Math.max(0, anchor - drop));
+                catchingUp = false;
+            } else {
+                // 첫 페이지 (최신 순)
+                List<ChatMessage> page = toMessages(arr, true);
+                messageListView.getItems().setAll(page);
+                hasOlder = d.optBoolean("has_more");
+                hasNewer = false;
+                catchingUp = false;
+                if (MainApp.getHistoryCache() != null) MainApp.getHistoryCache().reset(chatRoomId, page);
+                if (arr.length() > 0) SyncState.resetRoom(chatRoomId, arr.getJSONObject(0).getInt("id"));
+                flushPendingLive();
+                messageListView.scrollTo(Math.max(0, items.size() - 1));
+            }
+            if (!hasNewer && !items.isEmpty()) {
+                int lastId = items.get(items.size() - 1).getId();
+                SyncState.onMessage(chatRoomId, lastId);
+                markRead(lastId); // 최신 메시지까지 읽음
+            }
+        } else if (type.equals("send_message") && status.equals("fail")) {
+            // 메시지 전송 실패 시 오류 다이얼로그 표시
+            MainApp.showErrorDialog("메시지 전송 실패: " + d.optString("reason", ""));
+        } else if (type.equals("new_message")) {
+            // 새로운 메시지가 수신되면 리스트뷰에 추가
+            if (d.getInt("room_id") == chatRoomId && SyncState.onMessage(chatRoomId, d.optInt("id", 0))) {
+                appendLive(ChatMessage.fromJson(d));
+                if (!hasNewer) markRead(d.optInt("id", 0));
+            }
+        } else if (type.equals("sync_messages")) {
+            // 재접속 후 놓친 메시지 (오래된 순, 페이지 단위)
+            if (d.getInt("room_id") == chatRoomId) {
+                if (d.optBoolean("gap")) {
+                    // 너무 많이 놓침 -> 중간이 비므로 기존 목록 대신 최신 메시지만 표시
+                    messageListView.getItems().clear();
+                    hasOlder = true;
+                    hasNewer = false;
+                    pendingLive.clear();
+                    if (MainApp.getHistoryCache() != null) MainApp.getHistoryCache().reset(chatRoomId, List.of());
+                }
                 JSONArray arr = d.getJSONArray("messages");
-                messageListView.getItems().clear();
-                for (int i = arr.length() - 1; i >= 0; i--) {
+                for (int i = 0; i < arr.length(); i++) {
                     JSONObject m = arr.getJSONObject(i);
-                    Label chatItem = createChatLabel(m.getString("sender_nickname"), m.getString("message"));
-                    messageListView.getItems().add(chatItem);
+                    if (!SyncState.onMessage(chatRoomId, m.getInt("id"))) continue; // 실시간으로 이미 받음
+                    appendLive(ChatMessage.fromJson(m));
                 }
-            } else if (type.equals("send_message") && status.equals("fail")) {
-                // 메시지 전송 실패 시 오류 다이얼로그 표시
-                MainApp.showErrorDialog("메시지 전송 실패: " + d.optString("reason", ""));
-            } else if (type.equals("new_message")) {
-                // 새로운 메시지가 수신되면 리스트뷰에 추가
-                if (d.getInt("room_id") == chatRoomId) {
-                    Label chatItem = createChatLabel(d.getString("sender_nickname"), d.getString("message"));
-                    messageListView.getItems().add(chatItem);
+                if (arr.length() > 0 && !hasNewer) {
+                    markRead(arr.getJSONObject(arr.length() - 1).getInt("id"));
                 }
-            } else if (type.equals("leave_chat_room") && status.equals("ok")) {
-                // 방 나가기 성공 시 창 닫기
-                Stage st = (Stage) leaveButton.getScene().getWindow();
-                st.close();
-            } else {
-                // 방 나가기 실패 시 오류 다이얼로그 표시
-                MainApp.showErrorDialog("방 나가기 실패: " + d.optString("reason", ""));
             }
-        });
-    }
-
-    /**
-     * 메시지에 포함된 <EMOJI:xxx> 태그를 이미지로 변환하여 표시합니다.
-     *
-     * @param sender 메시지를 보낸 사람
-     * @param text   메시지 내용
-     * @return 변환된 메시지를 포함하는 라벨
-     */
-    private Label createChatLabel(String sender, String text) {
-        Label container = new Label();
-        TextFlow flow = new TextFlow();
-        flow.getChildren().add(new Label(sender + ": ")); // 발신자 표시
-
-        // <EMOJI:xxx> 태그를 찾기 위한 정규식
-        Pattern pat = Pattern.compile("<EMOJI:([^>]+)>");
-        Matcher m = pat.matcher(text);
-
-        int lastEnd = 0;
-        while (m.find()) {
-            // 태그 이전의 텍스트 추가
-            if (m.start() > lastEnd) {
-                flow.getChildren().add(new Text(text.substring(lastEnd, m.start())));
+        } else if (type.equals("sync") && status.equals("ok")) {
+            // 끊긴 사이 방에서 나가졌으면 창 닫기
+            JSONArray left = d.getJSONArray("left_rooms");
+            for (int i = 0; i < left.length(); i++) {
+                if (left.getInt(i) == chatRoomId) {
+                    ((Stage) leaveButton.getScene().getWindow()).close();
+                    break;
+                }
             }
-            String emojiName = m.group(1);
-            try {
-                // 이모티콘 이미지를 로드하여 추가
-                String path = getClass().getResource("/client/resources/emojis/" + emojiName + ".png").toExternalForm();
-                ImageView iv = new ImageView(new Image(path));
-                iv.setFitWidth(20);
-                iv.setFitHeight(20);
-                flow.getChildren().add(iv);
-            } catch (Exception e) {
-                // 이미지 로드 실패 시 태그 그대로 표시
-                flow.getChildren().add(new Text("<EMOJI:" + emojiName + ">"));
+        } else if (type.equals("typing")) {
+            if (d.getInt("room_id") == chatRoomId) {
+                showTyping(d.getJSONArray("user_ids"), d.getJSONArray("nicknames"));
             }
-            lastEnd = m.end();
-        }
-        // 태그 이후의 텍스트 추가
-        if (lastEnd < text.length()) {
-            flow.getChildren().add(new Text(text.substring(lastEnd)));
+        } else if (type.equals("leave_chat_room") && status.equals("ok")) {
+            // 방 나가기 성공 시 창 닫기
+            Stage st = (Stage) leaveButton.getScene().getWindow();
+            st.close();
+        } else if (type.equals("leave_chat_room")) {
+            // 방 나가기 실패 시 오류 다이얼로그 표시
+            MainApp.showErrorDialog("방 나가기 실패: " + d.optString("reason", ""));
         }
+    }
 
-        container.setGraphic(flow);
-        container.setStyle("-fx-padding:5;");
-        return container;
+    /**
+     * 입력 중인 사람을 표시합니다. (본인 제외)
+     */
+    private void showTyping(JSONArray userIds, JSONArray nicknames) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < userIds.length(); i++) {
+            if (userIds.getInt(i) == MainApp.getUserId()) continue;
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(nicknames.optString(i, "?"));
+        }
+        typingLabel.setText(sb.length() > 0 ? sb + "님이 입력 중..." : "");
     }
 }
@@ -2,7 +2,6 @@ package client;
 
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.application.Platform;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import javafx.stage.Stage;
@@ -12,7 +11,7 @@ import javafx.stage.Stage;
  * 그룹 채팅방 생성 다이얼로그의 컨트롤러 클래스.
  * - 방 이름 설정 및 참가자 선택 후 채팅방 생성 요청을 서버로 전송합니다.
  */
-public class CreateChatRoomDialogController implements MessageListener {
+public class CreateChatRoomDialogController {
 
     @FXML private TextField roomNameField;       // 방 이름 입력 필드
     @FXML private ListView<String> friendListView; // 친구 목록 리스트뷰
@@ -22,11 +21,11 @@ public class CreateChatRoomDialogController implements MessageListener {
 
     /**
      * 컨트롤러 초기화 메서드
-     * - 메시지 리스너를 등록합니다.
+     * - 서버 응답을 구독합니다. (창이 닫히면 자동 해제)
      */
     @FXML
     public void initialize() {
-        MainApp.getNetworkClient().addMessageListener(this);
+        MainApp.getNetworkClient().subscribe(roomNameField, this::onServerMessage, "create_chat_room");
     }
 
     /**
@@ -90,27 +89,23 @@ public class CreateChatRoomDialogController implements MessageListener {
     /**
      * 서버에서 수신한 메시지를 처리합니다.
      *
-     * @param msg 서버로부터 수신된 메시지
+     * @param resp 서버 프레임 {type, status, data}
      */
-    @Override
-    public void onMessageReceived(String msg) {
-        Platform.runLater(() -> {
-            JSONObject resp = new JSONObject(msg);
-            String type = resp.getString("type"); // 메시지 유형
-            String status = resp.optString("status", ""); // 상태 정보
-            JSONObject d = resp.optJSONObject("data"); // 추가 데이터
-
-            // 채팅방 생성 응답 처리
-            if (type.equals("create_chat_room")) {
-                if (status.equals("ok")) {
-                    // 채팅방 생성 성공 시 다이얼로그 창 닫기
-                    Stage st = (Stage) roomNameField.getScene().getWindow();
-                    st.close();
-                } else {
-                    // 채팅방 생성 실패 시 상태 메시지 표시
-                    statusLabel.setText("채팅방 생성 실패: " + d.optString("reason", ""));
-                }
+    private void onServerMessage(JSONObject resp) {
+        String type = resp.getString("type"); // 메시지 유형
+        String status = resp.optString("status", ""); // 상태 정보
+        JSONObject d = resp.optJSONObject("data"); // 추가 데이터
+
+        // 채팅방 생성 응답 처리
+        if (type.equals("create_chat_room")) {
+            if (status.equals("ok")) {
+                // 채팅방 생성 성공 시 다이얼로그 창 닫기
+                Stage st = (Stage) roomNameField.getScene().getWindow();
+                st.close();
+            } else {
+                // 채팅방 생성 실패 시 상태 메시지 표시
+                statusLabel.setText("채팅방 생성 실패: " + d.optString("reason", ""));
             }
-        });
+        }
     }
 }
@@ -0,0 +1,64 @@
+package client;
+
+import javafx.scene.image.Image;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * EmojiCache:
+ * - 이모티콘 PNG를 크기별로 한 번만 decode해서 공유 (Image는 여러 ImageView가 같이 써도 됨)
+ * - 채팅 메시지(CHAT_SIZE)와 이모티콘 선택창(PICKER_SIZE)이 같은 캐시를 씀
+ * - 이름은 메시지(다른 사람이 보낸 텍스트)에서 오므로 emoji_01 ~ emoji_COUNT만 찾고 캐시함
+ *   (그 밖의 이름은 찾지도 기억하지도 않음 -> 캐시는 COUNT x 크기 수를 넘지 않음)
+ * - 범위 안인데 파일이 없는 번호는 null로 기억해 두고 다시 찾지 않음
+ * - FX 스레드에서만 사용
+ */
+public class EmojiCache {
+    public static final int CHAT_SIZE = 20;
+    public static final int PICKER_SIZE = 32;
+    public static final int COUNT = 65; // emoji_01 ~ emoji_65 (빠진 번호는 건너뜀)
+
+    private static final Map<String, Image> images = new HashMap<>(); // "이름@크기" -> 이미지 (없으면 null)
+
+    /**
+     * 이모티콘 이미지
+     *
+     * @param name 이모티콘 이름 (예: "emoji_01")
+     * @param size 가로/세로 크기
+     * @return 이미지, 없는 이모티콘이면 null
+     */
+    public static Image get(String name, int size) {
+        if (!isKnown(name)) return null;
+        String key = name + "@" + size;
+        if (images.containsKey(key)) return images.get(key);
+
+        Image img = null;
+        URL res = EmojiCache.class.getResource("/client/resources/emojis/" + name + ".png");
+        if (res != null) {
+            // 쓸 크기로 바로 decode (원본 크기로 들고 있지 않음)
+            img = new Image(res.toExternalForm(), size, size, true, true);
+        }
+        images.put(key, img);
+        return img;
+    }
+
+    /**
+     * emoji_01 ~ emoji_COUNT 형식인지
+     */
+    private static boolean isKnown(String name) {
+        if (name == null || name.length() != 8 || !name.startsWith("emoji_")) return false;
+        char a = name.charAt(6), b = name.charAt(7);
+        if (a < '0' || a > '9' || b < '0' || b > '9') return false;
+        int i = (a - '0') * 10 + (b - '0');
+        return i >= 1 && i <= COUNT;
+    }
+
+    /**
+     * 이모티콘 이름 (번호 -> "emoji_01")
+     */
+    public static String name(int i) {
+        return String.format("emoji_%02d", i);
+    }
+}
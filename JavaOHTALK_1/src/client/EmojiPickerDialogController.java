@@ -7,8 +7,6 @@ import javafx.scene.control.DialogPane;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 
-import java.net.URL;
-
 /**
  * EmojiPickerDialogController:
  * - 이모티콘 선택 다이얼로그 컨트롤러.
@@ -42,19 +40,17 @@ public class EmojiPickerDialogController {
 
     /**
      * 이모티콘 버튼을 생성하여 FlowPane에 추가합니다.
-     * - 65개의 이모티콘 이미지 파일(emoji_01~emoji_65)을 버튼으로 변환.
+     * - 65개의 이모티콘 이미지 파일(emoji_01~emoji_65)을 버튼으로 변환 (이미지는 EmojiCache에서 공유).
      * - 각 버튼 클릭 시 선택된 이모티콘을 설정하고 스타일 변경.
      */
     private void loadEmojis() {
-        for (int i = 1; i <= 65; i++) {
+        for (int i = 1; i <= EmojiCache.COUNT; i++) {
             // 이모티콘 파일 이름 생성 (예: emoji_01, emoji_02, ...)
-            String emojiName = String.format("emoji_%02d", i);
+            String emojiName = EmojiCache.name(i);
 
-            // 이모티콘 이미지 파일 경로 가져오기
-            URL res = getClass().getResource("/client/resources/emojis/" + emojiName + ".png");
-            if (res != null) {
-                // 이모티콘 이미지 로드 및 크기 설정
-                Image img = new Image(res.toExternalForm(), 32, 32, true, true);
+            // 이모티콘 이미지 (다이얼로그를 다시 열어도 decode는 처음 한 번만)
+            Image img = EmojiCache.get(emojiName, EmojiCache.PICKER_SIZE);
+            if (img != null) {
                 ImageView iv = new ImageView(img);
 
                 // 버튼 생성 및 이미지 설정
@@ -0,0 +1,235 @@
+package client;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * FileTransferClient:
+ * - 서버 파일 채널(채팅 소켓과 별도 포트)로 업로드/다운로드
+ * - 파일은 SHA-256 해시로 구분 -> 메시지에는 <IMAGE:해시>, 프로필에는 해시만
+ * - 전송은 전용 스레드에서 (FX 스레드/채팅 소켓을 막지 않음), 끊기면 받은/보낸 위치부터 MAX_ATTEMPTS번까지 이어서
+ * - 받은 파일은 ~/.javaoh/files/해시 에 저장해 두고 다음부터는 디스크에서
+ * - 이미지는 보통 썸네일(해시@크기)만 받고, 원본은 사용자가 열 때만
+ */
+public class FileTransferClient {
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long CHUNK = 1 << 20;
+    private static final Path CACHE_DIR = Paths.get(System.getProperty("user.home"), ".javaoh", "files");
+
+    private final String host;
+    private final int port;
+    private final ExecutorService pool = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "file-transfer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, CompletableFuture<Path>> downloads = new ConcurrentHashMap<>(); // 같은 파일 중복 다운로드 방지
+
+    public FileTransferClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * SHA-256 hex (소문자 64글자)인지
+     */
+    public static boolean isHash(String s) {
+        return s != null && s.matches("[0-9a-f]{64}");
+    }
+
+    /**
+     * 업로드
+     * @return 파일 해시 (서버에 이미 있으면 내용을 보내지 않고 바로 완료)
+     */
+    public CompletableFuture<String> upload(File file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                String hash = sha256(file.toPath());
+                long size = Files.size(file.toPath());
+                IOException last = null;
+                for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                    try (SocketChannel ch = open()) {
+                        JSONObject req = new JSONObject();
+                        req.put("op", "put");
+                        req.put("token", MainApp.getSessionToken());
+                        req.put("hash", hash);
+                        req.put("size", size);
+                        JSONObject r = request(ch, req);
+                        if (r.has("hash")) return hash; // 서버에 이미 있던 파일
+                        long pos = r.getLong("offset"); // 서버가 이미 받은 위치부터
+                        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                            while (pos < size) {
+                                pos += fc.transferTo(pos, Math.min(CHUNK, size - pos), ch);
+                            }
+                        }
+                        JSONObject done = new JSONObject(readLine(ch));
+                        if (!done.optString("status").equals("ok")) {
+                            throw new IllegalStateException(done.optString("reason"));
+                        }
+                        return hash;
+                    } catch (IOException e) {
+                        last = e; // 끊김 -> 다시 연결해서 이어서
+                    }
+                }
+                throw last;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, pool);
+    }
+
+    /**
+     * 다운로드 (디스크 캐시에 있으면 바로)
+     * @return 로컬 파일 경로
+     */
+    public CompletableFuture<Path> download(String hash) {
+        Path dst = CACHE_DIR.resolve(hash);
+        if (Files.exists(dst)) return CompletableFuture.completedFuture(dst);
+        return downloads.computeIfAbsent(hash, h -> CompletableFuture.supplyAsync(() -> {
+            try {
+                Files.createDirectories(CACHE_DIR);
+                Path part = CACHE_DIR.resolve(hash + ".part");
+                IOException last = null;
+                boolean done = false;
+                for (int attempt = 0; attempt < MAX_ATTEMPTS && !done; attempt++) {
+                    try (SocketChannel ch = open();
+                         FileChannel fc = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                        long pos = fc.size();
+                        JSONObject req = new JSONObject();
+                        req.put("op", "get");
+                        req.put("token", MainApp.getSessionToken());
+                        req.put("hash", hash);
+                        req.put("offset", pos);
+                        long size = request(ch, req).getLong("size");
+                        while (pos < size) {
+                            long n = fc.transferFrom(ch, pos, Math.min(CHUNK, size - pos));
+                            if (n <= 0) throw new IOException("closed at " + pos);
+                            pos += n;
+                        }
+                        done = true;
+                    } catch (IOException e) {
+                        last = e; // .part는 남겨 둠 -> 다음 시도/다음 요청이 이어서 받음
+                    }
+                }
+                if (!done) throw last;
+                if (!hash.equals(sha256(part))) {
+                    Files.deleteIfExists(part);
+                    throw new IOException("Hash mismatch: " + hash);
+                }
+                Files.move(part, dst, StandardCopyOption.REPLACE_EXISTING);
+                return dst;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+                downloads.remove(hash);
+            }
+        }, pool));
+    }
+
+    /**
+     * 썸네일 다운로드 (서버가 만든 해시@크기, 디스크 캐시에 있으면 바로)
+     * @return 로컬 파일 경로
+     */
+    public CompletableFuture<Path> downloadThumb(String id) {
+        Path dst = CACHE_DIR.resolve(id);
+        if (Files.exists(dst)) return CompletableFuture.completedFuture(dst);
+        return downloads.computeIfAbsent(id, k -> CompletableFuture.supplyAsync(() -> {
+            try (SocketChannel ch = open()) {
+                Files.createDirectories(CACHE_DIR);
+                JSONObject req = new JSONObject();
+                req.put("op", "thumb");
+                req.put("token", MainApp.getSessionToken());
+                req.put("id", id);
+                int size = request(ch, req).getInt("size");
+                ByteBuffer buf = ByteBuffer.allocate(size);
+                while (buf.hasRemaining()) {
+                    if (ch.read(buf) < 0) throw new IOException("closed");
+                }
+                Path tmp = CACHE_DIR.resolve(id + ".part");
+                Files.write(tmp, buf.array());
+                Files.move(tmp, dst, StandardCopyOption.REPLACE_EXISTING);
+                return dst;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+                downloads.remove(id);
+            }
+        }, pool));
+    }
+
+    /**
+     * 썸네일 ID (서버 ThumbnailCache와 같은 형식)
+     */
+    public static String thumbId(String hash, int size) {
+        return hash + "@" + size;
+    }
+
+    private SocketChannel open() throws IOException {
+        return SocketChannel.open(new InetSocketAddress(host, port));
+    }
+
+    /**
+     * 헤더 전송 후 응답 헤더 (실패 응답이면 예외)
+     */
+    private static JSONObject request(SocketChannel ch, JSONObject req) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap((req.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) ch.write(buf);
+        JSONObject r = new JSONObject(readLine(ch));
+        if (!r.optString("status").equals("ok")) {
+            throw new IllegalStateException(r.optString("reason", "file transfer failed"));
+        }
+        return r;
+    }
+
+    /**
+     * 응답 헤더 한 줄 (뒤의 바이트를 미리 읽지 않도록 1바이트씩)
+     */
+    private static String readLine(SocketChannel ch) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            one.clear();
+            if (ch.read(one) < 0) throw new IOException("closed");
+            byte b = one.get(0);
+            if (b == '\n') break;
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String sha256(Path p) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            while (fc.read(buf) >= 0) {
+                buf.flip();
+                md.update(buf);
+                buf.clear();
+            }
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : md.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0x0f, 16)).append(Character.forDigit(b & 0x0f, 16));
+        }
+        return sb.toString();
+    }
+}
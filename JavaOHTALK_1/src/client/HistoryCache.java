@@ -0,0 +1,180 @@
+package client;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * HistoryCache:
+ * - 방마다 받은 메시지를 로컬 디스크에 JSON 한 줄씩 append (계정별 디렉터리)
+ *   ~/.javaoh/history/호스트_사용자ID/방ID.log
+ * - 방을 열면 캐시의 마지막 LOAD_COUNT개를 바로 표시하고, 서버에는 마지막 캐시 ID 이후만 요청
+ * - 파일에는 끊김 없는 구간만 있음: 마지막 ID보다 큰 메시지만 뒤에 붙이고,
+ *   중간이 빈 경우(최신 페이지로 교체, sync gap)에는 reset으로 새로 씀
+ * - 방 파일이 MAX_ROOM_BYTES를 넘으면 최근 KEEP_ON_COMPACT개만 남기고 다시 씀,
+ *   전체가 MAX_TOTAL_BYTES를 넘으면 오래 안 쓴 방 파일부터 삭제
+ * - 디스크 작업은 전용 스레드 하나에서 순서대로 (FX 스레드를 막지 않음)
+ */
+public class HistoryCache {
+    private static final int LOAD_COUNT = 100;
+    private static final int KEEP_ON_COMPACT = 300;
+    private static final long MAX_ROOM_BYTES = 512 * 1024;
+    private static final long MAX_TOTAL_BYTES = 32L * 1024 * 1024;
+    private static final Path ROOT = Paths.get(System.getProperty("user.home"), ".javaoh", "history");
+
+    private final Path dir;
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "history-cache");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<Integer, Integer> lastIds = new HashMap<>(); // roomId -> 파일의 마지막 메시지 ID (io 스레드에서만)
+
+    public HistoryCache(String host, int userId) {
+        this.dir = ROOT.resolve(host.replaceAll("[^A-Za-z0-9.-]", "_") + "_" + userId);
+        io.execute(this::trimTotal);
+    }
+
+    /**
+     * 캐시된 최근 메시지 (오래된 순, 없으면 빈 목록)
+     */
+    public CompletableFuture<List<ChatMessage>> load(int roomId) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<ChatMessage> all = read(roomId);
+            lastIds.put(roomId, all.isEmpty() ? 0 : all.get(all.size() - 1).getId());
+            return new ArrayList<>(all.subList(Math.max(0, all.size() - LOAD_COUNT), all.size()));
+        }, io);
+    }
+
+    /**
+     * 목록 끝에 이어지는 메시지 추가 (오래된 순, 이미 캐시된 ID 이하는 무시)
+     */
+    public void append(int roomId, List<ChatMessage> msgs) {
+        List<ChatMessage> copy = new ArrayList<>(msgs);
+        io.execute(() -> {
+            Path p = path(roomId);
+            int last = lastIds.computeIfAbsent(roomId, k -> {
+                List<ChatMessage> all = read(roomId);
+                return all.isEmpty() ? 0 : all.get(all.size() - 1).getId();
+            });
+            try {
+                Files.createDirectories(dir);
+                try (BufferedWriter w = Files.newBufferedWriter(p, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (ChatMessage m : copy) {
+                        if (m.getId() <= last) continue;
+                        w.write(m.toJson().toString());
+                        w.newLine();
+                        last = m.getId();
+                    }
+                }
+                lastIds.put(roomId, last);
+                if (Files.size(p) > MAX_ROOM_BYTES) {
+                    List<ChatMessage> all = read(roomId);
+                    write(roomId, all.subList(Math.max(0, all.size() - KEEP_ON_COMPACT), all.size()));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * 캐시를 이 메시지들로 교체 (오래된 순, 이전 기록과 이어지지 않을 때)
+     */
+    public void reset(int roomId, List<ChatMessage> msgs) {
+        List<ChatMessage> copy = new ArrayList<>(msgs);
+        io.execute(() -> {
+            try {
+                write(roomId, copy);
+                trimTotal();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private Path path(int roomId) {
+        return dir.resolve(roomId + ".log");
+    }
+
+    /**
+     * 방 파일 전체 (깨진 줄은 건너뜀 - 쓰는 중에 종료된 경우)
+     */
+    private List<ChatMessage> read(int roomId) {
+        Path p = path(roomId);
+        if (!Files.exists(p)) return Collections.emptyList();
+        List<ChatMessage> list = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(p, StandardCharsets.UTF_8)) {
+                try {
+                    list.add(ChatMessage.fromJson(new JSONObject(line)));
+                } catch (Exception ignore) {}
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    /**
+     * 방 파일을 새로 씀 (임시 파일에 쓰고 교체)
+     */
+    private void write(int roomId, List<ChatMessage> msgs) throws IOException {
+        Files.createDirectories(dir);
+        Path tmp = dir.resolve(roomId + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (ChatMessage m : msgs) {
+                w.write(m.toJson().toString());
+                w.newLine();
+            }
+        }
+        Files.move(tmp, path(roomId), StandardCopyOption.REPLACE_EXISTING);
+        lastIds.put(roomId, msgs.isEmpty() ? 0 : msgs.get(msgs.size() - 1).getId());
+    }
+
+    /**
+     * 전체 크기 제한 (수정 시각이 오래된 방 파일부터 삭제)
+     */
+    private void trimTotal() {
+        if (!Files.isDirectory(dir)) return;
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            s.filter(f -> f.toString().endsWith(".log")).forEach(files::add);
+            long total = 0;
+            for (Path f : files) total += Files.size(f);
+            files.sort((a, b) -> {
+                try {
+                    return Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+                } catch (IOException e) {
+                    return 0;
+                }
+            });
+            for (Path f : files) {
+                if (total <= MAX_TOTAL_BYTES) break;
+                total -= Files.size(f);
+                Files.deleteIfExists(f);
+                String name = f.getFileName().toString();
+                lastIds.remove(Integer.parseInt(name.substring(0, name.length() - 4)));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
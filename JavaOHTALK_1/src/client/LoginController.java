@@ -3,7 +3,6 @@ package client;
 import org.json.JSONObject;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -14,7 +13,7 @@ import javafx.stage.Stage;
  * - 로그인 및 회원가입을 처리하는 컨트롤러.
  * - 로그인 성공 시 메인 화면(main.fxml)을 로딩합니다.
  */
-public class LoginController implements MessageListener {
+public class LoginController {
 
     @FXML private TextField usernameField;  // 사용자 이름 입력 필드
     @FXML private PasswordField passwordField; // 비밀번호 입력 필드
@@ -22,11 +21,11 @@ public class LoginController implements MessageListener {
 
     /**
      * 초기화 메서드:
-     * - 메시지 리스너를 네트워크 클라이언트에 등록합니다.
+     * - 서버 응답을 구독합니다. (메인 화면으로 바뀌면 자동 해제)
      */
     @FXML
     public void initialize() {
-        MainApp.getNetworkClient().addMessageListener(this);
+        MainApp.getNetworkClient().subscribe(usernameField, this::onServerMessage, "login", "register", "offline_messages");
     }
 
     /**
@@ -83,39 +82,45 @@ public class LoginController implements MessageListener {
     /**
      * 서버에서 수신한 메시지를 처리합니다.
      *
-     * @param msg 서버로부터 받은 메시지(JSON 형식)
+     * @param resp 서버 프레임 {type, status, data}
      */
-    @Override
-    public void onMessageReceived(String msg) {
-        Platform.runLater(() -> {
-            JSONObject resp = new JSONObject(msg);
-            String type = resp.getString("type"); // 메시지 타입
-            String status = resp.optString("status", ""); // 처리 상태
-            JSONObject d = resp.optJSONObject("data"); // 데이터 부분
-
-            if (type.equals("login")) {
-                // 로그인 응답 처리
-                if (status.equals("ok")) {
-                    int uid = d.getInt("user_id"); // 사용자 ID
-                    JSONObject info = d.getJSONObject("user_info");
-                    String nick = info.optString("nickname", "NoName"); // 닉네임
-                    MainApp.setUserId(uid); // 사용자 ID 저장
-                    MainApp.setNickname(nick); // 닉네임 저장
-                    openMain(); // 메인 화면 열기
-                } else {
-                    // 로그인 실패 시 메시지 표시
-                    statusLabel.setText("로그인 실패: " + d.optString("reason", ""));
-                }
-            } else if (type.equals("register")) {
-                // 회원가입 응답 처리
-                if (status.equals("ok")) {
-                    statusLabel.setText("회원가입 성공! 로그인 해주세요."); // 성공 메시지
-                } else {
-                    // 회원가입 실패 시 메시지 표시
-                    statusLabel.setText("회원가입 실패: " + d.optString("reason", ""));
-                }
+    private void onServerMessage(JSONObject resp) {
+        String type = resp.getString("type"); // 메시지 타입
+        String status = resp.optString("status", ""); // 처리 상태
+        JSONObject d = resp.optJSONObject("data"); // 데이터 부분
+
+        if (type.equals("login")) {
+            // 로그인 응답 처리
+            if (status.equals("ok")) {
+                int uid = d.getInt("user_id"); // 사용자 ID
+                boolean sameUser = MainApp.getUserId() == uid; // session_lost 뒤 같은 계정으로 다시 로그인
+                JSONObject info = d.getJSONObject("user_info");
+                String nick = info.optString("nickname", "NoName"); // 닉네임
+                MainApp.setUserId(uid); // 사용자 ID 저장
+                MainApp.setNickname(nick); // 닉네임 저장
+                MainApp.setSessionToken(d.optString("session_token", null)); // 재접속용 세션 토큰
+                SyncState.clear(); // 새 로그인 -> 이전 계정의 sync 기록 버림
+                MainApp.setFileClient(new FileTransferClient(
+                        MainApp.getNetworkClient().getHost(), d.optInt("file_port", 5107))); // 파일 채널
+                MainApp.setHistoryCache(new HistoryCache(MainApp.getNetworkClient().getHost(), uid)); // 방별 로컬 기록
+                MainApp.getNetworkClient().releaseOutbox(sameUser); // 끊긴 동안 보낸 메시지 (다른 계정이면 버림)
+                openMain(); // 메인 화면 열기
+            } else {
+                // 로그인 실패 시 메시지 표시
+                statusLabel.setText("로그인 실패: " + d.optString("reason", ""));
             }
-        });
+        } else if (type.equals("offline_messages")) {
+            // 로그인 응답 직전에 옴 -> 메인 화면이 열릴 때 가져가도록 보관
+            MainApp.setOfflineMessages(d);
+        } else if (type.equals("register")) {
+            // 회원가입 응답 처리
+            if (status.equals("ok")) {
+                statusLabel.setText("회원가입 성공! 로그인 해주세요."); // 성공 메시지
+            } else {
+                // 회원가입 실패 시 메시지 표시
+                statusLabel.setText("회원가입 실패: " + d.optString("reason", ""));
+            }
+        }
     }
 
     /**
@@ -2,10 +2,13 @@ package client;
 
 import javafx.application.Application;
 import javafx.stage.Stage;
+import javafx.stage.Window;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.Parent;
 
+import java.util.ArrayList;
+
 /**
  * MainApp:
  * - JavaFX Application의 시작점.
@@ -15,6 +18,10 @@ public class MainApp extends Application {
     private static NetworkClient networkClient; // 서버와의 통신을 담당하는 NetworkClient 객체
     private static int userId = -1;            // 현재 로그인한 사용자의 ID (-1은 로그인하지 않은 상태를 의미)
     private static String nickname = "NoName"; // 현재 로그인한 사용자의 닉네임
+    private static String sessionToken = null; // 재접속 시 resume 요청에 사용하는 세션 토큰
+    private static org.json.JSONObject offlineMessages = null; // 로그인 직후 받은 offline_messages (메인 화면이 가져감)
+    private static FileTransferClient fileClient;     // 파일/이미지 전송 (로그인 응답의 file_port로 생성)
+    private static HistoryCache historyCache;         // 방별 로컬 메시지 기록 (로그인한 계정별)
 
     /**
      * JavaFX 애플리케이션 시작 메서드.
@@ -33,17 +40,49 @@ public class MainApp extends Application {
         }
 
         // 2) login.fxml 파일을 로드하여 로그인 화면 표시
-        FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/login.fxml"));
+        showLogin(primaryStage);
+        primaryStage.show();           // 창 표시
+    }
+
+    /**
+     * login.fxml을 로드하여 stage에 로그인 화면을 표시합니다.
+     *
+     * @param stage 로그인 화면을 띄울 Stage
+     */
+    private static void showLogin(Stage stage) throws Exception {
+        FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/fxml/login.fxml"));
         Parent root = loader.load(); // FXML 파일 로드
         Scene scene = new Scene(root);
 
         // 스타일(CSS) 적용
-        scene.getStylesheets().add(getClass().getResource("/client/resources/application.css").toExternalForm());
+        scene.getStylesheets().add(MainApp.class.getResource("/client/resources/application.css").toExternalForm());
 
         // Stage 설정
-        primaryStage.setTitle("Login"); // 창 제목 설정
-        primaryStage.setScene(scene);  // Scene 설정
-        primaryStage.show();           // 창 표시
+        stage.setTitle("Login"); // 창 제목 설정
+        stage.setScene(scene);  // Scene 설정
+    }
+
+    /**
+     * 세션을 잃었을 때 (서버 재시작 등) 로그인 상태를 비우고 로그인 화면으로 돌아갑니다.
+     * - 다른 창(채팅방 등)은 닫고, 세션 토큰/sync 기록/로컬 기록 캐시를 버립니다.
+     * - 보내지 못한 메시지는 NetworkClient가 보관하다가 다시 로그인하면 전송합니다. (다른 계정이면 버림)
+     * - 사용자 ID는 다시 로그인한 계정이 같은지 비교하려고 남겨 둡니다.
+     *
+     * @param stage 메인 화면이 떠 있는 Stage
+     */
+    public static void returnToLogin(Stage stage) {
+        for (Window w : new ArrayList<>(Window.getWindows())) {
+            if (w != stage) w.hide();
+        }
+        sessionToken = null;
+        historyCache = null;
+        SyncState.clear();
+        try {
+            showLogin(stage);
+        } catch (Exception e) {
+            e.printStackTrace();
+            showErrorDialog("로그인 화면 로딩 실패");
+        }
     }
 
     /**
@@ -91,6 +130,80 @@ public class MainApp extends Application {
         return nickname;
     }
 
+    /**
+     * 로그인 응답으로 받은 세션 토큰을 저장합니다.
+     *
+     * @param token 세션 토큰 (resume 요청에 사용)
+     */
+    public static void setSessionToken(String token) {
+        sessionToken = token;
+    }
+
+    /**
+     * 저장된 세션 토큰을 반환합니다.
+     *
+     * @return 세션 토큰 (로그인 전이면 null)
+     */
+    public static String getSessionToken() {
+        return sessionToken;
+    }
+
+    /**
+     * 로그인 후 파일 전송 클라이언트를 저장합니다.
+     *
+     * @param client FileTransferClient 객체
+     */
+    public static void setFileClient(FileTransferClient client) {
+        fileClient = client;
+    }
+
+    /**
+     * 파일 전송 클라이언트를 반환합니다.
+     *
+     * @return FileTransferClient 객체 (로그인 전이면 null)
+     */
+    public static FileTransferClient getFileClient() {
+        return fileClient;
+    }
+
+    /**
+     * 로그인 후 로컬 메시지 기록 캐시를 저장합니다.
+     *
+     * @param cache HistoryCache 객체
+     */
+    public static void setHistoryCache(HistoryCache cache) {
+        historyCache = cache;
+    }
+
+    /**
+     * 로컬 메시지 기록 캐시를 반환합니다.
+     *
+     * @return HistoryCache 객체 (로그인 전이면 null)
+     */
+    public static HistoryCache getHistoryCache() {
+        return historyCache;
+    }
+
+    /**
+     * 로그인 응답 직전에 받은 offline_messages를 보관합니다. (메인 화면이 열리기 전에 도착하므로)
+     *
+     * @param data offline_messages 데이터
+     */
+    public static void setOfflineMessages(org.json.JSONObject data) {
+        offlineMessages = data;
+    }
+
+    /**
+     * 보관한 offline_messages를 꺼냅니다. (한 번만)
+     *
+     * @return offline_messages 데이터 (없으면 null)
+     */
+    public static org.json.JSONObject takeOfflineMessages() {
+        org.json.JSONObject d = offlineMessages;
+        offlineMessages = null;
+        return d;
+    }
+
     /**
      * 에러 메시지를 표시하기 위한 다이얼로그 창.
      *
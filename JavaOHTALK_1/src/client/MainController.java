@@ -11,11 +11,9 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
-import javafx.animation.Timeline;
-import javafx.animation.KeyFrame;
-import javafx.util.Duration;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * MainController:
@@ -26,9 +24,11 @@ import java.util.List;
  *   4) 1:1 채팅 "대화하기" 버튼
  *   5) 채팅방 생성 버튼
  *   6) 프로필 보기 버튼
- * - 5초 주기로 get_online_status 요청 → 친구 목록에서 [Online]/[Offline] 갱신
+ * - 친구 목록의 online 스냅샷 + 서버 presence push로 [Online]/[Offline] 갱신
+ * - 로그인 때 받은 offline_messages로 방마다 마지막 메시지 미리보기
+ * - 연결이 끊기면 닉네임 옆에 재접속 중 표시 (재접속은 NetworkClient가 알아서)
  */
-public class MainController implements MessageListener {
+public class MainController {
 
     @FXML private Label nicknameLabel;
     @FXML private ListView<String> friendListView; // 왼쪽: 친구 목록
@@ -38,6 +38,12 @@ public class MainController implements MessageListener {
     private JSONArray currentFriends        = new JSONArray(); // 서버에서 내려온 친구 목록
     private JSONArray currentRooms          = new JSONArray(); // 서버에서 내려온 채팅방 목록
     private JSONArray currentFriendRequests = new JSONArray(); // 서버에서 내려온 친구 요청 목록
+    private Map<Integer, Integer> unreadCounts = new HashMap<>(); // roomId -> 안 읽은 메시지 수
+    private Map<Integer, Boolean> onlineFriends = new HashMap<>(); // friendId -> 접속 여부
+    private Map<Integer, String> lastPreviews = new HashMap<>(); // roomId -> 마지막 메시지 미리보기
+
+    // 목록 버전 (서버 delta 이벤트의 순서/누락 확인용, 적용된 버전은 재접속 sync용으로 SyncState에)
+    private Map<String, Long> maxSeenVersions = new HashMap<>(); // list -> 받은 delta 중 가장 큰 버전
 
     /**
      * FXML 초기화
@@ -47,37 +53,68 @@ public class MainController implements MessageListener {
         // 닉네임 라벨 표시
         nicknameLabel.setText(MainApp.getNickname());
 
-        // 서버 메시지 수신 리스너 등록
-        MainApp.getNetworkClient().addMessageListener(this);
+        // 서버 응답/이벤트 구독 (메인 창이 닫히면 자동 해제)
+        MainApp.getNetworkClient().subscribe(nicknameLabel, this::onServerMessage,
+                "get_friend_list", "get_chat_rooms", "send_friend_request", "get_friend_requests",
+                "get_list_changes", "sync", "accept_friend_request", "create_chat_room",
+                "room_added", "room_removed", "member_left", "friend_added",
+                "friend_request_added", "friend_request_removed",
+                "new_message", "read_receipt", "presence", "connection", "offline_messages");
 
         // 친구를 선택하면 "대화하기" 버튼 활성화/비활성
         friendListView.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal)->{
             chatWithButton.setDisable(newVal == null);
         });
 
-        // 초기 로딩
-        loadFriendList();
-        loadChatRooms();
+        // 초기 로딩: 두 요청을 한꺼번에 보내고 둘 다 올 때까지 걸린 시간 기록
+        long start = System.nanoTime();
+        CompletableFuture.allOf(loadFriendList(), loadChatRooms()).whenComplete((v, ex) -> {
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            NetworkClient net = MainApp.getNetworkClient();
+            if(ex != null) System.out.println("Initial loading failed after " + ms + "ms: " + ex.getMessage());
+            else System.out.println("Initial loading " + ms + "ms (rtt " + net.getRttMs() + "ms)");
+        });
+
+        // 오프라인 동안 받은 메시지 (로그인 응답 전에 도착해 MainApp에 보관됨)
+        JSONObject offline = MainApp.takeOfflineMessages();
+        if(offline != null) onOfflineMessages(offline);
+    }
+
+    /**
+     * offline_messages: 방마다 마지막 메시지를 미리보기로 (안 읽은 수는 get_chat_rooms에서)
+     * - 수신함이 넘친 방은 미리보기 대신 안내만 (내용은 방을 열면 history로)
+     */
+    private void onOfflineMessages(JSONObject data) {
+        JSONArray msgs = data.getJSONArray("messages");
+        for(int i=0; i<msgs.length(); i++){
+            JSONObject m = msgs.getJSONObject(i);
+            lastPreviews.put(m.getInt("room_id"), preview(m.getString("sender_nickname"), m.getString("message")));
+        }
+        JSONArray overflow = data.getJSONArray("overflow_rooms");
+        for(int i=0; i<overflow.length(); i++){
+            lastPreviews.put(overflow.getInt(i), "새 메시지 많음");
+        }
+        refreshRoomListView();
+    }
 
-        // [Online/Offline] 표시를 위해 5초마다 updateOnlineStatus() 호출
-        Timeline onlineStatusTimer = new Timeline(new KeyFrame(Duration.seconds(5), e -> updateOnlineStatus()));
-        onlineStatusTimer.setCycleCount(Timeline.INDEFINITE);
-        onlineStatusTimer.play();
+    private static String preview(String nick, String msg) {
+        String p = nick + ": " + msg;
+        return p.length() > 30 ? p.substring(0, 30) + "..." : p;
     }
 
     // ------------------------------------------------
     // 서버 요청(친구 목록, 채팅방 목록)
     // ------------------------------------------------
-    private void loadFriendList() {
-        JSONObject data = new JSONObject();
-        String req = MessageProtocol.createRequest("get_friend_list", data);
-        MainApp.getNetworkClient().sendMessage(req);
+    // 응답은 request()의 future로 받아 onServerMessage에서 처리
+    // (시간 초과 뒤 늦게 온 응답은 request_id 짝이 없으므로 구독 경로로 똑같이 처리됨)
+    private CompletableFuture<JSONObject> loadFriendList() {
+        return MainApp.getNetworkClient().request("get_friend_list", new JSONObject())
+                .whenComplete((resp, ex) -> { if(resp != null) Platform.runLater(() -> onServerMessage(resp)); });
     }
 
-    private void loadChatRooms() {
-        JSONObject data = new JSONObject();
-        String req = MessageProtocol.createRequest("get_chat_rooms", data);
-        MainApp.getNetworkClient().sendMessage(req);
+    private CompletableFuture<JSONObject> loadChatRooms() {
+        return MainApp.getNetworkClient().request("get_chat_rooms", new JSONObject())
+                .whenComplete((resp, ex) -> { if(resp != null) Platform.runLater(() -> onServerMessage(resp)); });
     }
 
     // ------------------------------------------------
@@ -201,6 +238,7 @@ public class MainController implements MessageListener {
             Stage st = new Stage();
             st.setTitle("Chat Room " + roomId);
             st.setScene(new Scene(root));
+            st.setOnHidden(e -> ctrl.onClosed());
             st.show();
         } catch(Exception e) {
             e.printStackTrace();
@@ -208,92 +246,268 @@ public class MainController implements MessageListener {
         }
     }
 
-    // ------------------------------------------------
-    // [Online/Offline] 상태 갱신
-    // ------------------------------------------------
-    private void updateOnlineStatus() {
-        if(currentFriends.length() == 0) return;
-
-        List<Integer> friendIds = new ArrayList<>();
-        for(int i=0; i<currentFriends.length(); i++){
-            int fid = currentFriends.getJSONObject(i).getInt("friend_id");
-            friendIds.add(fid);
-        }
-        if(friendIds.isEmpty()) return;
-
-        JSONObject data = new JSONObject();
-        data.put("friend_ids", friendIds);
-        String req = MessageProtocol.createRequest("get_online_status", data);
-        MainApp.getNetworkClient().sendMessage(req);
-    }
-
     // ------------------------------------------------
     // 메시지 수신 처리
     // ------------------------------------------------
-    @Override
-    public void onMessageReceived(String message) {
-        Platform.runLater(() -> {
-            JSONObject resp = new JSONObject(message);
-            String type   = resp.getString("type");
-            String status = resp.optString("status","");
-            JSONObject data = resp.optJSONObject("data");
-
-            if(type.equals("get_friend_list") && status.equals("ok")){
-                currentFriends = data.getJSONArray("friends");
-                refreshFriendListView();
+    private void onServerMessage(JSONObject resp) {
+        String type   = resp.getString("type");
+        String status = resp.optString("status","");
+        JSONObject data = resp.optJSONObject("data");
+
+        if(type.equals("connection")){
+            String state = data.getString("state");
+            if(state.equals("disconnected")) nicknameLabel.setText(MainApp.getNickname() + " (연결 끊김, 재접속 중...)");
+            else if(state.equals("reconnected")) nicknameLabel.setText(MainApp.getNickname());
+            else if(state.equals("session_lost")){
+                // 인증 안 된 연결 -> 로그인 화면으로 (보내지 못한 메시지는 다시 로그인한 뒤 전송)
+                MainApp.returnToLogin((Stage) nicknameLabel.getScene().getWindow());
+                MainApp.showErrorDialog("세션이 만료되었습니다. 다시 로그인해 주세요.");
             }
-            else if(type.equals("get_chat_rooms") && status.equals("ok")){
-                currentRooms = data.getJSONArray("rooms");
-                refreshRoomListView();
+            return;
+        }
+        if(type.equals("offline_messages")){
+            // 재접속 때 다시 로그인한 경우
+            onOfflineMessages(data);
+            return;
+        }
+        if(type.equals("get_friend_list") && status.equals("ok")){
+            currentFriends = data.getJSONArray("friends");
+            onlineFriends.clear();
+            for(int i=0; i<currentFriends.length(); i++){
+                JSONObject f = currentFriends.getJSONObject(i);
+                onlineFriends.put(f.getInt("friend_id"), f.optBoolean("online", false));
             }
-            else if(type.equals("send_friend_request")){
-                if(!status.equals("ok")){
-                    MainApp.showErrorDialog("친구 요청 실패: "+data.optString("reason",""));
-                }
+            refreshFriendListView();
+            onSnapshotVersion("friends", data);
+        }
+        else if(type.equals("get_chat_rooms") && status.equals("ok")){
+            currentRooms = data.getJSONArray("rooms");
+            unreadCounts.clear();
+            for(int i=0; i<currentRooms.length(); i++){
+                JSONObject r = currentRooms.getJSONObject(i);
+                unreadCounts.put(r.getInt("id"), r.optInt("unread", 0));
+            }
+            refreshRoomListView();
+            onSnapshotVersion("rooms", data);
+        }
+        else if(type.equals("send_friend_request")){
+            if(!status.equals("ok")){
+                MainApp.showErrorDialog("친구 요청 실패: "+data.optString("reason",""));
             }
-            else if(type.equals("get_friend_requests") && status.equals("ok")){
-                // 받은 친구 요청 목록
-                currentFriendRequests = data.getJSONArray("requests");
-                showFriendRequestsDialog();
+        }
+        else if(type.equals("get_friend_requests") && status.equals("ok")){
+            // 받은 친구 요청 목록
+            currentFriendRequests = data.getJSONArray("requests");
+            onSnapshotVersion("requests", data);
+            showFriendRequestsDialog();
+        }
+        else if(type.equals("get_list_changes") && status.equals("ok")){
+            onListChanges(data);
+        }
+        else if(type.equals("sync")){
+            if(status.equals("ok")) onSync(data);
+            else { loadFriendList(); loadChatRooms(); } // sync 실패 -> 전체 재로딩
+        }
+        else if(type.equals("accept_friend_request")){
+            if(!status.equals("ok")){
+                MainApp.showErrorDialog("친구 요청 수락 실패: "+data.optString("reason",""));
             }
-            else if(type.equals("accept_friend_request")){
-                if(!status.equals("ok")){
-                    MainApp.showErrorDialog("친구 요청 수락 실패: "+data.optString("reason",""));
-                }
+        }
+        else if(type.equals("create_chat_room")){
+            if(!status.equals("ok")){
+                MainApp.showErrorDialog("채팅방 생성 실패: "+data.optString("reason",""));
             }
-            else if(type.equals("create_chat_room")){
-                if(!status.equals("ok")){
-                    MainApp.showErrorDialog("채팅방 생성 실패: "+data.optString("reason",""));
+        }
+
+        // 서버 push 이벤트 (목록 delta)
+        if(type.equals("room_added") || type.equals("room_removed") || type.equals("member_left")
+                || type.equals("friend_added")
+                || type.equals("friend_request_added") || type.equals("friend_request_removed")){
+            onListDelta(type, data);
+        }
+        else if(type.equals("new_message")){
+            // 메시지 표시는 ChatRoomController에서, 여기선 안 읽은 수만
+            lastPreviews.put(data.getInt("room_id"), preview(data.getString("sender_nickname"), data.getString("message")));
+            if(data.getInt("sender_id") != MainApp.getUserId()){
+                unreadCounts.merge(data.getInt("room_id"), 1, Integer::sum);
+            }
+            refreshRoomListView();
+        }
+        else if(type.equals("read_receipt")){
+            // 내가 (다른 창/기기에서) 읽었으면 안 읽은 수 초기화
+            JSONArray reads = data.getJSONArray("reads");
+            for(int i=0; i<reads.length(); i++){
+                if(reads.getJSONObject(i).getInt("user_id") == MainApp.getUserId()){
+                    unreadCounts.put(data.getInt("room_id"), 0);
+                    refreshRoomListView();
+                    break;
                 }
             }
+        }
+        else if(type.equals("presence")){
+            // 친구 접속/종료 push
+            onlineFriends.put(data.getInt("user_id"), data.getBoolean("online"));
+            refreshFriendListView();
+        }
+    }
+
+    // ------------------------------------------------
+    // 목록 delta 적용
+    // ------------------------------------------------
+
+    /**
+     * 스냅샷 응답의 버전 기록
+     * - 스냅샷보다 새 delta를 이미 받아서 버렸다면 그 이후 변경분을 다시 요청
+     */
+    private void onSnapshotVersion(String list, JSONObject data) {
+        if(!data.has("version")) return;
+        long v = data.getLong("version");
+        SyncState.setListVersion(list, data.getLong("epoch"), v);
+        if(maxSeenVersions.getOrDefault(list, -1L) > v){
+            requestListChanges(list);
+        }
+    }
+
+    /**
+     * push된 delta 이벤트 처리
+     * - 다음 버전이면 적용, 이미 반영된 버전이면 무시, 중간이 비면 변경분 재요청
+     */
+    private void onListDelta(String type, JSONObject data) {
+        String list = data.getString("list");
+        long v = data.getLong("version");
+        maxSeenVersions.merge(list, v, Math::max);
+
+        Long cur = SyncState.getListVersion(list);
+        if(cur == null) return; // 아직 스냅샷 전 -> 스냅샷 도착 시 처리
+        if(data.getLong("epoch") != SyncState.getListEpoch() || v > cur + 1){
+            requestListChanges(list);
+            return;
+        }
+        if(v <= cur) return;
+        applyDelta(type, data);
+        SyncState.setListVersion(list, SyncState.getListEpoch(), v);
+    }
+
+    private void requestListChanges(String list) {
+        JSONObject data = new JSONObject();
+        data.put("list", list);
+        Long v = SyncState.getListVersion(list);
+        data.put("epoch", SyncState.getListEpoch());
+        data.put("version", v == null ? -1L : v);
+        String req = MessageProtocol.createRequest("get_list_changes", data);
+        MainApp.getNetworkClient().sendMessage(req);
+    }
 
-            // 서버 push 이벤트
-            if(type.equals("friend_list_updated")){
-                currentFriends = data.getJSONArray("friends");
+    /**
+     * get_list_changes 응답: 변경분이 있으면 순서대로 적용, 너무 오래됐으면 스냅샷으로 교체
+     */
+    private void onListChanges(JSONObject data) {
+        String list = data.getString("list");
+        if(data.has("snapshot")){
+            JSONArray snap = data.getJSONArray("snapshot");
+            if(list.equals("rooms")) { currentRooms = snap; refreshRoomListView(); }
+            else if(list.equals("friends")) {
+                currentFriends = snap;
+                for(int i=0; i<snap.length(); i++){
+                    JSONObject f = snap.getJSONObject(i);
+                    onlineFriends.put(f.getInt("friend_id"), f.optBoolean("online", false));
+                }
                 refreshFriendListView();
             }
-            else if(type.equals("friend_request_list_updated")){
-                // 필요시 자동 다이얼로그
-            }
-            else if(type.equals("chat_rooms_updated")){
-                currentRooms = data.getJSONArray("rooms");
+            else if(list.equals("requests")) { currentFriendRequests = snap; }
+            SyncState.setListVersion(list, data.getLong("epoch"), data.getLong("version"));
+            return;
+        }
+        JSONArray changes = data.getJSONArray("changes");
+        Long v = SyncState.getListVersion(list);
+        long cur = v == null ? -1L : v;
+        for(int i=0; i<changes.length(); i++){
+            JSONObject ev = changes.getJSONObject(i);
+            JSONObject d = ev.getJSONObject("data");
+            if(d.getLong("version") <= cur) continue;
+            applyDelta(ev.getString("type"), d);
+            cur = d.getLong("version");
+        }
+        SyncState.setListVersion(list, SyncState.getListEpoch(), cur);
+    }
+
+    /**
+     * sync 응답 (재접속 후 놓친 것만)
+     * - 목록은 get_list_changes와 같은 형식으로 목록별 변경분
+     * - 안 읽은 수는 새로 받은 값으로 교체 (열려 있지 않던 방의 놓친 메시지)
+     */
+    private void onSync(JSONObject data) {
+        JSONObject lists = data.getJSONObject("lists");
+        for(String list : lists.keySet()){
+            onListChanges(lists.getJSONObject(list));
+        }
+        JSONObject unread = data.getJSONObject("unread");
+        for(int i=0; i<currentRooms.length(); i++){
+            int id = currentRooms.getJSONObject(i).getInt("id");
+            unreadCounts.put(id, unread.optInt(String.valueOf(id), 0));
+        }
+        refreshRoomListView();
+    }
+
+    /**
+     * delta 하나 적용 (같은 delta를 두 번 적용해도 결과가 같도록)
+     */
+    private void applyDelta(String type, JSONObject d) {
+        switch(type){
+            case "room_added": {
+                JSONObject room = d.getJSONObject("room");
+                removeById(currentRooms, "id", room.getInt("id"));
+                currentRooms.put(room);
+                unreadCounts.putIfAbsent(room.getInt("id"), 0);
                 refreshRoomListView();
+                break;
             }
-            else if(type.equals("new_message")){
-                // ChatRoomController에서 처리
+            case "room_removed":
+                removeById(currentRooms, "id", d.getInt("room_id"));
+                unreadCounts.remove(d.getInt("room_id"));
+                refreshRoomListView();
+                break;
+            case "member_left":
+                for(int i=0; i<currentRooms.length(); i++){
+                    JSONObject r = currentRooms.getJSONObject(i);
+                    if(r.getInt("id") == d.getInt("room_id")){
+                        removeById(r.getJSONArray("participants"), "user_id", d.getInt("user_id"));
+                    }
+                }
+                break;
+            case "friend_added": {
+                JSONObject f = d.getJSONObject("friend");
+                removeById(currentFriends, "friend_id", f.getInt("friend_id"));
+                currentFriends.put(f);
+                onlineFriends.put(f.getInt("friend_id"), f.optBoolean("online", false));
+                refreshFriendListView();
+                break;
             }
-            else if(type.equals("get_online_status") && status.equals("ok")){
-                JSONArray stList = data.getJSONArray("status_list");
-                updateFriendListWithStatus(stList);
+            case "friend_request_added": {
+                JSONObject r = d.getJSONObject("request");
+                removeById(currentFriendRequests, "request_id", r.getInt("request_id"));
+                currentFriendRequests.put(r);
+                break;
             }
-        });
+            case "friend_request_removed":
+                removeById(currentFriendRequests, "request_id", d.getInt("request_id"));
+                break;
+        }
+    }
+
+    private static void removeById(JSONArray arr, String key, int id) {
+        for(int i=arr.length()-1; i>=0; i--){
+            if(arr.getJSONObject(i).getInt(key) == id) arr.remove(i);
+        }
     }
 
     private void refreshFriendListView() {
         friendListView.getItems().clear();
         for(int i=0; i<currentFriends.length(); i++){
             JSONObject f = currentFriends.getJSONObject(i);
-            friendListView.getItems().add(f.getInt("friend_id") + ":" + f.getString("nickname"));
+            int fid = f.getInt("friend_id");
+            boolean online = onlineFriends.getOrDefault(fid, false);
+            friendListView.getItems().add(fid + ":" + f.getString("nickname") + (online ? " [Online]" : " [Offline]"));
         }
     }
 
@@ -301,31 +515,10 @@ public class MainController implements MessageListener {
         roomListView.getItems().clear();
         for(int i=0; i<currentRooms.length(); i++){
             JSONObject r = currentRooms.getJSONObject(i);
-            roomListView.getItems().add(r.getInt("id") + ":" + r.getString("name"));
-        }
-    }
-
-    /**
-     * [Online]/[Offline] 표시
-     */
-    private void updateFriendListWithStatus(JSONArray stList){
-        friendListView.getItems().clear();
-        for(int i=0; i<currentFriends.length(); i++){
-            JSONObject f = currentFriends.getJSONObject(i);
-            int fid = f.getInt("friend_id");
-            String nick = f.getString("nickname");
-
-            boolean online = false;
-            for(int j=0; j<stList.length(); j++){
-                JSONObject stObj = stList.getJSONObject(j);
-                if(stObj.getInt("user_id") == fid){
-                    online = stObj.getBoolean("online");
-                    break;
-                }
-            }
-
-            String label = fid + ":" + nick + (online ? " [Online]" : " [Offline]");
-            friendListView.getItems().add(label);
+            int unread = unreadCounts.getOrDefault(r.getInt("id"), 0);
+            String pv = lastPreviews.get(r.getInt("id"));
+            roomListView.getItems().add(r.getInt("id") + ":" + r.getString("name") + (unread > 0 ? " (" + unread + ")" : "")
+                    + (pv != null ? " - " + pv : ""));
         }
     }
 
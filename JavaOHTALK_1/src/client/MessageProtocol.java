@@ -17,6 +17,17 @@ public class MessageProtocol {
         return obj.toString();
     }
 
+    /**
+     * 응답을 기다리는 "요청" (서버가 응답에 request_id를 그대로 붙여 줌)
+     */
+    public static String createRequest(String type, JSONObject data, long requestId) {
+        JSONObject obj = new JSONObject();
+        obj.put("type", type);
+        obj.put("data", data);
+        obj.put("request_id", requestId);
+        return obj.toString();
+    }
+
     /**
      * 서버 -> 클라이언트 "응답"
      */
@@ -1,22 +1,112 @@
 package client;
 
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+import javafx.stage.WindowEvent;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
 import java.io.*;
 import java.net.Socket;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * NetworkClient:
  * - 서버와의 소켓 연결, 수신 스레드
- * - 서버로부터 받은 메시지를 MessageListener들에게 전달
+ * - 받은 프레임은 수신 스레드에서 한 번만 파싱하고, type(+ data.room_id)으로 구독자에게만 전달
+ *   (구독이 없는 type은 FX 스레드로 넘기지도 않음, 한 프레임에 runLater 한 번)
+ * - 구독은 owner 노드의 창이 닫히거나 scene이 바뀌면 자동 해제
+ * - request(type, data): 요청마다 request_id를 붙이고 같은 ID의 응답으로 CompletableFuture 완료
+ *   (그 응답은 구독자에게 가지 않음), 호출마다 timeout, 동시에 MAX_IN_FLIGHT개까지 (나머지는 대기열)
+ *   -> 여러 요청을 한꺼번에 보내고 기다릴 수 있음, 왕복 시간(RTT)도 여기서 잼
+ * - 연결이 끊기면 자동 재접속 (지수 backoff + full jitter: 0 ~ min(MAX, BASE*2^n) 사이 임의 대기
+ *   -> 서버 재시작 때 클라이언트들이 한꺼번에 몰리지 않고 퍼짐)
+ *   끊긴 동안 보낸 메시지는 outbox에 (최대 MAX_OUTBOX개) 보관했다가 세션 복구 후 순서대로 전송
+ *   세션 복구: resume(세션 토큰만 사용, 비밀번호는 보관하지 않음) -> 실패하면(서버 재시작 등) session_lost
+ *   session_lost면 연결은 살리되 login/register만 보내고, outbox는 다시 로그인할 때까지 보관 (releaseOutbox)
+ * - 연결 상태는 "connection" {state: disconnected / reconnected / session_lost} 프레임으로 구독자에게
  */
 public class NetworkClient {
+    public static final int ALL_ROOMS = -1;
+    public static final long DEFAULT_TIMEOUT_MS = 10_000;
+    private static final int MAX_IN_FLIGHT = 32;
+    private static final long RECONNECT_BASE_MS = 500;
+    private static final long RECONNECT_MAX_MS = 30_000;
+    private static final int MAX_OUTBOX = 500;
+    private static final int RESUMED = 0, RESYNC = 1, SESSION_LOST = 2; // restoreSession 결과
+
     private String host;
     private int port;
     private Socket socket;
     private BufferedReader in;
     private BufferedWriter out;
-    private List<MessageListener> listeners;
+    private volatile boolean connected = false;
+    private volatile boolean closed = false;           // close()로 닫음 -> 재접속하지 않음
+    private boolean reconnecting = false;              // this로 동기화
+    private boolean loginRequired = false;             // session_lost 뒤 다시 로그인하기 전 (this로 동기화)
+    private final ArrayDeque<String> outbox = new ArrayDeque<>(); // 끊긴 동안 보낸 메시지 (this로 동기화)
+    private final Map<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>(); // type -> 구독
+
+    private final AtomicLong nextRequestId = new AtomicLong(1);
+    private final Map<Long, Request> inFlight = new ConcurrentHashMap<>();          // request_id -> 응답 대기 중
+    private final Queue<Request> waiting = new ConcurrentLinkedQueue<>();           // MAX_IN_FLIGHT를 넘어 대기 중
+    private final Semaphore slots = new Semaphore(MAX_IN_FLIGHT);
+    private volatile long rttMs = -1; // 최근 왕복 시간 (지수 평균, 아직 없으면 -1)
+
+    /**
+     * 응답을 기다리는 요청 하나
+     */
+    private static class Request {
+        final long id;
+        final String frame;
+        final CompletableFuture<JSONObject> future = new CompletableFuture<>();
+        long sentAt; // 보낸 시각 (nanoTime, 0이면 아직 대기열)
+
+        Request(long id, String frame) {
+            this.id = id;
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * 구독 하나 (type, 방)
+     */
+    public class Subscription {
+        private final String type;
+        private final int roomId; // ALL_ROOMS면 방 상관없이
+        private final Consumer<JSONObject> handler;
+        private volatile boolean cancelled = false;
+
+        private Subscription(String type, int roomId, Consumer<JSONObject> handler) {
+            this.type = type;
+            this.roomId = roomId;
+            this.handler = handler;
+        }
+
+        /**
+         * 구독 해제 (이미 FX 스레드로 넘어간 프레임도 더 이상 전달하지 않음)
+         */
+        public void cancel() {
+            cancelled = true;
+            List<Subscription> subs = subscriptions.get(type);
+            if(subs!=null) subs.remove(this);
+        }
+    }
 
     /**
      * 생성자
@@ -24,7 +114,6 @@ public class NetworkClient {
     public NetworkClient(String host, int port) {
         this.host = host;
         this.port = port;
-        this.listeners = new ArrayList<>();
     }
 
     /**
@@ -33,10 +122,10 @@ public class NetworkClient {
      */
     public boolean connect() {
         try {
-            socket = new Socket(host, port);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream(),"UTF-8"));
-            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),"UTF-8"));
-            startReceiverThread();
+            Socket s = new Socket(host, port);
+            BufferedReader r = attach(s);
+            connected = true;
+            startReceiverThread(s, r);
             return true;
         } catch(Exception e) {
             e.printStackTrace();
@@ -45,39 +134,227 @@ public class NetworkClient {
     }
 
     /**
-     * 서버 수신 스레드
+     * 새 소켓을 현재 연결로
      */
-    private void startReceiverThread() {
+    private synchronized BufferedReader attach(Socket s) throws IOException {
+        socket = s;
+        in = new BufferedReader(new InputStreamReader(s.getInputStream(),"UTF-8"));
+        out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(),"UTF-8"));
+        return in;
+    }
+
+    /**
+     * 서버 수신 스레드 (연결마다 하나)
+     */
+    private void startReceiverThread(Socket s, BufferedReader r) {
         Thread t = new Thread(() -> {
             try {
                 String line;
-                while((line = in.readLine())!=null) {
-                    notifyListeners(line);
+                while((line = r.readLine())!=null) {
+                    dispatch(line);
                 }
             } catch(Exception e) {
-                e.printStackTrace();
+                if(!closed) System.out.println("Connection lost: "+e.getMessage());
             }
+            onDisconnected(s);
         });
         t.setDaemon(true);
         t.start();
     }
 
     /**
-     * 메시지 전송
+     * 연결 끊김 -> 응답 대기 중인 요청 실패, 재접속 스레드 시작 (이미 재접속 중이면 그 스레드가 계속)
+     */
+    private void onDisconnected(Socket s) {
+        boolean start;
+        synchronized(this) {
+            if(s!=socket || closed) return; // 이미 교체된 연결
+            connected = false;
+            start = !reconnecting;
+            reconnecting = true;
+        }
+        try { s.close(); } catch(Exception ignore) {}
+        failInFlight(new IOException("connection closed"));
+        if(!start) return;
+        route(connectionFrame("disconnected"));
+        Thread t = new Thread(this::reconnectLoop, "reconnect");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * 재접속 (성공할 때까지, 시도마다 backoff + jitter)
      */
-    public void sendMessage(String msg) {
+    private void reconnectLoop() {
+        for(int attempt=0; !closed; attempt++) {
+            long cap = Math.min(RECONNECT_MAX_MS, RECONNECT_BASE_MS << Math.min(attempt, 16));
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(cap+1));
+            } catch(InterruptedException e) {
+                return;
+            }
+            Socket s = null;
+            try {
+                s = new Socket(host, port);
+                startReceiverThread(s, attach(s));
+                int restored = restoreSession();
+                synchronized(this) {
+                    if(s!=socket || s.isClosed()) continue; // 복구 중에 다시 끊김
+                    if(restored==SESSION_LOST) {
+                        loginRequired = true; // outbox는 다시 로그인한 뒤에 (인증 안 된 연결로 보내면 버려짐)
+                    } else if(!loginRequired) { // 아직 다시 로그인하기 전에 또 끊겼으면 계속 보관
+                        if(restored==RESYNC) write(SyncState.createSyncRequest());
+                        flushOutbox();
+                    }
+                    connected = true;
+                    reconnecting = false;
+                }
+                System.out.println("Reconnected after "+(attempt+1)+" attempt(s)");
+                route(connectionFrame(restored==SESSION_LOST ? "session_lost" : "reconnected"));
+                return;
+            } catch(Exception e) {
+                System.out.println("Reconnect attempt "+(attempt+1)+" failed: "+e.getMessage());
+                if(s!=null) try { s.close(); } catch(Exception ignore) {}
+            }
+        }
+    }
+
+    /**
+     * 세션 복구 (새 연결에서, outbox보다 먼저)
+     * - resume 성공: 보관됐던 이벤트(missed_events)는 수신 스레드가 응답을 받을 때 먼저 전달 (route),
+     *   유예시간이 지났으면 sync 필요
+     * - resume 실패(서버 재시작으로 세션이 없어짐 등): session_lost -> 사용자가 다시 로그인
+     * - 서버가 바쁘다고 하면 예외 -> 다음 시도에서 다시
+     *
+     * @return RESUMED / RESYNC(놓친 것을 sync로 다시 받아야 함) / SESSION_LOST
+     */
+    private int restoreSession() throws Exception {
+        String token = MainApp.getSessionToken();
+        if(token==null) return RESUMED; // 로그인 전
+        JSONObject data = new JSONObject();
+        data.put("session_token", token);
+        JSONObject resp = requestNow("resume", data);
+        JSONObject d = resp.optJSONObject("data");
+        if(resp.optString("status").equals("ok")) {
+            return d.has("missed_events") ? RESUMED : RESYNC;
+        }
+        String reason = d==null ? "" : d.optString("reason", "");
+        if((d!=null && d.has("retry_after")) || reason.contains("busy")) {
+            throw new IOException("resume: "+reason);
+        }
+        return SESSION_LOST;
+    }
+
+    /**
+     * outbox를 순서대로 전송 (this 잡고)
+     */
+    private synchronized void flushOutbox() throws IOException {
+        while(!outbox.isEmpty()) {
+            write(outbox.peek());
+            outbox.poll();
+        }
+    }
+
+    /**
+     * session_lost 뒤 로그인에 성공하면 (FX 스레드에서, 로그인 응답 처리 중)
+     * - 보관하던 outbox를 보내거나(같은 계정) 버림(다른 계정), 그 뒤로는 평소처럼 전송
+     *
+     * @param send 같은 계정으로 다시 로그인했으면 true
+     */
+    public synchronized void releaseOutbox(boolean send) {
+        if(!loginRequired) return;
+        loginRequired = false;
+        if(!send) {
+            outbox.clear();
+            return;
+        }
         try {
-            out.write(msg+"\n");
-            out.flush();
+            flushOutbox();
         } catch(Exception e) {
-            e.printStackTrace();
+            // 끊김 -> 남은 것은 재접속 후 전송
+            connected = false;
+            try { socket.close(); } catch(Exception ignore) {}
+        }
+    }
+
+    /**
+     * 로그인 전에도 보낼 수 있는 요청인지 (session_lost 뒤 나머지는 outbox로)
+     */
+    private static boolean isLoginFrame(String msg) {
+        try {
+            String type = new JSONObject(msg).optString("type");
+            return type.equals("login") || type.equals("register");
+        } catch(Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * resume 응답의 missed_events를 받은 것처럼 전달 (수신 스레드에서, 그 뒤에 오는 프레임보다 먼저)
+     */
+    private void replayMissed(JSONObject resp) {
+        if(!resp.optString("type").equals("resume") || !resp.optString("status").equals("ok")) return;
+        JSONArray missed = resp.getJSONObject("data").optJSONArray("missed_events");
+        if(missed==null) return;
+        for(int i=0; i<missed.length(); i++) {
+            route(missed.getJSONObject(i));
         }
     }
 
+    private static JSONObject connectionFrame(String state) {
+        JSONObject data = new JSONObject();
+        data.put("state", state);
+        JSONObject frame = new JSONObject();
+        frame.put("type", "connection");
+        frame.put("status", "ok");
+        frame.put("data", data);
+        return frame;
+    }
+
+    /**
+     * 서버 주소 (파일 채널도 같은 호스트)
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * 메시지 전송 (응답을 기다리지 않음)
+     * - FX 스레드와 응답 처리 스레드(대기열 요청 전송)가 같이 쓰므로 synchronized
+     */
+    public synchronized void sendMessage(String msg) {
+        if(!connected || (loginRequired && !isLoginFrame(msg))) {
+            queue(msg);
+            return;
+        }
+        try {
+            write(msg);
+        } catch(Exception e) {
+            // 끊김 -> 보관했다가 재접속 후 전송 (소켓을 닫으면 수신 스레드가 재접속 시작)
+            queue(msg);
+            connected = false;
+            try { socket.close(); } catch(Exception ignore) {}
+        }
+    }
+
+    private synchronized void write(String msg) throws IOException {
+        out.write(msg+"\n");
+        out.flush();
+    }
+
+    /**
+     * 끊긴 동안 보낼 메시지 보관 (넘치면 오래된 것부터 버림)
+     */
+    private synchronized void queue(String msg) {
+        if(outbox.size()>=MAX_OUTBOX) outbox.poll();
+        outbox.add(msg);
+    }
+
     /**
      * 소켓 닫기
      */
     public void close() {
+        closed = true;
         try {
             if(socket!=null && !socket.isClosed()) {
                 socket.close();
@@ -86,18 +363,184 @@ public class NetworkClient {
     }
 
     /**
-     * MessageListener 등록
+     * 요청을 보내고 응답 프레임 {type, status, data}을 기다림 (timeout은 DEFAULT_TIMEOUT_MS)
+     */
+    public CompletableFuture<JSONObject> request(String type, JSONObject data) {
+        return request(type, data, DEFAULT_TIMEOUT_MS);
+    }
+
+    /**
+     * 요청을 보내고 응답 프레임 {type, status, data}을 기다림
+     * - status가 fail이어도 정상 완료 (호출한 쪽에서 확인), 시간 초과/연결 끊김이면 예외로 완료
+     * - 완료는 수신 스레드에서 -> 화면 작업은 Platform.runLater로
+     *
+     * @param timeoutMs 대기열에 있던 시간 포함
+     */
+    public CompletableFuture<JSONObject> request(String type, JSONObject data, long timeoutMs) {
+        long id = nextRequestId.getAndIncrement();
+        Request r = new Request(id, MessageProtocol.createRequest(type, data, id));
+        r.future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((resp, ex) -> {
+            boolean sent;
+            synchronized(r) {
+                sent = r.sentAt!=0;
+                r.sentAt = -1; // 끝남 (대기열에 남아 있었으면 보내지 않음)
+            }
+            if(sent) {
+                inFlight.remove(id);
+                slots.release();
+                sendWaiting();
+            } else {
+                waiting.remove(r);
+            }
+        });
+        waiting.add(r);
+        sendWaiting();
+        return r.future;
+    }
+
+    /**
+     * 최근 왕복 시간 (ms, 지수 평균)
+     * @return 아직 측정 전이면 -1
+     */
+    public long getRttMs() {
+        return rttMs;
+    }
+
+    /**
+     * 빈 자리만큼 대기열 요청 전송
+     */
+    private void sendWaiting() {
+        while(!waiting.isEmpty() && slots.tryAcquire()) {
+            Request r = waiting.poll();
+            if(r==null) {
+                slots.release();
+                return;
+            }
+            synchronized(r) {
+                if(r.sentAt!=0) { // 대기 중에 시간 초과
+                    slots.release();
+                    continue;
+                }
+                r.sentAt = System.nanoTime();
+                inFlight.put(r.id, r);
+            }
+            sendMessage(r.frame);
+        }
+    }
+
+    /**
+     * 세션 복구용: outbox/대기열을 거치지 않고 지금 연결로 바로 보내고 응답을 기다림 (재접속 스레드에서)
+     */
+    private JSONObject requestNow(String type, JSONObject data) throws Exception {
+        long id = nextRequestId.getAndIncrement();
+        Request r = new Request(id, MessageProtocol.createRequest(type, data, id));
+        r.sentAt = System.nanoTime();
+        inFlight.put(id, r);
+        try {
+            write(r.frame);
+            return r.future.get(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } finally {
+            inFlight.remove(id);
+        }
+    }
+
+    /**
+     * 연결이 끊기면 보낸 요청은 응답이 오지 않으므로 실패 (대기열/outbox에 있는 것은 재접속 후 전송)
+     */
+    private void failInFlight(Exception e) {
+        for(Request r : inFlight.values()) r.future.completeExceptionally(e);
+    }
+
+    /**
+     * 여러 type 구독 (방 상관없이)
+     * - handler는 FX 스레드에서 프레임 전체 {type, status, data}로 호출됨
+     *
+     * @param owner 이 노드의 창이 닫히면 자동 해제
+     */
+    public void subscribe(Node owner, Consumer<JSONObject> handler, String... types) {
+        subscribe(owner, ALL_ROOMS, handler, types);
+    }
+
+    /**
+     * 여러 type 구독 (data.room_id가 roomId인 프레임만)
+     *
+     * @param owner 이 노드의 창이 닫히면 자동 해제
+     */
+    public void subscribe(Node owner, int roomId, Consumer<JSONObject> handler, String... types) {
+        for(String type : types) {
+            Subscription s = new Subscription(type, roomId, handler);
+            subscriptions.computeIfAbsent(type, k -> new CopyOnWriteArrayList<>()).add(s);
+            bindOwner(owner, s);
+        }
+    }
+
+    /**
+     * owner가 붙은 창이 닫히거나, scene이 창에서 떨어지면 (로그인 -> 메인 화면 교체 등) 해제
+     * - initialize() 시점엔 아직 scene/창이 없으므로 붙을 때까지 기다림
      */
-    public void addMessageListener(MessageListener l) {
-        listeners.add(l);
+    private static void bindOwner(Node owner, Subscription s) {
+        if(owner.getScene()!=null) {
+            bindScene(owner.getScene(), s);
+        } else {
+            owner.sceneProperty().addListener((obs, old, scene) -> {
+                if(scene!=null) bindScene(scene, s);
+            });
+        }
+    }
+
+    private static void bindScene(Scene scene, Subscription s) {
+        if(scene.getWindow()!=null) bindWindow(scene.getWindow(), s);
+        scene.windowProperty().addListener((obs, old, w) -> {
+            if(w==null) s.cancel();
+            else bindWindow(w, s);
+        });
+    }
+
+    private static void bindWindow(Window w, Subscription s) {
+        w.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> s.cancel());
     }
 
     /**
-     * 수신 -> 리스너 알림
+     * 수신 -> 한 번 파싱해서 해당 구독자에게 (FX 스레드에서)
      */
-    private void notifyListeners(String msg) {
-        for(MessageListener l : listeners) {
-            l.onMessageReceived(msg);
+    private void dispatch(String line) {
+        JSONObject frame;
+        try {
+            frame = new JSONObject(line);
+        } catch(Exception e) {
+            e.printStackTrace();
+            return;
         }
+        route(frame);
+    }
+
+    private void route(JSONObject frame) {
+        // request()로 보낸 요청의 응답 -> 기다리는 쪽에만
+        long reqId = frame.optLong("request_id", 0);
+        Request req = reqId>0 ? inFlight.get(reqId) : null;
+        if(req!=null) {
+            long rtt = (System.nanoTime()-req.sentAt)/1_000_000;
+            rttMs = rttMs<0 ? rtt : (rttMs*7+rtt)/8;
+            replayMissed(frame); // 재접속 스레드가 아니라 여기서 -> 이후 실시간 프레임과 순서가 섞이지 않음
+            req.future.complete(frame);
+            return;
+        }
+
+        List<Subscription> subs = subscriptions.get(frame.optString("type"));
+        if(subs==null || subs.isEmpty()) return;
+
+        JSONObject d = frame.optJSONObject("data");
+        int roomId = d==null ? ALL_ROOMS : d.optInt("room_id", ALL_ROOMS);
+        List<Subscription> matched = new ArrayList<>();
+        for(Subscription s : subs) {
+            if(s.roomId==ALL_ROOMS || s.roomId==roomId) matched.add(s);
+        }
+        if(matched.isEmpty()) return;
+
+        Platform.runLater(() -> {
+            for(Subscription s : matched) {
+                if(!s.cancelled) s.handler.accept(frame);
+            }
+        });
     }
 }
@@ -5,22 +5,26 @@ import javafx.scene.control.Label;
 import javafx.scene.image.ImageView;
 import javafx.scene.image.Image;
 import javafx.application.Platform;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import org.json.JSONObject;
 
+import java.io.File;
+
 /**
  * ProfileController:
  * - 본인 프로필(Username, Nickname, etc.)
+ * - 프로필 사진은 파일 채널로 올리고 set_profile_image로 해시만 저장
  */
-public class ProfileController implements MessageListener {
+public class ProfileController {
     @FXML private ImageView profileImageView;
     @FXML private Label usernameLabel;
     @FXML private Label nicknameLabel;
 
     @FXML
     public void initialize() {
-        MainApp.getNetworkClient().addMessageListener(this);
+        MainApp.getNetworkClient().subscribe(usernameLabel, this::onServerMessage, "get_profile", "set_profile_image");
         loadProfile();
     }
 
@@ -31,30 +35,59 @@ public class ProfileController implements MessageListener {
         MainApp.getNetworkClient().sendMessage(req);
     }
 
+    @FXML
+    public void onChangeImage() {
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Select Profile Image");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Images", "*.png", "*.jpg", "*.jpeg", "*.gif"));
+        File f = fc.showOpenDialog(usernameLabel.getScene().getWindow());
+        if(f==null) return;
+
+        MainApp.getFileClient().upload(f).whenComplete((hash, ex) -> Platform.runLater(() -> {
+            if(ex!=null) {
+                MainApp.showErrorDialog("사진 업로드 실패: "+ex.getMessage());
+                return;
+            }
+            JSONObject data = new JSONObject();
+            data.put("hash", hash);
+            MainApp.getNetworkClient().sendMessage(MessageProtocol.createRequest("set_profile_image", data));
+        }));
+    }
+
     @FXML
     public void onClose() {
         Stage st = (Stage)usernameLabel.getScene().getWindow();
         st.close();
     }
 
-    @Override
-    public void onMessageReceived(String msg) {
-        Platform.runLater(()->{
-            JSONObject resp = new JSONObject(msg);
-            String type = resp.getString("type");
-            String status = resp.optString("status","");
-            JSONObject d = resp.optJSONObject("data");
-
-            if(type.equals("get_profile") && status.equals("ok")) {
-                JSONObject pf = d.getJSONObject("profile");
-                usernameLabel.setText("Username: "+pf.getString("username"));
-                nicknameLabel.setText("Nickname: "+pf.optString("nickname","NoName"));
-                String imgPath = pf.optString("profile_image","");
-                if(imgPath!=null && !imgPath.isEmpty()) {
-                    Image img = new Image("file:"+imgPath,true);
-                    profileImageView.setImage(img);
-                }
-            }
-        });
+    private void onServerMessage(JSONObject resp) {
+        String type = resp.getString("type");
+        String status = resp.optString("status","");
+        JSONObject d = resp.optJSONObject("data");
+
+        if(type.equals("get_profile") && status.equals("ok")) {
+            JSONObject pf = d.getJSONObject("profile");
+            usernameLabel.setText("Username: "+pf.getString("username"));
+            nicknameLabel.setText("Nickname: "+pf.optString("nickname","NoName"));
+            showImage(pf.optString("profile_image",""), pf.optString("profile_thumb",""));
+        }
+        else if(type.equals("set_profile_image")) {
+            if(status.equals("ok")) showImage(d.getString("profile_image"), d.optString("profile_thumb",""));
+            else MainApp.showErrorDialog("프로필 사진 변경 실패: "+d.optString("reason",""));
+        }
+    }
+
+    /**
+     * 프로필 사진 표시 (업로드한 사진이면 썸네일을 파일 채널로 받아서, 예전 데이터는 로컬 경로)
+     */
+    private void showImage(String img, String thumb) {
+        if(img==null || img.isEmpty()) return;
+        if(FileTransferClient.isHash(img)) {
+            String id = thumb.isEmpty() ? FileTransferClient.thumbId(img, 256) : thumb;
+            MainApp.getFileClient().downloadThumb(id).thenAccept(path ->
+                Platform.runLater(() -> profileImageView.setImage(new Image(path.toUri().toString(), true))));
+        } else {
+            profileImageView.setImage(new Image("file:"+img,true));
+        }
     }
 }
@@ -2,7 +2,6 @@ package client;
 
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.application.Platform;
 import org.json.JSONObject;
 import javafx.stage.Stage;
 
@@ -11,18 +10,18 @@ import javafx.stage.Stage;
  * - 친구 요청을 보내는 다이얼로그 컨트롤러.
  * - 사용자가 입력한 아이디를 서버로 전송하여 친구 요청을 처리합니다.
  */
-public class SendFriendRequestDialogController implements MessageListener {
+public class SendFriendRequestDialogController {
 
     @FXML private TextField usernameField; // 친구 요청을 보낼 사용자 아이디 입력 필드
     @FXML private Label statusLabel;      // 상태 메시지를 표시하는 라벨
 
     /**
      * 초기화 메서드:
-     * - 메시지 리스너를 등록하여 서버 응답을 처리할 준비를 합니다.
+     * - 서버 응답을 구독하여 처리할 준비를 합니다. (창이 닫히면 자동 해제)
      */
     @FXML
     public void initialize() {
-        MainApp.getNetworkClient().addMessageListener(this);
+        MainApp.getNetworkClient().subscribe(usernameField, this::onServerMessage, "send_friend_request");
     }
 
     /**
@@ -52,28 +51,24 @@ public class SendFriendRequestDialogController implements MessageListener {
     /**
      * 서버로부터 수신한 메시지를 처리합니다.
      *
-     * @param msg 서버로부터 수신한 메시지(JSON 형식)
+     * @param resp 서버 프레임 {type, status, data}
      */
-    @Override
-    public void onMessageReceived(String msg) {
-        Platform.runLater(() -> { // UI 업데이트를 위한 JavaFX 플랫폼 스레드 실행
-            JSONObject resp = new JSONObject(msg);
-            String type = resp.getString("type");       // 메시지 타입
-            String status = resp.optString("status", ""); // 처리 상태
-            JSONObject d = resp.optJSONObject("data"); // 추가 데이터
+    private void onServerMessage(JSONObject resp) {
+        String type = resp.getString("type");       // 메시지 타입
+        String status = resp.optString("status", ""); // 처리 상태
+        JSONObject d = resp.optJSONObject("data"); // 추가 데이터
 
-            // 친구 요청 전송에 대한 응답 처리
-            if (type.equals("send_friend_request")) {
-                if (status.equals("ok")) {
-                    // 성공 메시지 표시 및 다이얼로그 창 닫기
-                    statusLabel.setText("친구 요청 전송 성공!");
-                    Stage st = (Stage) usernameField.getScene().getWindow();
-                    st.close();
-                } else {
-                    // 실패 메시지 표시
-                    statusLabel.setText("요청 실패: " + d.optString("reason", ""));
-                }
+        // 친구 요청 전송에 대한 응답 처리
+        if (type.equals("send_friend_request")) {
+            if (status.equals("ok")) {
+                // 성공 메시지 표시 및 다이얼로그 창 닫기
+                statusLabel.setText("친구 요청 전송 성공!");
+                Stage st = (Stage) usernameField.getScene().getWindow();
+                st.close();
+            } else {
+                // 실패 메시지 표시
+                statusLabel.setText("요청 실패: " + d.optString("reason", ""));
             }
-        });
+        }
     }
 }
@@ -0,0 +1,102 @@
+package client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SyncState:
+ * - 재접속 후 보낼 sync 요청의 재료를 한곳에 모아 둠
+ *   1) 열려 있는 채팅방마다 화면에 반영한 마지막 메시지 ID
+ *   2) 목록(rooms/friends/requests)의 epoch/버전
+ * - 서버는 이걸 보고 놓친 메시지(sync_messages 이벤트)와 목록 변경분(sync 응답)만 보냄
+ */
+public class SyncState {
+    private static final Map<Integer, Integer> lastIds = new HashMap<>(); // roomId -> 마지막 메시지 ID
+    private static final Map<String, Long> listVersions = new HashMap<>(); // list -> 적용된 마지막 버전
+    private static long listEpoch = -1;
+
+    /**
+     * 채팅방 창이 열림
+     */
+    public static synchronized void openRoom(int roomId) {
+        lastIds.putIfAbsent(roomId, 0);
+    }
+
+    /**
+     * 채팅방 창이 닫힘 (닫힌 방은 sync에서 메시지를 받지 않고 안 읽은 수만 받음)
+     */
+    public static synchronized void closeRoom(int roomId) {
+        lastIds.remove(roomId);
+    }
+
+    /**
+     * 화면에 반영한 메시지 기록
+     * @return 처음 보는 메시지면 true (sync와 실시간 new_message가 겹친 경우 false)
+     */
+    public static synchronized boolean onMessage(int roomId, int messageId) {
+        Integer last = lastIds.get(roomId);
+        if(last != null && messageId <= last) return false;
+        lastIds.put(roomId, messageId);
+        return true;
+    }
+
+    /**
+     * load_messages로 목록을 새로 받았을 때 (이전 기록과 상관없이 교체)
+     */
+    public static synchronized void resetRoom(int roomId, int lastId) {
+        lastIds.put(roomId, lastId);
+    }
+
+    public static synchronized long getListEpoch() {
+        return listEpoch;
+    }
+
+    /**
+     * @return 아직 스냅샷을 받지 않았으면 null
+     */
+    public static synchronized Long getListVersion(String list) {
+        return listVersions.get(list);
+    }
+
+    public static synchronized void setListVersion(String list, long epoch, long version) {
+        listEpoch = epoch;
+        listVersions.put(list, version);
+    }
+
+    /**
+     * sync 요청 생성
+     * data: {rooms:[{room_id, last_id}], lists:{list:{epoch, version}}}
+     */
+    public static synchronized String createSyncRequest() {
+        JSONArray rooms = new JSONArray();
+        for(Map.Entry<Integer, Integer> e : lastIds.entrySet()) {
+            JSONObject r = new JSONObject();
+            r.put("room_id", e.getKey());
+            r.put("last_id", e.getValue());
+            rooms.put(r);
+        }
+        JSONObject lists = new JSONObject();
+        for(Map.Entry<String, Long> e : listVersions.entrySet()) {
+            JSONObject v = new JSONObject();
+            v.put("epoch", listEpoch);
+            v.put("version", e.getValue());
+            lists.put(e.getKey(), v);
+        }
+        JSONObject data = new JSONObject();
+        data.put("rooms", rooms);
+        data.put("lists", lists);
+        return MessageProtocol.createRequest("sync", data);
+    }
+
+    /**
+     * 로그아웃 등으로 처음부터 다시 받을 때
+     */
+    public static synchronized void clear() {
+        lastIds.clear();
+        listVersions.clear();
+        listEpoch = -1;
+    }
+}
@@ -45,6 +45,7 @@ CREATE TABLE IF NOT EXISTS chat_room_members (
     id INT AUTO_INCREMENT PRIMARY KEY,
     room_id INT NOT NULL,
     user_id INT NOT NULL,
+    last_read_message_id INT NOT NULL DEFAULT 0, -- 읽음 표시 watermark
     FOREIGN KEY (room_id) REFERENCES chat_rooms(id) ON DELETE CASCADE,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
@@ -55,7 +56,59 @@ CREATE TABLE IF NOT EXISTS messages (
     chat_room_id INT NOT NULL,
     sender_id INT NOT NULL,
     message TEXT NOT NULL,
-    timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    seq BIGINT NOT NULL DEFAULT 0,               -- 방 안에서의 순서 (방 주인이 매김)
+    timestamp TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3),
+    UNIQUE KEY uk_room_seq (chat_room_id, seq),
+    INDEX idx_room_id (chat_room_id, id),         -- 재접속 sync (id 이후 메시지)
     FOREIGN KEY (chat_room_id) REFERENCES chat_rooms(id) ON DELETE CASCADE,
     FOREIGN KEY (sender_id) REFERENCES users(id) ON DELETE CASCADE
 );
+
+-- 8. scheduled_messages (예약 메시지, 보낸 뒤 sent=1)
+CREATE TABLE IF NOT EXISTS scheduled_messages (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    chat_room_id INT NOT NULL,
+    sender_id INT NOT NULL,
+    message TEXT NOT NULL,
+    send_at TIMESTAMP(3) NOT NULL,
+    sent TINYINT NOT NULL DEFAULT 0,
+    INDEX idx_pending (sent, send_at),
+    FOREIGN KEY (chat_room_id) REFERENCES chat_rooms(id) ON DELETE CASCADE,
+    FOREIGN KEY (sender_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- 9. polls / poll_options / poll_votes (방 안의 투표, 유저당 1표)
+CREATE TABLE IF NOT EXISTS polls (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    chat_room_id INT NOT NULL,
+    creator_id INT NOT NULL,
+    question VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (chat_room_id) REFERENCES chat_rooms(id) ON DELETE CASCADE,
+    FOREIGN KEY (creator_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS poll_options (
+    poll_id INT NOT NULL,
+    idx INT NOT NULL,
+    text VARCHAR(255) NOT NULL,
+    PRIMARY KEY (poll_id, idx),
+    FOREIGN KEY (poll_id) REFERENCES polls(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS poll_votes (
+    poll_id INT NOT NULL,
+    user_id INT NOT NULL,
+    option_idx INT NOT NULL,
+    PRIMARY KEY (poll_id, user_id),
+    FOREIGN KEY (poll_id) REFERENCES polls(id) ON DELETE CASCADE,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- 기존 DB 업그레이드용
+-- ALTER TABLE chat_room_members ADD COLUMN last_read_message_id INT NOT NULL DEFAULT 0;
+-- ALTER TABLE messages ADD COLUMN seq BIGINT NOT NULL DEFAULT 0;
+-- UPDATE messages SET seq=id;
+-- ALTER TABLE messages MODIFY timestamp TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3);
+-- ALTER TABLE messages ADD UNIQUE KEY uk_room_seq (chat_room_id, seq);
+-- ALTER TABLE messages ADD INDEX idx_room_id (chat_room_id, id);
@@ -1,6 +1,7 @@
 module JavaOHTALK_1 {
 	requires javafx.controls;
 	requires java.sql;
+	requires java.desktop;
 	requires javafx.fxml;
 	requires javafx.graphics;
 	requires org.json;
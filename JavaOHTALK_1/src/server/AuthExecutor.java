@@ -0,0 +1,99 @@
+package server;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AuthExecutor:
+ * - 로그인/회원가입(비밀번호 해싱 + DB 조회)을 전용 스레드풀에서 처리
+ * - 큐가 가득 차면 즉시 거절 (admission control)
+ * - 큐 대기시간(queue time) 통계 수집
+ * - TIMEOUT_MS 안에 시작하지 못한 작업은 취소 (실행되지 않음 -> "Server busy" 후에 회원가입이 저장되는 일 없음)
+ *   이미 시작한 작업은 끝날 때까지 기다려 실제 결과를 돌려줌
+ */
+public class AuthExecutor {
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int QUEUE_CAPACITY = 256;   // 대기 가능한 인증 작업 수
+    private static final long TIMEOUT_MS = 5000;     // 작업이 시작되기까지 호출자가 기다리는 최대 시간
+    private static final long REPORT_EVERY = 1000;   // N건마다 통계 출력
+
+    private final ThreadPoolExecutor pool;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queuedNanos = new LongAdder();
+    private final AtomicLong maxQueuedNanos = new AtomicLong();
+
+    public AuthExecutor() {
+        pool = new ThreadPoolExecutor(
+            THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            r -> {
+                Thread t = new Thread(r, "auth-worker");
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * 인증 작업을 풀에 넣고 결과를 기다림
+     * @throws RejectedExecutionException 큐가 가득 찬 경우
+     * @throws TimeoutException           TIMEOUT_MS 안에 시작하지 못한 경우 (작업은 취소됨)
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+        final long enqueuedAt = System.nanoTime();
+        final AtomicBoolean started = new AtomicBoolean(); // 작업 시작과 호출자 포기 중 먼저 된 쪽만
+        Future<T> f;
+        try {
+            f = pool.submit(() -> {
+                if(!started.compareAndSet(false, true)) return null; // 호출자가 이미 포기함
+                recordQueueTime(System.nanoTime() - enqueuedAt);
+                return task.call();
+            });
+        } catch(RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+        try {
+            try {
+                return f.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch(TimeoutException e) {
+                if(started.compareAndSet(false, true)) { // 아직 큐에 있음 -> 실행하지 않음
+                    f.cancel(false);
+                    rejected.increment();
+                    throw e;
+                }
+                return f.get(); // 이미 실행 중 -> DB에 반영됐을 수 있으므로 결과를 그대로 알려 줌
+            }
+        } catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw (cause instanceof Exception) ? (Exception)cause : e;
+        }
+    }
+
+    private void recordQueueTime(long nanos) {
+        queuedNanos.add(nanos);
+        maxQueuedNanos.accumulateAndGet(nanos, Math::max);
+        completed.increment();
+        if(completed.sum() % REPORT_EVERY == 0) {
+            System.out.println("[auth] " + getStats());
+        }
+    }
+
+    /**
+     * 평균/최대 큐 대기시간, 처리/거절 건수
+     */
+    public String getStats() {
+        long n = completed.sum();
+        double avgMs = n==0 ? 0 : queuedNanos.sum() / (double)n / 1_000_000.0;
+        return String.format("completed=%d rejected=%d queued=%d avgQueueMs=%.2f maxQueueMs=%.2f",
+            n, rejected.sum(), pool.getQueue().size(), avgMs, maxQueuedNanos.get()/1_000_000.0);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
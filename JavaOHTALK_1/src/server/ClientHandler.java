@@ -2,23 +2,35 @@ package server;
 
 import java.io.*;
 import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * ClientHandler:
  * - 각 클라이언트와 소켓 연결
  * - 메시지 수신 -> RequestHandler로 처리 -> 응답 전송
  * - userId 보관(로그인 후)
+ * - 연결별 요청 제한 bucket 보관
+ * - 보내는 프레임은 연결별 큐(최대 MAX_OUTBOUND개)에 넣고 쓰기 스레드가 전송
+ *   -> push하는 쪽(방 주인 스레드 등)은 소켓 쓰기로 막히지 않음, 큐가 넘치는(안 읽는) 클라이언트는 끊음
+ *   (끊긴 뒤 이벤트는 재접속 유예시간 동안 세션에 보관 -> resume 때 재전송)
  */
 public class ClientHandler extends Thread {
+    private static final int MAX_OUTBOUND = 1000;
+
     private Socket socket;
     private ServerMain server;
     private BufferedReader in;
     private BufferedWriter out;
     private int userId = -1; // 아직 로그인 안했다면 -1
+    private final RateLimiter.Conn rateLimits;
+    private final BlockingQueue<String> outbound = new LinkedBlockingQueue<>(MAX_OUTBOUND); // 미리 할당하지 않음 (대부분 연결은 비어 있음)
+    private volatile boolean closed = false;
 
     public ClientHandler(Socket socket, ServerMain server) {
         this.socket = socket;
         this.server = server;
+        this.rateLimits = server.getRateLimiter().newConnection();
     }
 
     @Override
@@ -26,33 +38,64 @@ public class ClientHandler extends Thread {
         try {
             in = new BufferedReader(new InputStreamReader(socket.getInputStream(),"UTF-8"));
             out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),"UTF-8"));
+            Thread writer = new Thread(this::writeLoop, "client-writer");
+            writer.setDaemon(true);
+            writer.start();
 
             String line;
             while((line=in.readLine())!=null) {
                 // RequestHandler에 처리 맡김
                 String response = server.getRequestHandler().handleRequest(this, line);
-                sendMessage(response);
+                if(response!=null) { // null이면 응답 없음 (resume은 핸들러가 직접 전송, typing은 응답 자체가 없음)
+                    sendMessage(response);
+                }
             }
         } catch(Exception e) {
             e.printStackTrace();
         } finally {
+            closed = true;
+            outbound.offer(""); // 쓰기 스레드 깨움 (빈 문자열 = 종료)
             // 연결 종료 -> user offline
             if(userId>0) {
-                server.setUserOffline(userId);
+                server.setUserOffline(userId, this);
             }
             try{socket.close();}catch(Exception ignore){}
         }
     }
 
     /**
-     * 서버 -> 클라이언트 메시지
+     * 서버 -> 클라이언트 메시지 (큐에 넣고 바로 반환)
+     * - 응답(이 스레드)과 push(다른 스레드들)가 같은 큐로 -> 넣은 순서대로 나감
+     * - 큐가 가득 차면(클라이언트가 읽지 않음) 연결을 끊음
      */
     public void sendMessage(String msg) {
+        if(closed) return;
+        if(!outbound.offer(msg)) {
+            System.out.println("Slow consumer (user "+userId+"): "+MAX_OUTBOUND+" frames queued, disconnecting");
+            closed = true;
+            try{socket.close();}catch(Exception ignore){} // 받기 스레드가 끝나면서 offline 처리
+        }
+    }
+
+    /**
+     * 쓰기 스레드: 큐에 있는 것을 모아 쓰고 한 번 flush
+     */
+    private void writeLoop() {
         try {
-            out.write(msg+"\n");
-            out.flush();
+            while(true) {
+                String msg = outbound.take();
+                do {
+                    if(msg.isEmpty()) return; // 종료
+                    out.write(msg);
+                    out.write("\n");
+                } while((msg = outbound.poll())!=null);
+                out.flush();
+            }
         } catch(Exception e) {
-            e.printStackTrace();
+            // 소켓이 닫힘 -> 받기 스레드도 곧 끝남
+            if(!closed) System.out.println("Write to user "+userId+" failed: "+e.getMessage());
+            closed = true;
+            try{socket.close();}catch(Exception ignore){}
         }
     }
 
@@ -69,4 +112,8 @@ public class ClientHandler extends Thread {
     public int getUserId() {
         return userId;
     }
+
+    public RateLimiter.Conn getRateLimits() {
+        return rateLimits;
+    }
 }
@@ -0,0 +1,528 @@
+package server;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * ClusterBus:
+ * - 여러 ServerMain 노드를 TCP로 연결 (노드 간 JSON 한 줄 프레임)
+ * - 각 노드는 자기 노드에 접속한 유저 변경을 다른 노드에 알림 -> ClusterPresence (userId -> 노드들)
+ *   - 변경은 BATCH_MS마다 한 프레임으로 묶어서 (대량 재접속 때도 프레임 수는 일정)
+ *   - 프레임마다 incarnation + seq, HEARTBEAT_MS마다 하트비트 -> 유실/재시작/장애 감지
+ * - 다른 노드 유저에게 가는 이벤트는 그 노드로 한 번만 전달 (여러 유저면 한 프레임에 묶음)
+ * - 방마다 주인 노드 (HashRing, 연결된 노드 중에서) -> 메시지는 주인 노드가 seq를 매기고 fan-out
+ *
+ * 연결 방식:
+ * - 각 노드는 bindHost:clusterPort에서 대기 (inbound: 받기 전용, 기본 loopback -> 클러스터 전용 인터페이스로 설정)
+ * - peers("2@localhost:6008,3@localhost:6009")로 outbound 연결 (보내기 전용, 끊기면 재접속)
+ * - 인증: 받는 쪽이 연결마다 challenge(임의 nonce)를 보내고, 보내는 쪽은 공유 secret으로 만든
+ *   HMAC-SHA256을 hello에 담음 -> 맞지 않거나 peers에 없는 노드면 끊음 (hello 전에는 어떤 프레임도 처리하지 않음)
+ * - 받은 프레임 중 클라이언트에 쓰거나 처리가 무거운 것(deliver, delta, call)은 링크별 작업 스레드에서
+ *   -> 받기 스레드는 파싱/분배만 (느린 클라이언트가 있어도 reply/hb가 밀리지 않음), 링크 안의 순서는 유지
+ *
+ * 프레임:
+ * - challenge {node, nonce}   (받는 쪽 -> 보내는 쪽, 연결 직후 1번)
+ * - hello    {node, mac}      mac = HMAC(secret, "hello|보내는 노드|받는 노드|nonce")
+ * - welcome  {node}          (받는 쪽 -> 보내는 쪽, 인증 성공 -> 이때부터 연결된 것으로)
+ * - users    {node, inc, seq, full, online:[...], offline:[...]}
+ * - hb       {node, inc, seq}
+ * - snap_req {node}   (받는 쪽이 유실을 감지 -> 보내는 노드에 전체 목록 요청)
+ * - call     {call, node, kind, args} -> reply {call, result}   (방 주인 노드에 요청: post, vote, ..., inbox_drain)
+ * - room     {room}   (방 멤버 변경 -> 멤버 캐시 무효화)
+ * - deliver {users:[...], frame}
+ * - delta   {user, list, event, data}
+ */
+public class ClusterBus {
+    private static final long RECONNECT_MS = 1000;
+    private static final long CALL_TIMEOUT_MS = 5000;
+    private static final int HANDSHAKE_MS = 5000;
+
+    private final int nodeId;
+    private final String bindHost;
+    private final int port;
+    private final byte[] secret;
+    private final SecureRandom random = new SecureRandom();
+    private final ServerMain server;
+    private final long incarnation = System.currentTimeMillis(); // 노드 재시작마다 커짐
+    private final Map<Integer, PeerLink> peers = new ConcurrentHashMap<>();   // nodeId -> outbound
+    private final ClusterPresence registry = new ClusterPresence();        // 다른 노드 유저 -> 노드들
+    private final HashRing<Integer> nodeRing = new HashRing<>();           // 방 -> 주인 노드
+    private final AtomicLong callIds = new AtomicLong();
+    private final Map<Long, CompletableFuture<JSONObject>> calls = new ConcurrentHashMap<>();
+
+    // 이 노드 유저 변경 (BATCH_MS마다 내보냄, this로 동기화)
+    private long seq = 0;
+    private final Set<Integer> pendingOnline = new LinkedHashSet<>();
+    private final Set<Integer> pendingOffline = new LinkedHashSet<>();
+    private final ScheduledExecutorService timer;
+
+    /**
+     * @param bindHost 대기할 인터페이스 (클러스터 전용 망 주소, null이면 loopback)
+     * @param secret   모든 노드가 같은 값 (노드 간 인증용)
+     */
+    public ClusterBus(int nodeId, String bindHost, int port, String peerSpec, String secret, ServerMain server) {
+        if(secret==null || secret.isEmpty()) throw new IllegalArgumentException("cluster secret is required");
+        this.nodeId = nodeId;
+        this.bindHost = bindHost;
+        this.port = port;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.server = server;
+        if(peerSpec!=null && !peerSpec.isEmpty()) {
+            for(String p : peerSpec.split(",")) {
+                // "id@host:port"
+                String[] idAddr = p.trim().split("@");
+                String[] hostPort = idAddr[1].split(":");
+                int pid = Integer.parseInt(idAddr[0]);
+                peers.put(pid, new PeerLink(pid, hostPort[0], Integer.parseInt(hostPort[1])));
+                nodeRing.add(pid);
+            }
+        }
+        nodeRing.add(nodeId);
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cluster-timer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * inbound 대기 + outbound 연결 시작
+     */
+    public void start() throws IOException {
+        ServerSocket ss = new ServerSocket(port, 50, InetAddress.getByName(bindHost)); // bindHost가 null이면 loopback
+        System.out.println("Cluster node "+nodeId+" listening on "+ss.getLocalSocketAddress());
+        Thread acceptor = new Thread(() -> {
+            while(true) {
+                try {
+                    Socket s = ss.accept();
+                    Thread t = new Thread(() -> readInbound(s), "cluster-in");
+                    t.setDaemon(true);
+                    t.start();
+                } catch(Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }, "cluster-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        for(PeerLink l : peers.values()) {
+            l.start();
+        }
+        timer.scheduleAtFixedRate(this::flushUsers, ClusterPresence.BATCH_MS, ClusterPresence.BATCH_MS, TimeUnit.MILLISECONDS);
+        timer.scheduleAtFixedRate(() -> {
+            heartbeat();
+            registry.expire();
+        }, ClusterPresence.HEARTBEAT_MS, ClusterPresence.HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 유저가 접속한 다른 노드들 (없으면 빈 Set) - 조회 1회, 네트워크 없음
+     */
+    public Set<Integer> nodesOf(int userId) {
+        return registry.nodesOf(userId);
+    }
+
+    public String getStats() {
+        return registry.getStats();
+    }
+
+    /**
+     * 지금 연결된 다른 노드들
+     */
+    public List<Integer> upPeers() {
+        List<Integer> up = new ArrayList<>();
+        for(PeerLink l : peers.values()) {
+            if(l.isUp()) up.add(l.peerId);
+        }
+        return up;
+    }
+
+    /**
+     * 방 주인 노드 (연결이 끊긴 노드는 건너뜀 -> 그 노드 몫만 다음 노드로)
+     */
+    public int ownerOf(int roomId) {
+        return nodeRing.get(roomId, n -> n==nodeId || peers.get(n).isUp());
+    }
+
+    // ------------------------------------------------
+    // 보내기
+    // ------------------------------------------------
+
+    /**
+     * 이 노드 유저 접속/종료 (다음 배치에 실어 모든 노드에 알림)
+     * - 배치 안에서 접속->종료가 연달아 오면 마지막 상태만 나감
+     */
+    public synchronized void announce(int userId, boolean online) {
+        if(online) {
+            pendingOffline.remove(userId);
+            pendingOnline.add(userId);
+        } else {
+            pendingOnline.remove(userId);
+            pendingOffline.add(userId);
+        }
+    }
+
+    /**
+     * 모인 변경을 한 프레임으로 (seq 1 증가)
+     */
+    private synchronized void flushUsers() {
+        if(pendingOnline.isEmpty() && pendingOffline.isEmpty()) return;
+        seq++;
+        JSONObject f = usersFrame(false);
+        f.put("online", new JSONArray(pendingOnline));
+        f.put("offline", new JSONArray(pendingOffline));
+        pendingOnline.clear();
+        pendingOffline.clear();
+        broadcast(f.toString());
+    }
+
+    private synchronized void heartbeat() {
+        JSONObject f = new JSONObject();
+        f.put("op", "hb");
+        f.put("node", nodeId);
+        f.put("inc", incarnation);
+        f.put("seq", seq);
+        broadcast(f.toString());
+    }
+
+    /**
+     * 이 노드 유저 전체 목록을 link로 (대기 중인 변경은 먼저 내보내서 seq 순서 유지)
+     */
+    private synchronized void sendSnapshot(PeerLink l) {
+        flushUsers();
+        JSONObject f = usersFrame(true);
+        f.put("online", new JSONArray(server.getLocalUserIds()));
+        l.send(f.toString());
+    }
+
+    private JSONObject usersFrame(boolean full) {
+        JSONObject f = new JSONObject();
+        f.put("op", "users");
+        f.put("node", nodeId);
+        f.put("inc", incarnation);
+        f.put("seq", seq);
+        f.put("full", full);
+        return f;
+    }
+
+    /**
+     * node에 있는 users에게 frame 전달 (한 프레임)
+     */
+    public void deliver(int node, Collection<Integer> users, String frame) {
+        JSONObject f = new JSONObject();
+        f.put("op", "deliver");
+        f.put("users", new JSONArray(users));
+        f.put("frame", frame);
+        send(node, f.toString());
+    }
+
+    /**
+     * 목록 delta는 유저가 접속한 노드에서 버전을 매겨야 하므로 그 노드로 넘김
+     */
+    public void forwardDelta(int node, int userId, String list, String type, JSONObject data) {
+        JSONObject f = new JSONObject();
+        f.put("op", "delta");
+        f.put("user", userId);
+        f.put("list", list);
+        f.put("event", type);
+        f.put("data", data);
+        send(node, f.toString());
+    }
+
+    /**
+     * 방 주인 노드에 요청 (ServerMain.handleOwnerCall에서 처리)
+     * @return 주인 노드의 결과 (실패 시 null)
+     * @throws IOException 그 노드로 연결이 없어 보내지 못함 (상대는 요청을 받지 않았음)
+     */
+    public JSONObject callOwner(int node, String kind, JSONObject args) throws Exception {
+        long id = callIds.incrementAndGet();
+        CompletableFuture<JSONObject> f = new CompletableFuture<>();
+        calls.put(id, f);
+        try {
+            JSONObject req = new JSONObject();
+            req.put("op", "call");
+            req.put("call", id);
+            req.put("node", nodeId);
+            req.put("kind", kind);
+            req.put("args", args);
+            PeerLink l = peers.get(node);
+            if(l==null || !l.send(req.toString())) throw new IOException("node "+node+" is not connected");
+            return f.get(CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } finally {
+            calls.remove(id);
+        }
+    }
+
+    /**
+     * 방 멤버가 바뀐 것을 모든 노드에 알림
+     */
+    public void roomChanged(int roomId) {
+        broadcast(new JSONObject().put("op","room").put("room",roomId).toString());
+    }
+
+    private void send(int node, String line) {
+        PeerLink l = peers.get(node);
+        if(l!=null) l.send(line);
+    }
+
+    private void broadcast(String line) {
+        for(PeerLink l : peers.values()) {
+            l.send(line);
+        }
+    }
+
+    // ------------------------------------------------
+    // 받기
+    // ------------------------------------------------
+
+    private void readInbound(Socket s) {
+        int from = -1;
+        ExecutorService work = null;
+        try(BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(),"UTF-8"))) {
+            from = authenticate(s, in);
+            if(from<0) return;
+            int node = from;
+            work = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "cluster-work-"+node);
+                t.setDaemon(true);
+                return t;
+            });
+            String line;
+            while((line=in.readLine())!=null) {
+                handle(new JSONObject(line), work);
+            }
+        } catch(Exception e) {
+            System.out.println("Cluster link from node "+from+" closed: "+e.getMessage());
+        } finally {
+            if(from>0) registry.dropNode(from);
+            if(work!=null) work.shutdown();
+            try{s.close();}catch(Exception ignore){}
+        }
+    }
+
+    /**
+     * challenge를 보내고 hello 확인 (HANDSHAKE_MS 안에)
+     * @return 인증된 노드 번호, 실패하면 -1 (호출한 쪽이 연결을 닫음)
+     */
+    private int authenticate(Socket s, BufferedReader in) throws IOException {
+        byte[] n = new byte[16];
+        random.nextBytes(n);
+        String nonce = hex(n);
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(),"UTF-8"));
+        out.write(new JSONObject().put("op","challenge").put("node",nodeId).put("nonce",nonce).toString());
+        out.write("\n");
+        out.flush();
+
+        s.setSoTimeout(HANDSHAKE_MS);
+        String line = in.readLine();
+        s.setSoTimeout(0);
+        try {
+            JSONObject f = new JSONObject(line);
+            int node = f.getInt("node");
+            byte[] expect = hmac("hello|"+node+"|"+nodeId+"|"+nonce).getBytes(StandardCharsets.UTF_8);
+            if(f.getString("op").equals("hello") && peers.containsKey(node)
+                    && MessageDigest.isEqual(expect, f.getString("mac").getBytes(StandardCharsets.UTF_8))) {
+                out.write(new JSONObject().put("op","welcome").put("node",nodeId).toString());
+                out.write("\n");
+                out.flush();
+                return node; // 뒤이어 오는 전체 목록(full)으로 다시 채움
+            }
+        } catch(Exception e) {
+            // 형식이 틀린 hello
+        }
+        System.out.println("Cluster link from "+s.getRemoteSocketAddress()+" rejected: bad hello");
+        return -1;
+    }
+
+    private String hmac(String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return hex(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch(Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String hex(byte[] b) {
+        StringBuilder sb = new StringBuilder(b.length*2);
+        for(byte x : b) {
+            sb.append(Character.forDigit((x>>4)&0x0f, 16)).append(Character.forDigit(x&0x0f, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 받기 스레드에서: 등록부/응답은 바로, 로컬 유저에게 쓰거나 처리하는 것은 work로
+     */
+    private void handle(JSONObject f, ExecutorService work) {
+        switch(f.getString("op")) {
+            case "users": {
+                int node = f.getInt("node");
+                if(registry.applyUpdate(node, f.getLong("inc"), f.getLong("seq"),
+                        f.optJSONArray("online"), f.optJSONArray("offline"), f.optBoolean("full"))) {
+                    requestSnapshot(node);
+                }
+                break;
+            }
+            case "hb": {
+                int node = f.getInt("node");
+                if(registry.onHeartbeat(node, f.getLong("inc"), f.getLong("seq"))) {
+                    requestSnapshot(node);
+                }
+                break;
+            }
+            case "call": {
+                // 작업 스레드에서 처리 (post는 주인 스레드로 넘어감), 끝나면 응답
+                long call = f.getLong("call");
+                int from = f.getInt("node");
+                work.execute(() -> server.handleOwnerCall(f.getString("kind"), f.getJSONObject("args"))
+                      .whenComplete((m, ex) -> {
+                          JSONObject r = new JSONObject();
+                          r.put("op", "reply");
+                          r.put("call", call);
+                          if(m!=null) r.put("result", m);
+                          send(from, r.toString());
+                      }));
+                break;
+            }
+            case "room": {
+                server.getMembers().invalidateRoom(f.getInt("room"));
+                break;
+            }
+            case "reply": {
+                CompletableFuture<JSONObject> c = calls.get(f.getLong("call"));
+                if(c!=null) c.complete(f.optJSONObject("result"));
+                break;
+            }
+            case "snap_req": {
+                PeerLink l = peers.get(f.getInt("node"));
+                if(l!=null) sendSnapshot(l);
+                break;
+            }
+            case "deliver": {
+                JSONArray users = f.getJSONArray("users");
+                String frame = f.getString("frame");
+                work.execute(() -> {
+                    for(int i=0; i<users.length(); i++) {
+                        server.deliverLocal(users.getInt(i), frame);
+                    }
+                });
+                break;
+            }
+            case "delta": {
+                work.execute(() -> server.pushDeltaLocal(f.getInt("user"), f.getString("list"), f.getString("event"), f.getJSONObject("data")));
+                break;
+            }
+        }
+    }
+
+    private void requestSnapshot(int node) {
+        send(node, new JSONObject().put("op","snap_req").put("node",nodeId).toString());
+    }
+
+    /**
+     * 다른 노드로 가는 outbound 연결 (끊기면 RECONNECT_MS 후 재접속)
+     */
+    private class PeerLink {
+        final int peerId;
+        final String host;
+        final int peerPort;
+        private BufferedWriter out;
+
+        PeerLink(int peerId, String host, int peerPort) {
+            this.peerId = peerId;
+            this.host = host;
+            this.peerPort = peerPort;
+        }
+
+        void start() {
+            Thread t = new Thread(this::run, "cluster-out-"+peerId);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        private void run() {
+            while(true) {
+                try(Socket s = new Socket(host, peerPort)) {
+                    // 상대의 challenge에 hello로 답하고 welcome을 받으면 연결된 것으로
+                    s.setSoTimeout(HANDSHAKE_MS);
+                    BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(),"UTF-8"));
+                    JSONObject ch = new JSONObject(in.readLine());
+                    if(!ch.getString("op").equals("challenge") || ch.getInt("node")!=peerId) {
+                        throw new IOException("unexpected challenge from "+host+":"+peerPort);
+                    }
+                    BufferedWriter w = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(),"UTF-8"));
+                    w.write(new JSONObject().put("op","hello").put("node",nodeId)
+                        .put("mac", hmac("hello|"+nodeId+"|"+peerId+"|"+ch.getString("nonce"))).toString());
+                    w.write("\n");
+                    w.flush();
+                    String ok = in.readLine();
+                    if(ok==null || !new JSONObject(ok).getString("op").equals("welcome")) {
+                        System.out.println("Cluster link to node "+peerId+" rejected (check cluster.secret)");
+                        throw new IOException("rejected");
+                    }
+                    s.setSoTimeout(0);
+                    synchronized(this) {
+                        out = w;
+                    }
+                    // 접속 직후 이 노드 유저 전체 목록
+                    sendSnapshot(this);
+                    System.out.println("Cluster link to node "+peerId+" up");
+                    // 상대는 welcome 뒤로 이 소켓에 쓰지 않음 -> read가 끝나면 끊긴 것
+                    while(in.read()!=-1) { }
+                } catch(Exception e) {
+                    // 상대 노드가 아직 안 떴거나 끊김
+                } finally {
+                    synchronized(this) { out = null; }
+                }
+                try { Thread.sleep(RECONNECT_MS); } catch(InterruptedException e) { return; }
+            }
+        }
+
+        synchronized boolean isUp() {
+            return out!=null;
+        }
+
+        /**
+         * @return 썼으면 true (끊긴 동안은 버림, 재접속 시 전체 목록을 다시 보냄)
+         */
+        synchronized boolean send(String line) {
+            if(out==null) return false;
+            try {
+                writeLine(line);
+                return true;
+            } catch(IOException e) {
+                out = null;
+                return false;
+            }
+        }
+
+        private void writeLine(String line) throws IOException {
+            out.write(line);
+            out.write("\n");
+            out.flush();
+        }
+    }
+}
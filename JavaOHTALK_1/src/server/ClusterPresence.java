@@ -0,0 +1,147 @@
+package server;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONArray;
+
+/**
+ * ClusterPresence:
+ * - 클러스터 전체 접속 현황: userId -> 접속한 노드(들)
+ * - 노드마다 incarnation(기동 시각)과 seq(변경 번호)를 관리
+ *   - incarnation이 더 작은 프레임: 죽기 전 노드의 늦게 온 프레임 -> 무시
+ *   - incarnation이 커짐: 노드 재시작 -> 그 노드 유저 전부 삭제 후 다시 채움
+ *   - seq가 건너뜀: 변경분 유실 -> 전체 목록(snapshot) 재요청
+ * - 하트비트가 NODE_TIMEOUT_MS 동안 없으면 노드를 죽은 것으로 보고 유저 삭제
+ *
+ * 수렴 시간 목표:
+ * - 일반 변경: BATCH_MS + 네트워크 1회 (수십 ms)
+ * - 프레임 유실/링크 재접속: 다음 하트비트(HEARTBEAT_MS) 안에 snapshot으로 복구
+ * - 노드 장애: NODE_TIMEOUT_MS 안에 그 노드 유저 제거
+ */
+public class ClusterPresence {
+    public static final long BATCH_MS        = 20;
+    public static final long HEARTBEAT_MS    = 1000;
+    public static final long NODE_TIMEOUT_MS = 3000;
+
+    private final Map<Integer, Set<Integer>> userNodes = new ConcurrentHashMap<>(); // userId -> nodes
+    private final Map<Integer, NodeState> nodes = new ConcurrentHashMap<>();
+    private final LongAdder applied = new LongAdder(); // 반영한 유저 변경 수 (통계)
+
+    private static class NodeState {
+        final long incarnation;
+        long seq = 0;
+        volatile long lastSeen;
+        final Set<Integer> users = ConcurrentHashMap.newKeySet();
+
+        NodeState(long incarnation) {
+            this.incarnation = incarnation;
+            this.lastSeen = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 유저가 접속한 다른 노드들 (없으면 빈 Set)
+     */
+    public Set<Integer> nodesOf(int userId) {
+        Set<Integer> s = userNodes.get(userId);
+        return s==null ? Collections.emptySet() : s;
+    }
+
+    /**
+     * 유저 변경 프레임 반영
+     * @param full true면 그 노드 유저 전체 목록 (기존 것 교체)
+     * @return snapshot을 다시 요청해야 하면 true
+     */
+    public synchronized boolean applyUpdate(int node, long incarnation, long seq,
+                                            JSONArray online, JSONArray offline, boolean full) {
+        NodeState ns = nodes.get(node);
+        if(ns!=null && incarnation<ns.incarnation) return false; // 이전 실행의 프레임
+        boolean needSnapshot = false;
+        if(ns==null || incarnation>ns.incarnation) {
+            if(ns!=null) clearUsers(node, ns);
+            ns = new NodeState(incarnation);
+            nodes.put(node, ns);
+            needSnapshot = !full;
+        }
+        ns.lastSeen = System.currentTimeMillis();
+
+        if(full) {
+            clearUsers(node, ns);
+        } else if(seq!=ns.seq+1) {
+            needSnapshot = true; // 중간 변경 유실
+        }
+        if(online!=null) {
+            for(int i=0; i<online.length(); i++) add(node, ns, online.getInt(i));
+        }
+        if(offline!=null) {
+            for(int i=0; i<offline.length(); i++) remove(node, ns, offline.getInt(i));
+        }
+        ns.seq = Math.max(ns.seq, seq);
+        return needSnapshot;
+    }
+
+    /**
+     * 하트비트
+     * @return snapshot을 다시 요청해야 하면 true (모르는 노드/재시작/seq 불일치)
+     */
+    public synchronized boolean onHeartbeat(int node, long incarnation, long seq) {
+        NodeState ns = nodes.get(node);
+        if(ns==null || incarnation>ns.incarnation) return true;
+        if(incarnation<ns.incarnation) return false;
+        ns.lastSeen = System.currentTimeMillis();
+        return seq!=ns.seq;
+    }
+
+    /**
+     * 노드 제거 (링크 종료)
+     */
+    public synchronized void dropNode(int node) {
+        NodeState ns = nodes.remove(node);
+        if(ns!=null) clearUsers(node, ns);
+    }
+
+    /**
+     * 하트비트가 끊긴 노드 정리
+     */
+    public synchronized void expire() {
+        long now = System.currentTimeMillis();
+        for(Map.Entry<Integer, NodeState> e : nodes.entrySet()) {
+            if(now-e.getValue().lastSeen>NODE_TIMEOUT_MS) {
+                System.out.println("Cluster node "+e.getKey()+" timed out");
+                dropNode(e.getKey());
+            }
+        }
+    }
+
+    public String getStats() {
+        return "nodes="+nodes.size()+" remoteUsers="+userNodes.size()+" applied="+applied.sum();
+    }
+
+    private void add(int node, NodeState ns, int userId) {
+        ns.users.add(userId);
+        userNodes.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(node);
+        applied.increment();
+    }
+
+    private void remove(int node, NodeState ns, int userId) {
+        ns.users.remove(userId);
+        userNodes.computeIfPresent(userId, (k, s) -> {
+            s.remove(node);
+            return s.isEmpty() ? null : s;
+        });
+        applied.increment();
+    }
+
+    private void clearUsers(int node, NodeState ns) {
+        for(int uid : ns.users) {
+            userNodes.computeIfPresent(uid, (k, s) -> {
+                s.remove(node);
+                return s.isEmpty() ? null : s;
+            });
+        }
+        ns.users.clear();
+    }
+}
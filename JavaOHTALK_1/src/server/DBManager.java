@@ -1,6 +1,7 @@
 package server;
 
 import java.sql.*;
+import java.util.*;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import java.security.MessageDigest;
@@ -13,26 +14,59 @@ import java.security.NoSuchAlgorithmException;
  *  - chat_room_members 구조
  */
 public class DBManager {
+    private static final int IN_CHUNK = 500; // 다중 INSERT / IN(...) 한 번에 넣을 최대 개수
+
     private Connection conn;
+    private final String url, user, pass;    // 트랜잭션 커넥션 (다시) 연결용
+    private Connection txConn;               // 트랜잭션 전용 (autocommit 끔), txLock으로 동기화
+    private final Object txLock = new Object();
 
     public DBManager(String url, String user, String pass) throws SQLException {
+        this.url = url;
+        this.user = user;
+        this.pass = pass;
         conn = DriverManager.getConnection(url, user, pass);
     }
 
+    /**
+     * 연결 없이 생성 (bench에서 메서드를 덮어써 메모리로 쓸 때만)
+     */
+    protected DBManager() {
+        this.url = null;
+        this.user = null;
+        this.pass = null;
+    }
+
     public Connection getConnection() {
         return conn;
     }
 
-    // 샘플: SHA-256 해싱
+    /**
+     * 트랜잭션 전용 커넥션 (txLock 안에서만)
+     * - 공유 conn은 여러 스레드가 autocommit으로 쓰므로 거기서 트랜잭션을 열면 다른 스레드 문장까지 같이 commit/rollback됨
+     * - 끊겼으면 다시 연결
+     */
+    private Connection txConnection() throws SQLException {
+        if(txConn==null || !txConn.isValid(2)) {
+            txConn = DriverManager.getConnection(url, user, pass);
+            txConn.setAutoCommit(false);
+        }
+        return txConn;
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // 샘플: SHA-256 해싱 (바이트당 String.format 대신 테이블로 hex 인코딩)
     private String hashPassword(String password) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
             byte[] hash = md.digest(password.getBytes());
-            StringBuilder sb = new StringBuilder();
-            for(byte b: hash) {
-                sb.append(String.format("%02x", b));
+            char[] out = new char[hash.length*2];
+            for(int i=0; i<hash.length; i++) {
+                out[i*2]   = HEX[(hash[i]>>4) & 0x0f];
+                out[i*2+1] = HEX[hash[i] & 0x0f];
             }
-            return sb.toString();
+            return new String(out);
         } catch(NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
@@ -72,22 +106,31 @@ public class DBManager {
         return false;
     }
 
-    public int loginCheck(String username, String password) {
-        String sql = "SELECT id,password FROM users WHERE username=?";
+    /**
+     * 로그인 검증 + 프로필 조회를 한 번의 쿼리로
+     * @return 성공 시 user info(id, username, nickname, profile_image), 실패 시 null
+     */
+    public JSONObject authenticate(String username, String password) {
+        String sql = "SELECT id,username,nickname,profile_image,password FROM users WHERE username=?";
         try(PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, username);
             ResultSet rs = ps.executeQuery();
             if(rs.next()) {
-                String stored = rs.getString("password");
-                String input  = hashPassword(password);
-                if(stored.equals(input)) {
-                    return rs.getInt("id");
+                byte[] stored = rs.getString("password").getBytes();
+                byte[] input  = hashPassword(password).getBytes();
+                if(MessageDigest.isEqual(stored, input)) {
+                    JSONObject obj = new JSONObject();
+                    obj.put("id", rs.getInt("id"));
+                    obj.put("username", rs.getString("username"));
+                    obj.put("nickname", rs.getString("nickname"));
+                    obj.put("profile_image", rs.getString("profile_image"));
+                    return obj;
                 }
             }
         } catch(Exception e) {
             e.printStackTrace();
         }
-        return -1;
+        return null;
     }
 
     public JSONObject getUserInfo(int userId) {
@@ -109,6 +152,21 @@ public class DBManager {
         return null;
     }
 
+    /**
+     * 프로필 이미지 변경 (파일 채널로 올린 파일의 해시)
+     */
+    public boolean updateProfileImage(int userId, String hash) {
+        String sql = "UPDATE users SET profile_image=? WHERE id=?";
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, hash);
+            ps.setInt(2, userId);
+            return ps.executeUpdate()==1;
+        } catch(Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     public String getNicknameByUserId(int userId) {
         String sql = "SELECT nickname FROM users WHERE id=?";
         try(PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -148,6 +206,24 @@ public class DBManager {
         return arr;
     }
 
+    /**
+     * 이 유저를 친구로 등록한 사람들 (presence 구독자)
+     */
+    public List<Integer> getFollowerIds(int userId) {
+        String sql = "SELECT user_id FROM friends WHERE friend_user_id=?";
+        List<Integer> ids = new ArrayList<>();
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                ids.add(rs.getInt("user_id"));
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return ids;
+    }
+
     public boolean addFriend(int userId, int friendId) {
         if(isFriend(userId, friendId) || userId==friendId) return false;
         String sql = "INSERT INTO friends(user_id, friend_user_id) VALUES(?,?)";
@@ -192,27 +268,32 @@ public class DBManager {
     // 3) [친구 요청 friend_requests]
     // ---------------------
 
-    public boolean sendFriendRequest(int fromUserId, int toUserId) {
-        if(isFriend(fromUserId, toUserId) || fromUserId==toUserId) return false;
+    /**
+     * 친구 요청 저장
+     * @return 새 요청 ID, 이미 친구/pending이거나 실패 시 -1
+     */
+    public int sendFriendRequest(int fromUserId, int toUserId) {
+        if(isFriend(fromUserId, toUserId) || fromUserId==toUserId) return -1;
         String chk = "SELECT id FROM friend_requests WHERE from_user_id=? AND to_user_id=? AND status='pending'";
         try(PreparedStatement c = conn.prepareStatement(chk)) {
             c.setInt(1, fromUserId);
             c.setInt(2, toUserId);
             ResultSet r = c.executeQuery();
-            if(r.next()) return false; // 이미 pending
+            if(r.next()) return -1; // 이미 pending
         } catch(Exception e) { e.printStackTrace(); }
 
         String sql = "INSERT INTO friend_requests(from_user_id,to_user_id,status) VALUES(?,?,?)";
-        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+        try(PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, fromUserId);
             ps.setInt(2, toUserId);
             ps.setString(3,"pending");
             ps.executeUpdate();
-            return true;
+            ResultSet rs = ps.getGeneratedKeys();
+            if(rs.next()) return rs.getInt(1);
         } catch(Exception e) {
             e.printStackTrace();
-            return false;
         }
+        return -1;
     }
 
     public JSONArray getPendingFriendRequests(int userId) {
@@ -282,6 +363,56 @@ public class DBManager {
         return -1;
     }
 
+    /**
+     * 채팅방 생성 + 멤버 등록을 하나의 트랜잭션으로
+     * - 멤버는 다중 VALUES INSERT (IN_CHUNK개씩)
+     * - 트랜잭션 전용 커넥션에서 (공유 conn의 다른 문장과 섞이지 않음)
+     * @return 새 방 ID, 실패 시 -1
+     */
+    public int createChatRoomWithMembers(String name, String type, Collection<Integer> members) {
+        List<Integer> uniq = new ArrayList<>(new LinkedHashSet<>(members));
+        synchronized(txLock) {
+            Connection tx = null;
+            try {
+                tx = txConnection();
+                int roomId = -1;
+                String sql = "INSERT INTO chat_rooms(name,type) VALUES(?,?)";
+                try(PreparedStatement ps = tx.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, name);
+                    ps.setString(2, type);
+                    ps.executeUpdate();
+                    ResultSet rs = ps.getGeneratedKeys();
+                    if(rs.next()) roomId = rs.getInt(1);
+                }
+                if(roomId<=0) {
+                    tx.rollback();
+                    return -1;
+                }
+                for(int from=0; from<uniq.size(); from+=IN_CHUNK) {
+                    List<Integer> chunk = uniq.subList(from, Math.min(from+IN_CHUNK, uniq.size()));
+                    StringBuilder ins = new StringBuilder("INSERT INTO chat_room_members(room_id,user_id) VALUES ");
+                    for(int i=0; i<chunk.size(); i++) {
+                        ins.append(i==0 ? "(?,?)" : ",(?,?)");
+                    }
+                    try(PreparedStatement ps = tx.prepareStatement(ins.toString())) {
+                        int idx = 1;
+                        for(int uid : chunk) {
+                            ps.setInt(idx++, roomId);
+                            ps.setInt(idx++, uid);
+                        }
+                        ps.executeUpdate();
+                    }
+                }
+                tx.commit();
+                return roomId;
+            } catch(Exception e) {
+                e.printStackTrace();
+                try { if(tx!=null) tx.rollback(); } catch(Exception ignore) {}
+                return -1;
+            }
+        }
+    }
+
     public boolean deleteChatRoom(int roomId) {
         String sql = "DELETE FROM chat_rooms WHERE id=?";
         try(PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -388,56 +519,157 @@ public class DBManager {
     }
 
     public JSONArray getChatRoomsForUser(int userId) {
-        String sql = "SELECT c.id,c.name,c.type "
-                   + "FROM chat_room_members m JOIN chat_rooms c ON m.room_id=c.id "
-                   + "WHERE m.user_id=?";
-        JSONArray arr = new JSONArray();
-        try(PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, userId);
-            ResultSet rs = ps.executeQuery();
-            while(rs.next()) {
-                JSONObject room = new JSONObject();
-                room.put("id", rs.getInt("id"));
-                room.put("name", rs.getString("name"));
-                room.put("type", rs.getString("type"));
-                room.put("participants", getMembersOfRoom(rs.getInt("id")));
-                arr.put(room);
+        return getChatRoomsForUsers(Collections.singleton(userId)).get(userId);
+    }
+
+    /**
+     * 여러 유저의 채팅방 목록을 한 번에 (방 쿼리 1회 + 참가자 쿼리 1회, IN_CHUNK 단위)
+     * - 같은 방의 JSON은 한 번만 만들어 모든 유저 목록에서 공유
+     * @return userId -> rooms (방이 없으면 빈 배열)
+     */
+    public Map<Integer, JSONArray> getChatRoomsForUsers(Collection<Integer> userIds) {
+        Map<Integer, JSONArray> result = new HashMap<>();
+        Map<Integer, JSONObject> rooms = new LinkedHashMap<>();
+        Map<Integer, List<Integer>> roomsOfUser = new HashMap<>();
+        List<Integer> uids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        for(int uid : uids) {
+            result.put(uid, new JSONArray());
+            roomsOfUser.put(uid, new ArrayList<>());
+        }
+        try {
+            for(int from=0; from<uids.size(); from+=IN_CHUNK) {
+                List<Integer> chunk = uids.subList(from, Math.min(from+IN_CHUNK, uids.size()));
+                String sql = "SELECT m.user_id,c.id,c.name,c.type "
+                           + "FROM chat_room_members m JOIN chat_rooms c ON m.room_id=c.id "
+                           + "WHERE m.user_id IN (" + placeholders(chunk.size()) + ")";
+                try(PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for(int i=0; i<chunk.size(); i++) ps.setInt(i+1, chunk.get(i));
+                    ResultSet rs = ps.executeQuery();
+                    while(rs.next()) {
+                        int rid = rs.getInt("id");
+                        if(!rooms.containsKey(rid)) {
+                            JSONObject room = new JSONObject();
+                            room.put("id", rid);
+                            room.put("name", rs.getString("name"));
+                            room.put("type", rs.getString("type"));
+                            room.put("participants", new JSONArray());
+                            rooms.put(rid, room);
+                        }
+                        roomsOfUser.get(rs.getInt("user_id")).add(rid);
+                    }
+                }
+            }
+
+            List<Integer> rids = new ArrayList<>(rooms.keySet());
+            for(int from=0; from<rids.size(); from+=IN_CHUNK) {
+                List<Integer> chunk = rids.subList(from, Math.min(from+IN_CHUNK, rids.size()));
+                String sql = "SELECT m.room_id,u.id,u.nickname "
+                           + "FROM chat_room_members m JOIN users u ON m.user_id=u.id "
+                           + "WHERE m.room_id IN (" + placeholders(chunk.size()) + ")";
+                try(PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for(int i=0; i<chunk.size(); i++) ps.setInt(i+1, chunk.get(i));
+                    ResultSet rs = ps.executeQuery();
+                    while(rs.next()) {
+                        JSONObject mem = new JSONObject();
+                        mem.put("user_id", rs.getInt("id"));
+                        mem.put("nickname", rs.getString("nickname"));
+                        rooms.get(rs.getInt("room_id")).getJSONArray("participants").put(mem);
+                    }
+                }
             }
         } catch(Exception e) {
             e.printStackTrace();
         }
-        return arr;
+        for(int uid : uids) {
+            JSONArray arr = result.get(uid);
+            for(int rid : roomsOfUser.get(uid)) {
+                arr.put(rooms.get(rid));
+            }
+        }
+        return result;
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder();
+        for(int i=0; i<n; i++) {
+            sb.append(i==0 ? "?" : ",?");
+        }
+        return sb.toString();
     }
 
     // ---------------------
     // 5) 메시지
     // ---------------------
 
-    public boolean saveMessage(int roomId, int senderId, String msg) {
-        String sql = "INSERT INTO messages(chat_room_id,sender_id,message) VALUES(?,?,?)";
-        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+    /**
+     * 메시지 저장 (seq, timestamp는 방 주인 스레드가 매긴 값)
+     * - (chat_room_id, seq) UNIQUE -> 같은 seq가 이미 있으면 실패(-1)
+     * @return 새 메시지 ID, 실패 시 -1
+     */
+    public int saveMessage(int roomId, int senderId, String msg, long seq, long timestamp) {
+        String sql = "INSERT INTO messages(chat_room_id,sender_id,message,seq,timestamp) VALUES(?,?,?,?,?)";
+        try(PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, roomId);
             ps.setInt(2, senderId);
             ps.setString(3, msg);
+            ps.setLong(4, seq);
+            ps.setTimestamp(5, new Timestamp(timestamp));
             ps.executeUpdate();
-            return true;
+            ResultSet rs = ps.getGeneratedKeys();
+            if(rs.next()) return rs.getInt(1);
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * 방의 마지막 seq (메시지가 없으면 0, 실패 시 -1)
+     */
+    public long getMaxSeq(int roomId) {
+        String sql = "SELECT COALESCE(MAX(seq),0) FROM messages WHERE chat_room_id=?";
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, roomId);
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()) return rs.getLong(1);
         } catch(Exception e) {
             e.printStackTrace();
-            return false;
         }
+        return -1;
     }
 
-    public JSONArray loadMessages(int roomId) {
-        String sql = "SELECT m.id,m.sender_id,u.nickname,m.message,m.timestamp "
+    /**
+     * 방의 마지막 메시지 ID (메시지가 없으면 0, 실패 시 -1)
+     */
+    public int getMaxMessageId(int roomId) {
+        String sql = "SELECT COALESCE(MAX(id),0) FROM messages WHERE chat_room_id=?";
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, roomId);
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()) return rs.getInt(1);
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * beforeId 이전 메시지부터 최신 순으로 limit개 (위로 스크롤할 때 이전 페이지)
+     */
+    public JSONArray loadMessagesBefore(int roomId, int beforeId, int limit) {
+        String sql = "SELECT m.id,m.seq,m.sender_id,u.nickname,m.message,m.timestamp "
                    + "FROM messages m JOIN users u ON m.sender_id=u.id "
-                   + "WHERE m.chat_room_id=? ORDER BY m.id DESC LIMIT 50";
+                   + "WHERE m.chat_room_id=? AND m.id<? ORDER BY m.id DESC LIMIT ?";
         JSONArray arr = new JSONArray();
         try(PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, roomId);
+            ps.setInt(2, beforeId);
+            ps.setInt(3, limit);
             ResultSet rs = ps.executeQuery();
             while(rs.next()) {
                 JSONObject msg = new JSONObject();
                 msg.put("id", rs.getInt("id"));
+                msg.put("seq", rs.getLong("seq"));
                 msg.put("sender_id", rs.getInt("sender_id"));
                 msg.put("sender_nickname", rs.getString("nickname"));
                 msg.put("message", rs.getString("message"));
@@ -450,6 +682,353 @@ public class DBManager {
         return arr;
     }
 
+    /**
+     * afterId 다음 메시지부터 오래된 순으로 limit개 (재접속 sync용)
+     */
+    public JSONArray loadMessagesAfter(int roomId, int afterId, int limit) {
+        String sql = "SELECT m.id,m.seq,m.sender_id,u.nickname,m.message,m.timestamp "
+                   + "FROM messages m JOIN users u ON m.sender_id=u.id "
+                   + "WHERE m.chat_room_id=? AND m.id>? ORDER BY m.id ASC LIMIT ?";
+        JSONArray arr = new JSONArray();
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, roomId);
+            ps.setInt(2, afterId);
+            ps.setInt(3, limit);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                JSONObject msg = new JSONObject();
+                msg.put("id", rs.getInt("id"));
+                msg.put("seq", rs.getLong("seq"));
+                msg.put("sender_id", rs.getInt("sender_id"));
+                msg.put("sender_nickname", rs.getString("nickname"));
+                msg.put("message", rs.getString("message"));
+                msg.put("timestamp", rs.getTimestamp("timestamp").toString());
+                arr.put(msg);
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return arr;
+    }
+
+    /**
+     * 메시지 ID 목록으로 한 번에 조회 (오프라인 수신함 drain용, IN_CHUNK개씩 IN 쿼리)
+     * - 방 ID 포함, 오래된 순
+     */
+    public JSONArray getMessagesByIds(List<Integer> ids) {
+        List<Integer> sorted = new ArrayList<>(new TreeSet<>(ids));
+        JSONArray arr = new JSONArray();
+        for(int from=0; from<sorted.size(); from+=IN_CHUNK) {
+            List<Integer> chunk = sorted.subList(from, Math.min(from+IN_CHUNK, sorted.size()));
+            StringBuilder sql = new StringBuilder(
+                "SELECT m.id,m.chat_room_id,m.seq,m.sender_id,u.nickname,m.message,m.timestamp "
+              + "FROM messages m JOIN users u ON m.sender_id=u.id WHERE m.id IN (");
+            for(int i=0; i<chunk.size(); i++) sql.append(i==0 ? "?" : ",?");
+            sql.append(") ORDER BY m.id ASC");
+            try(PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                for(int i=0; i<chunk.size(); i++) ps.setInt(i+1, chunk.get(i));
+                ResultSet rs = ps.executeQuery();
+                while(rs.next()) {
+                    JSONObject msg = new JSONObject();
+                    msg.put("id", rs.getInt("id"));
+                    msg.put("room_id", rs.getInt("chat_room_id"));
+                    msg.put("seq", rs.getLong("seq"));
+                    msg.put("sender_id", rs.getInt("sender_id"));
+                    msg.put("sender_nickname", rs.getString("nickname"));
+                    msg.put("message", rs.getString("message"));
+                    msg.put("timestamp", rs.getTimestamp("timestamp").toString());
+                    arr.put(msg);
+                }
+            } catch(Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return arr;
+    }
+
+    /**
+     * 방의 최신 메시지부터 n번째 메시지 ID
+     * @return 메시지가 n개보다 적으면 -1
+     */
+    public int getNthNewestMessageId(int roomId, int n) {
+        String sql = "SELECT id FROM messages WHERE chat_room_id=? ORDER BY id DESC LIMIT 1 OFFSET ?";
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, roomId);
+            ps.setInt(2, n-1);
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()) return rs.getInt("id");
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    // ---------------------
+    // 6) 읽음 표시 (last_read_message_id)
+    // ---------------------
+
+    /**
+     * watermark 일괄 갱신 (JDBC batch, 값은 앞으로만 이동)
+     * @param marks key = (roomId<<32 | userId), value = 마지막으로 읽은 메시지 ID
+     */
+    public boolean updateReadMarks(Map<Long, Integer> marks) {
+        String sql = "UPDATE chat_room_members SET last_read_message_id=GREATEST(last_read_message_id,?) "
+                   + "WHERE room_id=? AND user_id=?";
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            for(Map.Entry<Long, Integer> e : marks.entrySet()) {
+                ps.setInt(1, e.getValue());
+                ps.setInt(2, (int)(e.getKey()>>>32));
+                ps.setInt(3, (int)(long)e.getKey());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            return true;
+        } catch(Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 유저의 방별 안 읽은 메시지 수
+     * @param pending 아직 DB에 안 쓴 watermark (roomId -> msgId), DB 값과 큰 쪽을 씀
+     * @return roomId -> unread
+     */
+    public Map<Integer, Integer> getUnreadCounts(int userId, Map<Integer, Integer> pending) {
+        String lastRead = "m.last_read_message_id";
+        if(!pending.isEmpty()) {
+            StringBuilder cs = new StringBuilder("GREATEST(m.last_read_message_id, CASE m.room_id");
+            for(int i=0; i<pending.size(); i++) cs.append(" WHEN ? THEN ?");
+            lastRead = cs.append(" ELSE 0 END)").toString();
+        }
+        String sql = "SELECT m.room_id, COUNT(msg.id) AS unread "
+                   + "FROM chat_room_members m LEFT JOIN messages msg "
+                   + "ON msg.chat_room_id=m.room_id AND msg.id>"+lastRead+" AND msg.sender_id<>m.user_id "
+                   + "WHERE m.user_id=? GROUP BY m.room_id";
+        Map<Integer, Integer> res = new HashMap<>();
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            int idx = 1;
+            for(Map.Entry<Integer, Integer> e : pending.entrySet()) {
+                ps.setInt(idx++, e.getKey());
+                ps.setInt(idx++, e.getValue());
+            }
+            ps.setInt(idx, userId);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                res.put(rs.getInt("room_id"), rs.getInt("unread"));
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return res;
+    }
+
+    // ---------------------
+    // 7) 예약 메시지
+    // ---------------------
+
+    /**
+     * @return 예약 id (실패 시 -1)
+     */
+    public long createScheduledMessage(int roomId, int senderId, String msg, long sendAt) {
+        String sql = "INSERT INTO scheduled_messages(chat_room_id,sender_id,message,send_at) VALUES(?,?,?,?)";
+        try(PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setInt(1, roomId);
+            ps.setInt(2, senderId);
+            ps.setString(3, msg);
+            ps.setTimestamp(4, new Timestamp(sendAt));
+            ps.executeUpdate();
+            ResultSet rs = ps.getGeneratedKeys();
+            if(rs.next()) return rs.getLong(1);
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * 아직 안 보낸 예약 (id, send_at ms) - 메시지 본문은 보낼 때 읽음
+     */
+    public List<long[]> getPendingScheduledMessages() {
+        String sql = "SELECT id,send_at FROM scheduled_messages WHERE sent=0";
+        List<long[]> res = new ArrayList<>();
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                res.add(new long[]{rs.getLong("id"), rs.getTimestamp("send_at").getTime()});
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return res;
+    }
+
+    /**
+     * 예약을 "보냄"으로 선점 (sent=0 -> 1)
+     * @return 선점했으면 {room_id, sender_id, message}, 이미 선점됐으면 null
+     */
+    public JSONObject claimScheduledMessage(long id) {
+        try(PreparedStatement ps = conn.prepareStatement("UPDATE scheduled_messages SET sent=1 WHERE id=? AND sent=0")) {
+            ps.setLong(1, id);
+            if(ps.executeUpdate()!=1) return null;
+        } catch(Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+        String sql = "SELECT chat_room_id,sender_id,message FROM scheduled_messages WHERE id=?";
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, id);
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()) {
+                JSONObject s = new JSONObject();
+                s.put("room_id", rs.getInt("chat_room_id"));
+                s.put("sender_id", rs.getInt("sender_id"));
+                s.put("message", rs.getString("message"));
+                return s;
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * 전송 실패 -> 선점 해제 (sent=1 -> 0)
+     */
+    public boolean releaseScheduledMessage(long id) {
+        try(PreparedStatement ps = conn.prepareStatement("UPDATE scheduled_messages SET sent=0 WHERE id=?")) {
+            ps.setLong(1, id);
+            return ps.executeUpdate()==1;
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    // ---------------------
+    // 8) 투표
+    // ---------------------
+
+    /**
+     * 투표 + 선택지 저장 (한 트랜잭션, 트랜잭션 전용 커넥션에서)
+     * @return pollId (실패 시 -1)
+     */
+    public int createPoll(int roomId, int creatorId, String question, List<String> options) {
+        synchronized(txLock) {
+            Connection tx = null;
+            try {
+                tx = txConnection();
+                int pollId = -1;
+                String sql = "INSERT INTO polls(chat_room_id,creator_id,question) VALUES(?,?,?)";
+                try(PreparedStatement ps = tx.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setInt(1, roomId);
+                    ps.setInt(2, creatorId);
+                    ps.setString(3, question);
+                    ps.executeUpdate();
+                    ResultSet rs = ps.getGeneratedKeys();
+                    if(rs.next()) pollId = rs.getInt(1);
+                }
+                if(pollId<=0) {
+                    tx.rollback();
+                    return -1;
+                }
+                StringBuilder ins = new StringBuilder("INSERT INTO poll_options(poll_id,idx,text) VALUES ");
+                for(int i=0; i<options.size(); i++) {
+                    ins.append(i==0 ? "(?,?,?)" : ",(?,?,?)");
+                }
+                try(PreparedStatement ps = tx.prepareStatement(ins.toString())) {
+                    int idx = 1;
+                    for(int i=0; i<options.size(); i++) {
+                        ps.setInt(idx++, pollId);
+                        ps.setInt(idx++, i);
+                        ps.setString(idx++, options.get(i));
+                    }
+                    ps.executeUpdate();
+                }
+                tx.commit();
+                return pollId;
+            } catch(Exception e) {
+                e.printStackTrace();
+                try { if(tx!=null) tx.rollback(); } catch(Exception ignore) {}
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return {room_id, question, options:[...]} (없으면 null)
+     */
+    public JSONObject getPoll(int pollId) {
+        String sql = "SELECT p.chat_room_id,p.question,o.text FROM polls p "
+                   + "JOIN poll_options o ON o.poll_id=p.id WHERE p.id=? ORDER BY o.idx";
+        try(PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, pollId);
+            ResultSet rs = ps.executeQuery();
+            JSONObject p = null;
+            while(rs.next()) {
+                if(p==null) {
+                    p = new JSONObject();
+                    p.put("room_id", rs.getInt("chat_room_id"));
+                    p.put("question", rs.getString("question"));
+                    p.put("options", new JSONArray());
+                }
+                p.getJSONArray("options").put(rs.getString("text"));
+            }
+            return p;
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * @return userId -> 선택지 idx
+     */
+    public Map<Integer, Integer> getPollVotes(int pollId) {
+        Map<Integer, Integer> res = new HashMap<>();
+        try(PreparedStatement ps = conn.prepareStatement("SELECT user_id,option_idx FROM poll_votes WHERE poll_id=?")) {
+            ps.setInt(1, pollId);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                res.put(rs.getInt("user_id"), rs.getInt("option_idx"));
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return res;
+    }
+
+    /**
+     * 투표 일괄 저장 (있으면 선택지만 갱신)
+     * @param votes {pollId, userId, option}
+     */
+    public boolean saveVotes(Collection<int[]> votes) {
+        List<int[]> list = new ArrayList<>(votes);
+        try {
+            for(int from=0; from<list.size(); from+=IN_CHUNK) {
+                List<int[]> chunk = list.subList(from, Math.min(from+IN_CHUNK, list.size()));
+                StringBuilder sql = new StringBuilder("INSERT INTO poll_votes(poll_id,user_id,option_idx) VALUES ");
+                for(int i=0; i<chunk.size(); i++) {
+                    sql.append(i==0 ? "(?,?,?)" : ",(?,?,?)");
+                }
+                sql.append(" ON DUPLICATE KEY UPDATE option_idx=VALUES(option_idx)");
+                try(PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                    int idx = 1;
+                    for(int[] v : chunk) {
+                        ps.setInt(idx++, v[0]);
+                        ps.setInt(idx++, v[1]);
+                        ps.setInt(idx++, v[2]);
+                    }
+                    ps.executeUpdate();
+                }
+            }
+            return true;
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
     public void close() {
         try {
             if(conn!=null && !conn.isClosed()) {
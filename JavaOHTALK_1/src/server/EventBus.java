@@ -0,0 +1,95 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * EventBus:
+ * - RequestHandler가 요청 스레드에서 직접 하던 push 계산(DB 조회 + 전송)을 별도 스레드풀로
+ * - 같은 key로 COALESCE_MS 안에 들어온 알림은 하나로 묶어 한 번만 처리
+ *   (예: 큰 방에서 여러 명이 연달아 나가도 남은 멤버 조회는 1회)
+ * - handler는 실행 시점의 DB 상태를 다시 읽으므로 묶어서 처리해도 결과가 같음
+ */
+public class EventBus {
+    private static final long COALESCE_MS = 50;
+    private static final int WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * 묶인 payload들을 한 번에 처리
+     */
+    public interface Handler<T> {
+        void handle(List<T> payloads) throws Exception;
+    }
+
+    private static class Bucket<T> {
+        final Handler<T> handler;
+        final List<T> payloads = new ArrayList<>();
+        Bucket(Handler<T> handler) { this.handler = handler; }
+    }
+
+    private final Map<String, Bucket<?>> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+    private final ExecutorService workers;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public EventBus() {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "event-bus-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        workers = Executors.newFixedThreadPool(WORKERS, r -> {
+            Thread t = new Thread(r, "event-bus");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 알림 등록 (즉시 반환)
+     * @param key     묶는 단위 (같은 key면 handler도 같아야 함)
+     * @param payload handler에 모아서 넘길 값
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void publish(String key, T payload, Handler<T> handler) {
+        published.increment();
+        boolean[] created = {false};
+        pending.compute(key, (k, b) -> {
+            if(b==null) {
+                b = new Bucket<>(handler);
+                created[0] = true;
+            }
+            ((Bucket<T>)b).payloads.add(payload);
+            return b;
+        });
+        if(created[0]) {
+            timer.schedule(() -> workers.execute(() -> flush(key)), COALESCE_MS, TimeUnit.MILLISECONDS);
+        } else {
+            coalesced.increment();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void flush(String key) {
+        Bucket<T> b = (Bucket<T>)pending.remove(key);
+        if(b==null) return;
+        try {
+            b.handler.handle(b.payloads);
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public String getStats() {
+        return "published="+published.sum()+" coalesced="+coalesced.sum()+" pending="+pending.size();
+    }
+
+    public void shutdown() {
+        timer.shutdown();
+        workers.shutdown();
+    }
+}
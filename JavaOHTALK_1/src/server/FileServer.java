@@ -0,0 +1,301 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * FileServer:
+ * - 채팅 소켓과 별도 포트의 파일 전송 채널 (큰 전송이 채팅 소켓/ClientHandler 스레드를 막지 않음)
+ * - 연결 1개 = 요청 1개, 헤더는 JSON 한 줄, 그 뒤는 바이트 그대로
+ *   put {token, hash, size}   -> {status, offset}  -> (offset부터 size까지 바이트) -> {status, hash}
+ *   get {token, hash, offset} -> {status, size}    -> (offset부터 바이트)
+ *   thumb {token, id}         -> {status, size}    -> (썸네일 바이트, ThumbnailCache)
+ * - 끊기면 받은 만큼 .part에 남아 있고, 다시 put하면 그 offset부터 이어받음 (get도 offset으로 이어받기)
+ * - 이미 있는 해시를 put하면 바로 완료 (같은 파일은 한 번만 저장)
+ * - put이 끝나면 썸네일 생성을 예약하고 응답에 썸네일 ID(thumbs)를 알려 줌
+ * - 보내기는 FileChannel.transferTo, 받기는 transferFrom (유저 공간 복사 없음)
+ * - 토큰은 SessionManager로 검증 (DB 조회 없음)
+ * - 스레드 THREADS개 + 대기 QUEUE개, 넘치면 연결을 바로 닫음
+ *   IDLE_MS 동안 진행이 없는 연결은 watchdog이 닫음 (blocking 채널은 read timeout이 없음)
+ * - 끝나지 않은 업로드(.part)는 유저별로 선언한 크기 합계 MAX_PENDING_BYTES까지만
+ *   PART_TTL_MS 동안 이어받지 않은 .part는 watchdog이 지움 (끊고 안 오는 업로드로 디스크가 차지 않게)
+ */
+public class FileServer {
+    private static final int THREADS = 8;
+    private static final int QUEUE = 64;
+    private static final int MAX_HEADER = 4096;
+    private static final long CHUNK = 1<<20;       // transferTo/From 한 번에 최대
+    private static final long IDLE_MS = 30_000;
+    private static final long MAX_PENDING_BYTES = 4*FileStore.MAX_FILE_BYTES; // 유저별 끝나지 않은 업로드 합계
+    private static final long PART_TTL_MS = 6L*60*60*1000;
+    private static final long SWEEP_MS = 10L*60*1000;
+
+    private final int port;
+    private final FileStore store;
+    private final ThumbnailCache thumbs;
+    private final SessionManager sessions;
+    private final ThreadPoolExecutor pool;
+    private final Set<String> uploading = ConcurrentHashMap.newKeySet();       // 같은 해시 동시 업로드 방지
+    private final Map<SocketChannel, Long> lastProgress = new ConcurrentHashMap<>();
+    private final Map<String, long[]> parts = new HashMap<>(); // 끝나지 않은 업로드: hash -> {userId, size} (this로 동기화)
+
+    public FileServer(int port, FileStore store, ThumbnailCache thumbs, SessionManager sessions) {
+        this.port = port;
+        this.store = store;
+        this.thumbs = thumbs;
+        this.sessions = sessions;
+        this.pool = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE), r -> {
+                Thread t = new Thread(r, "file-transfer");
+                t.setDaemon(true);
+                return t;
+            });
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public FileStore getStore() {
+        return store;
+    }
+
+    public void start() throws IOException {
+        ServerSocketChannel ss = ServerSocketChannel.open();
+        ss.bind(new InetSocketAddress(port));
+        Thread t = new Thread(() -> {
+            while(true) {
+                try {
+                    SocketChannel ch = ss.accept();
+                    lastProgress.put(ch, System.currentTimeMillis());
+                    try {
+                        pool.execute(() -> serve(ch));
+                    } catch(RejectedExecutionException e) {
+                        close(ch);
+                    }
+                } catch(Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }, "file-accept");
+        t.setDaemon(true);
+        t.start();
+
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread w = new Thread(r, "file-watchdog");
+            w.setDaemon(true);
+            return w;
+        });
+        watchdog.scheduleAtFixedRate(() -> {
+            long now = System.currentTimeMillis();
+            for(Map.Entry<SocketChannel, Long> e : lastProgress.entrySet()) {
+                if(now-e.getValue()>IDLE_MS) close(e.getKey());
+            }
+        }, IDLE_MS, IDLE_MS/2, TimeUnit.MILLISECONDS);
+        watchdog.scheduleAtFixedRate(this::sweepParts, 0, SWEEP_MS, TimeUnit.MILLISECONDS); // 시작 때 한 번 (재시작 전 것)
+        System.out.println("File server started on port "+port);
+    }
+
+    private void serve(SocketChannel ch) {
+        try {
+            JSONObject req = new JSONObject(readLine(ch));
+            String hash = req.optString("hash");
+            SessionManager.Session sess = sessions.verify(req.optString("token"));
+            if(sess==null) {
+                reply(ch, fail("Invalid or expired session"));
+            } else if(req.optString("op").equals("thumb")) {
+                thumb(ch, req.optString("id"));
+            } else if(!FileStore.isValidHash(hash)) {
+                reply(ch, fail("Invalid hash"));
+            } else if(req.optString("op").equals("put")) {
+                put(ch, sess.getUserInfo().getInt("id"), hash, req.optLong("size", -1));
+            } else if(req.optString("op").equals("get")) {
+                get(ch, hash, req.optLong("offset", 0));
+            } else {
+                reply(ch, fail("Unknown op"));
+            }
+        } catch(Exception e) {
+            // 끊긴 전송은 정상 (이어받기)
+            System.out.println("File transfer closed: "+e.getMessage());
+        } finally {
+            close(ch);
+        }
+    }
+
+    private void put(SocketChannel ch, int userId, String hash, long size) throws Exception {
+        if(size<=0 || size>FileStore.MAX_FILE_BYTES) {
+            reply(ch, fail("Invalid size"));
+            return;
+        }
+        if(store.exists(hash)) {
+            reply(ch, new JSONObject().put("status","ok").put("offset", size).put("hash", hash).put("thumbs", thumbIds(hash)));
+            return;
+        }
+        if(!uploading.add(hash)) {
+            reply(ch, fail("Upload in progress"));
+            return;
+        }
+        try {
+            if(!reserve(userId, hash, size)) {
+                reply(ch, fail("Too many unfinished uploads"));
+                return;
+            }
+            long pos = store.partialSize(hash);
+            if(pos>size) {
+                store.discardPart(hash);
+                pos = 0;
+            }
+            reply(ch, new JSONObject().put("status","ok").put("offset", pos));
+            try(FileChannel fc = FileChannel.open(store.partPath(hash),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                while(pos<size) {
+                    long n = fc.transferFrom(ch, pos, Math.min(CHUNK, size-pos));
+                    if(n<=0) return; // 끊김 -> 받은 만큼 .part에 남김
+                    pos += n;
+                    lastProgress.put(ch, System.currentTimeMillis());
+                }
+            }
+            boolean ok = store.commit(hash);
+            release(hash); // 성공이든 해시 불일치든 .part는 없어짐
+            if(ok) {
+                thumbs.generateAsync(hash);
+                reply(ch, new JSONObject().put("status","ok").put("hash", hash).put("thumbs", thumbIds(hash)));
+            } else {
+                reply(ch, fail("Hash mismatch"));
+            }
+        } finally {
+            uploading.remove(hash);
+        }
+    }
+
+    /**
+     * 업로드 시작/이어받기 전 유저 한도 확인
+     * - 이미 있는 .part를 이어받으면 처음 올린 유저 몫 그대로
+     * @return 한도 안이면 true
+     */
+    private synchronized boolean reserve(int userId, String hash, long size) {
+        if(parts.containsKey(hash)) return true;
+        long pending = 0;
+        for(long[] p : parts.values()) {
+            if(p[0]==userId) pending += p[1];
+        }
+        if(pending+size>MAX_PENDING_BYTES) return false;
+        parts.put(hash, new long[]{userId, size});
+        return true;
+    }
+
+    private synchronized void release(String hash) {
+        parts.remove(hash);
+    }
+
+    /**
+     * 오래 이어받지 않은 .part 삭제 + 그 몫 반환 (파일이 없어진 예약도 정리)
+     * - 지우는 동안 uploading으로 잡아서 이어받기 put과 겹치지 않게
+     */
+    private void sweepParts() {
+        try {
+            for(String hash : store.staleParts(PART_TTL_MS)) {
+                if(!uploading.add(hash)) continue; // 지금 이어받는 중
+                try {
+                    if(!store.isPartStale(hash, PART_TTL_MS)) continue; // 그 사이 이어받음
+                    store.discardPart(hash);
+                    release(hash);
+                } finally {
+                    uploading.remove(hash);
+                }
+            }
+            synchronized(this) {
+                parts.keySet().removeIf(h -> !uploading.contains(h) && !Files.exists(store.partPath(h)));
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void get(SocketChannel ch, String hash, long offset) throws Exception {
+        long size = store.size(hash);
+        if(size<0) {
+            reply(ch, fail("Not found"));
+            return;
+        }
+        if(offset<0 || offset>size) offset = 0;
+        reply(ch, new JSONObject().put("status","ok").put("size", size));
+        try(FileChannel fc = FileChannel.open(store.path(hash), StandardOpenOption.READ)) {
+            long pos = offset;
+            while(pos<size) {
+                long n = fc.transferTo(pos, Math.min(CHUNK, size-pos), ch);
+                if(n<=0) return;
+                pos += n;
+                lastProgress.put(ch, System.currentTimeMillis());
+            }
+        }
+    }
+
+    private void thumb(SocketChannel ch, String id) throws Exception {
+        byte[] b = ThumbnailCache.isValidId(id) ? thumbs.get(id) : null;
+        if(b==null) {
+            reply(ch, fail("No thumbnail"));
+            return;
+        }
+        reply(ch, new JSONObject().put("status","ok").put("size", b.length));
+        ByteBuffer buf = ByteBuffer.wrap(b);
+        while(buf.hasRemaining()) ch.write(buf);
+    }
+
+    private static JSONArray thumbIds(String hash) {
+        JSONArray arr = new JSONArray();
+        for(int size : ThumbnailCache.SIZES) arr.put(ThumbnailCache.id(hash, size));
+        return arr;
+    }
+
+    /**
+     * 헤더 한 줄 (뒤의 바이트를 미리 읽지 않도록 1바이트씩)
+     */
+    private static String readLine(SocketChannel ch) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        ByteBuffer line = ByteBuffer.allocate(MAX_HEADER);
+        while(true) {
+            one.clear();
+            if(ch.read(one)<0) throw new IOException("closed before header");
+            byte b = one.get(0);
+            if(b=='\n') break;
+            if(!line.hasRemaining()) throw new IOException("header too long");
+            line.put(b);
+        }
+        line.flip();
+        return StandardCharsets.UTF_8.decode(line).toString();
+    }
+
+    private static void reply(SocketChannel ch, JSONObject r) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap((r.toString()+"\n").getBytes(StandardCharsets.UTF_8));
+        while(buf.hasRemaining()) ch.write(buf);
+    }
+
+    private static JSONObject fail(String reason) {
+        return new JSONObject().put("status","fail").put("reason", reason);
+    }
+
+    private void close(SocketChannel ch) {
+        lastProgress.remove(ch);
+        try { ch.close(); } catch(Exception ignore) {}
+    }
+}
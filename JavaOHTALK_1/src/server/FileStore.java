@@ -0,0 +1,159 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FileStore:
+ * - 첨부 파일/이미지를 로컬 디스크에 SHA-256 해시(hex)를 이름으로 저장 (같은 내용은 한 번만)
+ *   root/ab/abcd...   완성본 (해시 앞 2글자로 디렉터리 분산)
+ *   root/tmp/abcd...part   업로드 중 (끊기면 여기서 이어받음, 오래 이어받지 않으면 FileServer가 지움)
+ * - 완성본은 해시를 검증한 뒤에만 이동 -> 완성본 파일은 바뀌지 않음
+ * - 클러스터 모드면 모든 노드가 같은 디렉터리(-Dfile.dir, 공유 스토리지)를 봐야 함
+ */
+public class FileStore {
+    public static final long MAX_FILE_BYTES = 50L*1024*1024;
+
+    private final Path root;
+    private final Path tmp;
+
+    public FileStore(Path root) throws IOException {
+        this.root = root;
+        this.tmp = root.resolve("tmp");
+        Files.createDirectories(tmp);
+    }
+
+    /**
+     * SHA-256 hex (소문자 64글자)인지
+     */
+    public static boolean isValidHash(String hash) {
+        if(hash==null || hash.length()!=64) return false;
+        for(int i=0; i<64; i++) {
+            char c = hash.charAt(i);
+            if(!((c>='0' && c<='9') || (c>='a' && c<='f'))) return false;
+        }
+        return true;
+    }
+
+    public Path path(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    public boolean exists(String hash) {
+        return isValidHash(hash) && Files.isRegularFile(path(hash));
+    }
+
+    /**
+     * @return 완성본 크기, 없으면 -1
+     */
+    public long size(String hash) {
+        try {
+            return exists(hash) ? Files.size(path(hash)) : -1;
+        } catch(IOException e) {
+            return -1;
+        }
+    }
+
+    public Path partPath(String hash) {
+        return tmp.resolve(hash+".part");
+    }
+
+    /**
+     * 업로드 중인 파일에 이미 받은 바이트 수 (이어받기 위치)
+     */
+    public long partialSize(String hash) {
+        try {
+            Path p = partPath(hash);
+            return Files.exists(p) ? Files.size(p) : 0;
+        } catch(IOException e) {
+            return 0;
+        }
+    }
+
+    public void discardPart(String hash) {
+        try {
+            Files.deleteIfExists(partPath(hash));
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 마지막으로 쓴 지 maxAgeMs가 지났는지 (.part가 없으면 false)
+     */
+    public boolean isPartStale(String hash, long maxAgeMs) {
+        try {
+            return System.currentTimeMillis()-Files.getLastModifiedTime(partPath(hash)).toMillis()>maxAgeMs;
+        } catch(IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 마지막으로 쓴 지 maxAgeMs가 지난 .part들의 해시 (끊긴 뒤 다시 오지 않은 업로드)
+     */
+    public List<String> staleParts(long maxAgeMs) {
+        List<String> res = new ArrayList<>();
+        try(DirectoryStream<Path> ds = Files.newDirectoryStream(tmp, "*.part")) {
+            for(Path p : ds) {
+                String name = p.getFileName().toString();
+                String hash = name.substring(0, name.length()-".part".length());
+                if(isPartStale(hash, maxAgeMs)) res.add(hash);
+            }
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+        return res;
+    }
+
+    /**
+     * 다 받은 .part의 해시를 검증하고 완성본으로 이동
+     * @return 해시가 맞으면 true (틀리면 .part 삭제)
+     */
+    public boolean commit(String hash) {
+        Path part = partPath(hash);
+        try {
+            if(!hash.equals(sha256(part))) {
+                Files.deleteIfExists(part);
+                return false;
+            }
+            Path dst = path(hash);
+            Files.createDirectories(dst.getParent());
+            Files.move(part, dst, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch(Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 파일 SHA-256 hex
+     */
+    public static String sha256(Path p) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        ByteBuffer buf = ByteBuffer.allocateDirect(64*1024);
+        try(FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            while(fc.read(buf)>=0) {
+                buf.flip();
+                md.update(buf);
+                buf.clear();
+            }
+        }
+        byte[] h = md.digest();
+        StringBuilder sb = new StringBuilder(64);
+        for(byte b : h) {
+            sb.append(Character.forDigit((b>>4) & 0x0f, 16)).append(Character.forDigit(b & 0x0f, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,41 @@
+package server;
+
+import java.util.Collection;
+import org.json.JSONObject;
+
+/**
+ * Game:
+ * - GameEngine이 돌리는 미니게임 규칙
+ * - 모든 메서드는 그 세션의 tick 스레드에서만 호출됨 (한 번에 하나) -> 게임 안에서는 동기화 불필요
+ */
+public interface Game {
+    /**
+     * 시작 (참가자 = 시작 시점의 방 멤버)
+     */
+    void start(Collection<Integer> players);
+
+    /**
+     * 지난 tick 이후 들어온 입력 (tick 직전에 순서대로)
+     */
+    void onInput(int userId, JSONObject input);
+
+    /**
+     * 한 tick 진행
+     */
+    void tick(long tick);
+
+    /**
+     * 지난 delta 이후 바뀐 것만 (없으면 null)
+     */
+    JSONObject delta();
+
+    /**
+     * 전체 상태 (시작할 때, 결과 조회할 때)
+     */
+    JSONObject snapshot();
+
+    /**
+     * 끝났으면 결과, 아니면 null
+     */
+    JSONObject result();
+}
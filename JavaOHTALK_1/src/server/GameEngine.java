@@ -0,0 +1,177 @@
+package server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONObject;
+
+/**
+ * GameEngine:
+ * - 방마다 게임 세션 1개, 고정 tick(TICK_MS)으로 진행
+ * - 모든 세션이 스레드 THREADS개짜리 scheduler 하나를 나눠 씀 (게임당 스레드 없음)
+ *   같은 세션의 tick은 겹쳐서 돌지 않음 (scheduleAtFixedRate)
+ * - 입력은 큐에 모았다가 tick 시작 때 한 번에 반영 (tick당 MAX_INPUTS_PER_TICK까지)
+ * - tick마다 바뀐 것만 game_state로 참가자에게 (바뀐 게 없으면 안 보냄)
+ * - 끝나거나 IDLE_STOP_MS 동안 입력이 없거나 MAX_DURATION_MS가 지나면 game_over
+ */
+public class GameEngine {
+    public static final long TICK_MS = 50;
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int MAX_INPUTS_PER_TICK = 1000;
+    private static final long IDLE_STOP_MS = 60_000;
+    private static final long MAX_DURATION_MS = 10*60_000;
+    private static final long STATS_EVERY_TICKS = 100_000;
+
+    private final ServerMain server;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Integer, Session> sessions = new ConcurrentHashMap<>(); // roomId -> session
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder tickNanos = new LongAdder();
+
+    private class Session implements Runnable {
+        final int roomId;
+        final Game game;
+        final List<Integer> players;
+        final ConcurrentLinkedQueue<Object[]> inputs = new ConcurrentLinkedQueue<>(); // {userId, input}
+        final AtomicInteger queued = new AtomicInteger();
+        final long startedAt = System.currentTimeMillis();
+        volatile long lastInputAt = startedAt;
+        volatile ScheduledFuture<?> future;
+        long tick = 0;
+
+        Session(int roomId, Game game, List<Integer> players) {
+            this.roomId = roomId;
+            this.game = game;
+            this.players = players;
+        }
+
+        @Override
+        public void run() {
+            long t0 = System.nanoTime();
+            try {
+                for(Object[] in; (in=inputs.poll())!=null; ) {
+                    queued.decrementAndGet();
+                    game.onInput((Integer)in[0], (JSONObject)in[1]);
+                }
+                game.tick(++tick);
+                JSONObject d = game.delta();
+                if(d!=null) {
+                    JSONObject data = new JSONObject();
+                    data.put("room_id", roomId);
+                    data.put("tick", tick);
+                    data.put("d", d);
+                    server.sendToUsers(players, MessageProtocol.createEvent("game_state", data));
+                }
+                JSONObject result = game.result();
+                long now = System.currentTimeMillis();
+                if(result!=null) {
+                    end(this, "finished", result);
+                } else if(now-lastInputAt>IDLE_STOP_MS) {
+                    end(this, "idle", null);
+                } else if(now-startedAt>MAX_DURATION_MS) {
+                    end(this, "timeout", null);
+                }
+            } catch(Exception e) {
+                // 예외가 나가면 scheduler가 조용히 반복을 멈추므로 세션도 정리
+                e.printStackTrace();
+                end(this, "error", null);
+            } finally {
+                recordTick(System.nanoTime()-t0);
+            }
+        }
+    }
+
+    public GameEngine(ServerMain server) {
+        this.server = server;
+        scheduler = Executors.newScheduledThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "game-tick");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 게임 시작
+     * @return 시작 상태 (이미 진행 중이거나 모르는 게임이면 null)
+     */
+    public JSONObject start(int roomId, String type, List<Integer> players) {
+        Game game = create(type);
+        if(game==null || players.isEmpty()) return null;
+        Session s = new Session(roomId, game, players);
+        if(sessions.putIfAbsent(roomId, s)!=null) return null;
+        game.start(players);
+        JSONObject data = new JSONObject();
+        data.put("room_id", roomId);
+        data.put("tick_ms", TICK_MS);
+        data.put("state", game.snapshot());
+        server.sendToUsers(players, MessageProtocol.createEvent("game_started", data));
+        s.future = scheduler.scheduleAtFixedRate(s, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+        return data;
+    }
+
+    /**
+     * 입력 (다음 tick에 반영)
+     * @return 진행 중인 게임이 없거나 큐가 가득 차면 false
+     */
+    public boolean input(int roomId, int userId, JSONObject input) {
+        Session s = sessions.get(roomId);
+        if(s==null) return false;
+        if(s.queued.incrementAndGet()>MAX_INPUTS_PER_TICK) {
+            s.queued.decrementAndGet();
+            return false;
+        }
+        s.inputs.add(new Object[]{userId, input});
+        s.lastInputAt = System.currentTimeMillis();
+        return true;
+    }
+
+    public boolean stop(int roomId) {
+        Session s = sessions.get(roomId);
+        if(s==null) return false;
+        end(s, "stopped", null);
+        return true;
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public String getStats() {
+        long n = ticks.sum();
+        return "sessions="+sessions.size()+" ticks="+n+" avgTickUs="+(n==0 ? 0 : tickNanos.sum()/n/1000);
+    }
+
+    private void end(Session s, String reason, JSONObject result) {
+        if(!sessions.remove(s.roomId, s)) return;
+        ScheduledFuture<?> f = s.future;
+        if(f!=null) f.cancel(false);
+        JSONObject data = new JSONObject();
+        data.put("room_id", s.roomId);
+        data.put("reason", reason);
+        data.put("tick", s.tick);
+        if(result!=null) data.put("result", result);
+        server.sendToUsers(s.players, MessageProtocol.createEvent("game_over", data));
+    }
+
+    private void recordTick(long nanos) {
+        ticks.increment();
+        tickNanos.add(nanos);
+        if(ticks.sum()%STATS_EVERY_TICKS==0) {
+            System.out.println("[game] "+getStats());
+        }
+    }
+
+    private static Game create(String type) {
+        switch(type) {
+            case "tap_race": return new TapRaceGame();
+            default: return null;
+        }
+    }
+}
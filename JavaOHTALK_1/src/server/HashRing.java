@@ -0,0 +1,56 @@
+package server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/**
+ * HashRing:
+ * - consistent hashing (멤버마다 VNODES개의 가상 노드)
+ * - 멤버가 빠지면 그 멤버 몫만 시계 방향 다음 멤버로 넘어감 (나머지 key는 주인 유지)
+ */
+public class HashRing<T> {
+    private static final int VNODES = 64;
+
+    private final NavigableMap<Integer, T> ring = new ConcurrentSkipListMap<>(); // 조회는 락 없이
+
+    public void add(T member) {
+        for(int i=0; i<VNODES; i++) {
+            ring.put(hash(member+"#"+i), member);
+        }
+    }
+
+    /**
+     * key의 주인
+     * @param alive 살아있는 멤버만 (null이면 전부)
+     * @return 살아있는 멤버가 없으면 null
+     */
+    public T get(Object key, Predicate<T> alive) {
+        if(ring.isEmpty()) return null;
+        int h = hash(String.valueOf(key));
+        // h 이후부터 한 바퀴
+        for(Map<Integer, T> part : List.of(ring.tailMap(h), ring.headMap(h))) {
+            for(T m : part.values()) {
+                if(alive==null || alive.test(m)) return m;
+            }
+        }
+        return null;
+    }
+
+    public T get(Object key) {
+        return get(key, null);
+    }
+
+    // String.hashCode는 비슷한 문자열끼리 값이 몰림 -> murmur3 finalizer로 섞음
+    private static int hash(String s) {
+        int h = s.hashCode() * 0x9E3779B9;
+        h ^= h>>>16;
+        h *= 0x85ebca6b;
+        h ^= h>>>13;
+        h *= 0xc2b2ae35;
+        h ^= h>>>16;
+        return h;
+    }
+}
@@ -0,0 +1,117 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * ListVersions:
+ * - 유저별 목록(rooms / friends / requests) 버전 관리
+ * - 변경 시 전체 목록 대신 작은 delta 이벤트(room_added 등)를 버전 번호와 함께 push
+ * - 최근 MAX_LOG개의 delta를 보관 -> 클라이언트가 놓친 버전만 다시 받을 수 있음
+ * - 보관 범위보다 오래됐거나 서버가 재시작(epoch 불일치)됐으면 null -> 전체 스냅샷
+ * - IDLE_MS 동안 쓰이지 않은 로그는 지움 (접속했던 모든 유저의 로그가 계속 쌓이지 않도록)
+ *   버전은 로그를 만든 시각 기반에서 시작 -> 다시 만든 로그의 버전이 예전 버전과 겹치지 않음
+ *   (예전 버전을 가진 클라이언트는 보관 범위 밖으로 보고 스냅샷을 받음)
+ */
+public class ListVersions {
+    public static final String ROOMS    = "rooms";
+    public static final String FRIENDS  = "friends";
+    public static final String REQUESTS = "requests";
+
+    private static final int MAX_LOG = 100;
+    private static final long IDLE_MS = 30L*60*1000;
+
+    private final long epoch = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE; // 서버 실행마다 다름
+    private final Map<String, Log> logs = new ConcurrentHashMap<>();  // "userId:list" -> log
+
+    private static class Log {
+        long version = System.currentTimeMillis()*1000; // ms당 1000번 넘게 바뀌지 않는 한 예전 로그 버전보다 큼
+        volatile long lastUsed = System.currentTimeMillis();
+        final ArrayDeque<JSONObject> recent = new ArrayDeque<>();
+    }
+
+    public ListVersions() {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "list-versions-evict");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::evictIdle, IDLE_MS, IDLE_MS/2, TimeUnit.MILLISECONDS);
+    }
+
+    private Log log(int userId, String list) {
+        Log l = logs.computeIfAbsent(userId+":"+list, k -> new Log());
+        l.lastUsed = System.currentTimeMillis();
+        return l;
+    }
+
+    /**
+     * IDLE_MS 동안 쓰이지 않은 로그 삭제
+     */
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        logs.values().removeIf(l -> now-l.lastUsed>IDLE_MS);
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * 현재 버전 (스냅샷 응답에 실어 보냄 - 스냅샷 조회 전에 읽을 것)
+     */
+    public long currentVersion(int userId, String list) {
+        Log l = log(userId, list);
+        synchronized(l) {
+            return l.version;
+        }
+    }
+
+    /**
+     * delta 기록 + 전송
+     * - 버전 증가, 로그 저장, 전송을 한 락 안에서 -> 유저별로 버전 순서대로 나감
+     */
+    public void publish(int userId, String list, String type, JSONObject data, Consumer<String> sender) {
+        Log l = log(userId, list);
+        synchronized(l) {
+            l.version++;
+            data.put("list", list);
+            data.put("version", l.version);
+            data.put("epoch", epoch);
+            JSONObject ev = new JSONObject();
+            ev.put("type", type);
+            ev.put("status", "ok");
+            ev.put("data", data);
+            l.recent.addLast(ev);
+            if(l.recent.size()>MAX_LOG) l.recent.removeFirst();
+            sender.accept(ev.toString());
+        }
+    }
+
+    /**
+     * since 이후의 delta 목록
+     * @return 이어받을 수 없으면 null (스냅샷 필요)
+     */
+    public JSONArray changesSince(int userId, String list, long clientEpoch, long since) {
+        if(clientEpoch!=epoch) return null;
+        Log l = log(userId, list);
+        synchronized(l) {
+            if(since>l.version) return null;
+            long oldest = l.version - l.recent.size() + 1;
+            if(since+1<oldest) return null;
+            JSONArray arr = new JSONArray();
+            for(JSONObject ev : l.recent) {
+                if(ev.getJSONObject("data").getLong("version")>since) arr.put(ev);
+            }
+            return arr;
+        }
+    }
+}
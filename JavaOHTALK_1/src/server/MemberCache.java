@@ -0,0 +1,86 @@
+package server;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONArray;
+
+/**
+ * MemberCache:
+ * - 방 멤버 목록 / 닉네임 캐시 (메시지, 타이핑, 투표 fan-out마다 DB를 조회하지 않도록)
+ * - 방 생성/나가기 때 invalidate (클러스터면 다른 노드에도 알림)
+ * - 놓친 invalidate 대비로 TTL_MS가 지나면 다시 읽음 (닉네임도 TTL_MS마다, 멤버를 다시 읽을 때도 갱신)
+ */
+public class MemberCache {
+    private static final long TTL_MS = 60_000;
+
+    private final DBManager db;
+    private final Map<Integer, Entry> rooms = new ConcurrentHashMap<>();
+    private final Map<Integer, Nick> nicknames = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> invalidatedGen = new ConcurrentHashMap<>(); // 조회 중 invalidate 감지용
+    private final AtomicLong gen = new AtomicLong();
+
+    private static class Entry {
+        final Set<Integer> members;
+        final long loadedAt = System.currentTimeMillis();
+        Entry(Set<Integer> members) {
+            this.members = members;
+        }
+    }
+
+    private static class Nick {
+        final String name;
+        final long loadedAt = System.currentTimeMillis();
+        Nick(String name) {
+            this.name = name;
+        }
+    }
+
+    public MemberCache(DBManager db) {
+        this.db = db;
+    }
+
+    /**
+     * 방 멤버 userId 목록 (읽기 전용)
+     */
+    public Set<Integer> getMembers(int roomId) {
+        Entry e = rooms.get(roomId);
+        if(e==null || System.currentTimeMillis()-e.loadedAt>TTL_MS) {
+            long startGen = gen.get();
+            JSONArray arr = db.getMembersOfRoom(roomId);
+            Set<Integer> ids = new LinkedHashSet<>();
+            for(int i=0; i<arr.length(); i++) {
+                int uid = arr.getJSONObject(i).getInt("user_id");
+                ids.add(uid);
+                nicknames.put(uid, new Nick(arr.getJSONObject(i).getString("nickname")));
+            }
+            e = new Entry(Collections.unmodifiableSet(ids));
+            // 조회하는 사이에 invalidate됐으면(그때 gen이 startGen보다 커짐) 이번 결과는 캐시하지 않음
+            if(invalidatedGen.getOrDefault(roomId, -1L)<=startGen) rooms.put(roomId, e);
+        }
+        return e.members;
+    }
+
+    public boolean isMember(int roomId, int userId) {
+        return getMembers(roomId).contains(userId);
+    }
+
+    public String getNickname(int userId) {
+        Nick n = nicknames.get(userId);
+        if(n==null || System.currentTimeMillis()-n.loadedAt>TTL_MS) {
+            String name = db.getNicknameByUserId(userId);
+            if(name==null) return n==null ? null : n.name;
+            n = new Nick(name);
+            nicknames.put(userId, n);
+        }
+        return n.name;
+    }
+
+    public void invalidateRoom(int roomId) {
+        invalidatedGen.put(roomId, gen.incrementAndGet());
+        rooms.remove(roomId);
+    }
+}
@@ -0,0 +1,73 @@
+package server;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONObject;
+
+/**
+ * MessageScheduler:
+ * - 예약 메시지: DB(scheduled_messages)에 저장 + TimingWheel에 id만 등록
+ * - 시간이 되면 DB에서 "보냄"으로 선점(claim)한 뒤 일반 메시지와 같은 경로(postMessage)로 전송
+ *   (클러스터에서 여러 노드가 같은 예약을 갖고 있어도 한 번만 나감)
+ * - 서버 시작 시 아직 안 보낸 예약을 다시 읽어옴 (꺼져 있던 동안 지난 것은 바로 전송)
+ * - 확실히 안 나간 경우(저장 실패, 주인 노드에 보내지 못함)만 선점을 풀고 다시 시도
+ *   시간 초과는 주인 쪽에서 아직 저장/전송될 수 있으므로 선점한 채로 둠 (두 번 나가지 않게)
+ */
+public class MessageScheduler {
+    private static final int SENDERS = 2;
+    private static final long RETRY_MS = 10000;
+
+    private final DBManager db;
+    private final ServerMain server;
+    private final TimingWheel<Long> wheel;
+    private final ExecutorService senders; // postMessage가 주인 노드 응답을 기다리므로 tick 스레드 밖에서
+
+    public MessageScheduler(DBManager db, ServerMain server) {
+        this.db = db;
+        this.server = server;
+        senders = Executors.newFixedThreadPool(SENDERS, r -> {
+            Thread t = new Thread(r, "scheduled-send");
+            t.setDaemon(true);
+            return t;
+        });
+        wheel = new TimingWheel<>("scheduler-tick", id -> senders.execute(() -> fire(id)));
+        int n = 0;
+        for(long[] s : db.getPendingScheduledMessages()) {
+            wheel.add(s[0], s[1]);
+            n++;
+        }
+        System.out.println("Loaded "+n+" scheduled messages");
+    }
+
+    /**
+     * 예약 등록
+     * @return 예약 id (실패 시 -1)
+     */
+    public long schedule(int roomId, int senderId, String msg, long sendAt) {
+        long id = db.createScheduledMessage(roomId, senderId, msg, sendAt);
+        if(id>0) wheel.add(id, sendAt);
+        return id;
+    }
+
+    private void fire(long id) {
+        JSONObject s = db.claimScheduledMessage(id);
+        if(s==null) return; // 이미 보냈거나 다른 노드가 가져감
+        JSONObject m;
+        try {
+            m = server.postMessage(s.getInt("room_id"), s.getInt("sender_id"), s.getString("message"));
+        } catch(IOException e) {
+            m = null; // 주인 노드로 보내지 못함 -> 안 나감
+        } catch(Exception e) {
+            // 시간 초과 등: 주인 스레드/노드에 이미 들어갔을 수 있음 -> 다시 보내지 않음
+            System.out.println("Scheduled message "+id+" outcome unknown, not retried: "+e);
+            return;
+        }
+        if(m!=null) {
+            server.getReadMarks().markRead(s.getInt("room_id"), s.getInt("sender_id"), m.getInt("id"));
+        } else if(db.releaseScheduledMessage(id)) {
+            // 저장 실패 -> 선점 풀고 잠시 후 다시
+            wheel.add(id, System.currentTimeMillis()+RETRY_MS);
+        }
+    }
+}
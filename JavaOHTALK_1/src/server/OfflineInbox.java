@@ -0,0 +1,80 @@
+package server;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * OfflineInbox:
+ * - 접속해 있지 않은 방 멤버에게 간 메시지의 ID만 유저별로 모아 둠 (메시지 내용은 DB에)
+ * - 로그인 때 한 번에 꺼내서 offline_messages 한 프레임으로 (IN 쿼리 1회)
+ * - 유저당 MAX_PER_USER, 전체 MAX_TOTAL까지만 보관
+ *   넘친 방은 overflow_rooms로 알려주고 클라이언트는 그 방을 history(load_messages)로 봄
+ * - 메모리에만 있음 (서버 재시작 때 사라져도 메시지는 DB에 남아 있음)
+ * - 클러스터 모드: 메시지를 fan-out한 방 주인 노드에 쌓이므로 로그인 노드가 모든 노드에서 꺼냄
+ */
+public class OfflineInbox {
+    private static final int MAX_PER_USER = 256;
+    private static final int MAX_TOTAL = 4_000_000; // ID 4바이트 x 400만 = 16MB 정도
+
+    private final Map<Integer, Box> boxes = new ConcurrentHashMap<>(); // userId -> 받은 메시지 ID
+    private final AtomicInteger total = new AtomicInteger();
+
+    private static class Box {
+        int[] ids = new int[8];
+        int size = 0;
+        boolean drained = false; // drain으로 map에서 빠짐 -> 새 Box에 넣어야 함
+        final Set<Integer> overflowRooms = new LinkedHashSet<>();
+    }
+
+    /**
+     * 메시지 ID 추가 (방 주인의 fan-out 스레드에서)
+     */
+    public void add(int userId, int roomId, int messageId) {
+        while(true) {
+            Box b = boxes.computeIfAbsent(userId, k -> new Box());
+            synchronized(b) {
+                if(b.drained) continue;
+                if(b.size>=MAX_PER_USER || total.incrementAndGet()>MAX_TOTAL) {
+                    if(b.size<MAX_PER_USER) total.decrementAndGet();
+                    b.overflowRooms.add(roomId);
+                    return;
+                }
+                if(b.size==b.ids.length) b.ids = Arrays.copyOf(b.ids, Math.min(b.size*2, MAX_PER_USER));
+                b.ids[b.size++] = messageId;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 보관한 것을 꺼내고 비움
+     * @return {ids:[...], overflow_rooms:[...]} (없으면 빈 배열)
+     */
+    public JSONObject drain(int userId) {
+        JSONObject r = new JSONObject();
+        JSONArray ids = new JSONArray();
+        JSONArray overflow = new JSONArray();
+        Box b = boxes.remove(userId);
+        if(b!=null) {
+            synchronized(b) {
+                for(int i=0; i<b.size; i++) ids.put(b.ids[i]);
+                for(int roomId : b.overflowRooms) overflow.put(roomId);
+                total.addAndGet(-b.size);
+                b.drained = true;
+            }
+        }
+        r.put("ids", ids);
+        r.put("overflow_rooms", overflow);
+        return r;
+    }
+
+    public String getStats() {
+        return "users="+boxes.size()+" refs="+total.get();
+    }
+}
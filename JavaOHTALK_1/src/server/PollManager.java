@@ -0,0 +1,180 @@
+package server;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * PollManager:
+ * - 방 안의 투표 (유저당 1표, 다시 투표하면 바뀜)
+ * - 집계는 메모리에서 선택지별 LongAdder (여러 스레드가 동시에 투표해도 경쟁 없음)
+ * - 투표 기록은 FLUSH_MS마다 모아서 DB에 한 번에 저장 (투표 요청은 DB를 기다리지 않음)
+ * - 결과 push는 투표마다가 아니라 PUSH_MS마다 바뀐 투표만 스냅샷으로
+ *   (5,000명 방에서 모두 투표해도 멤버당 초당 1번)
+ * - 클러스터에서는 방 주인 노드가 집계를 가짐 (vote / poll_results는 주인 노드로)
+ */
+public class PollManager {
+    private static final long FLUSH_MS = 500;
+    private static final long PUSH_MS  = 1000;
+
+    private final DBManager db;
+    private final ServerMain server;
+    private final Map<Integer, Poll> polls = new ConcurrentHashMap<>();
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();        // 결과 push 대기
+    private final ConcurrentLinkedQueue<int[]> pendingVotes = new ConcurrentLinkedQueue<>(); // {pollId, userId, option}
+    private final Map<Long, int[]> failedVotes = new LinkedHashMap<>(); // 저장 실패분 (timer 스레드만 사용)
+    private final ScheduledExecutorService timer;
+
+    private static class Poll {
+        final int id;
+        final int roomId;
+        final String question;
+        final JSONArray options;
+        final LongAdder[] counts;
+        final Map<Integer, Integer> voters = new ConcurrentHashMap<>(); // userId -> option
+
+        Poll(int id, int roomId, String question, JSONArray options) {
+            this.id = id;
+            this.roomId = roomId;
+            this.question = question;
+            this.options = options;
+            counts = new LongAdder[options.length()];
+            for(int i=0; i<counts.length; i++) counts[i] = new LongAdder();
+        }
+    }
+
+    public PollManager(DBManager db, ServerMain server) {
+        this.db = db;
+        this.server = server;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "polls");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::flushVotes, FLUSH_MS, FLUSH_MS, TimeUnit.MILLISECONDS);
+        timer.scheduleAtFixedRate(this::pushResults, PUSH_MS, PUSH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 투표 만들기 -> 방 멤버에게 poll_created
+     * @return 투표 정보 (실패 시 null)
+     */
+    public JSONObject create(int roomId, int creatorId, String question, List<String> options) {
+        int pollId = db.createPoll(roomId, creatorId, question, options);
+        if(pollId<0) return null;
+        JSONObject p = new JSONObject();
+        p.put("poll_id", pollId);
+        p.put("room_id", roomId);
+        p.put("creator_id", creatorId);
+        p.put("question", question);
+        p.put("options", new JSONArray(options));
+        server.sendToRoom(roomId, MessageProtocol.createEvent("poll_created", p));
+        return p;
+    }
+
+    /**
+     * 투표 (방 주인 노드에서)
+     * @return 현재 결과 스냅샷 (없는 투표/다른 방/잘못된 선택지면 null)
+     */
+    public JSONObject vote(int pollId, int roomId, int userId, int option) {
+        Poll p = get(pollId, roomId);
+        if(p==null || option<0 || option>=p.counts.length) return null;
+        Integer prev = p.voters.put(userId, option);
+        if(prev==null || prev!=option) {
+            if(prev!=null) p.counts[prev].decrement();
+            p.counts[option].increment();
+            pendingVotes.add(new int[]{pollId, userId, option});
+            dirty.add(pollId);
+        }
+        return snapshot(p);
+    }
+
+    /**
+     * 현재 결과 (방 주인 노드에서)
+     */
+    public JSONObject results(int pollId, int roomId) {
+        Poll p = get(pollId, roomId);
+        return p==null ? null : snapshot(p);
+    }
+
+    // 처음 쓰는 투표면 DB에서 읽어서 집계를 채움
+    private Poll get(int pollId, int roomId) {
+        Poll p = polls.computeIfAbsent(pollId, id -> {
+            JSONObject info = db.getPoll(id);
+            if(info==null) return null;
+            Poll np = new Poll(id, info.getInt("room_id"), info.getString("question"), info.getJSONArray("options"));
+            for(Map.Entry<Integer, Integer> v : db.getPollVotes(id).entrySet()) {
+                if(v.getValue()<0 || v.getValue()>=np.counts.length) continue;
+                np.voters.put(v.getKey(), v.getValue());
+                np.counts[v.getValue()].increment();
+            }
+            return np;
+        });
+        return p!=null && p.roomId==roomId ? p : null;
+    }
+
+    private JSONObject snapshot(Poll p) {
+        JSONArray counts = new JSONArray();
+        long total = 0;
+        for(LongAdder c : p.counts) {
+            long n = c.sum();
+            counts.put(n);
+            total += n;
+        }
+        JSONObject s = new JSONObject();
+        s.put("poll_id", p.id);
+        s.put("room_id", p.roomId);
+        s.put("question", p.question);
+        s.put("options", p.options);
+        s.put("counts", counts);
+        s.put("total", total);
+        return s;
+    }
+
+    /**
+     * 쌓인 투표를 DB에 한 번에 (같은 유저가 여러 번 바꿨으면 마지막 것만)
+     */
+    private void flushVotes() {
+        try {
+            // 지난번에 실패한 것 위에 새 투표를 덮어씀 (같은 유저면 새 것이 이김)
+            Map<Long, int[]> batch = failedVotes;
+            for(int[] v; (v=pendingVotes.poll())!=null; ) {
+                // 동시에 바꾼 경우 큐 순서와 다를 수 있음 -> 메모리의 현재 값으로 저장
+                Poll p = polls.get(v[0]);
+                if(p!=null) v[2] = p.voters.getOrDefault(v[1], v[2]);
+                batch.put(((long)v[0]<<32) | (v[1] & 0xffffffffL), v);
+            }
+            if(batch.isEmpty()) return;
+            if(db.saveVotes(batch.values())) {
+                batch.clear();
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 바뀐 투표만 결과 스냅샷 push
+     */
+    private void pushResults() {
+        try {
+            for(Integer id : dirty) {
+                dirty.remove(id);
+                Poll p = polls.get(id);
+                if(p==null) continue;
+                server.sendToRoom(p.roomId, MessageProtocol.createEvent("poll_update", snapshot(p)));
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+
+/**
+ * PresenceManager:
+ * - 유저 접속/종료 시 그 유저를 친구로 둔 사람들에게 presence 이벤트 push
+ * - 오프라인 알림은 OFFLINE_DEBOUNCE_MS만큼 늦춰서, 그 안에 다시 접속하면 (flapping) 알리지 않음
+ * - 구독자 조회(DB)와 전송은 전용 스레드에서 -> 로그인 요청 지연에 포함되지 않음
+ */
+public class PresenceManager {
+    private static final long OFFLINE_DEBOUNCE_MS = 3000;
+
+    private final DBManager db;
+    private final ServerMain server;
+    private final Map<Integer, ScheduledFuture<?>> pendingOffline = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+
+    public PresenceManager(DBManager db, ServerMain server) {
+        this.db = db;
+        this.server = server;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "presence");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 접속 -> 대기 중인 오프라인 알림이 있으면 취소 (친구들은 오프라인을 본 적 없음)
+     */
+    public void onOnline(int userId) {
+        ScheduledFuture<?> f = pendingOffline.remove(userId);
+        if(f!=null && f.cancel(false)) return;
+        timer.execute(() -> announce(userId, true));
+    }
+
+    /**
+     * 종료 -> 잠시 후에도 여전히 오프라인이면 알림
+     */
+    public void onOffline(int userId) {
+        ScheduledFuture<?> f = timer.schedule(() -> {
+            pendingOffline.remove(userId);
+            if(!server.isUserOnline(userId)) announce(userId, false);
+        }, OFFLINE_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> old = pendingOffline.put(userId, f);
+        if(old!=null) old.cancel(false);
+    }
+
+    private void announce(int userId, boolean online) {
+        try {
+            JSONObject data = new JSONObject();
+            data.put("user_id", userId);
+            data.put("online", online);
+            String ev = MessageProtocol.createEvent("presence", data);
+            for(int uid : db.getFollowerIds(userId)) {
+                server.sendToUser(uid, ev);
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RateLimiter:
+ * - 연결마다 token bucket: 전체 요청 1개 + 요청 type별 1개씩
+ * - GCRA 방식 (bucket마다 AtomicLong 하나, CAS로 갱신) -> 락 없음, refill 스레드 없음
+ * - 설정: 시스템 프로퍼티 "ratelimit.<type>=초당개수/burst" (전체는 "ratelimit.conn")
+ *   예) -Dratelimit.send_message=10/20 -Dratelimit.get_chat_rooms=off
+ * - 거절된 횟수를 유저별로 집계 -> REPORT_SEC마다 많이 걸린 유저를 로그로
+ * - type별 제한은 시작할 때 한 번 읽어 둔 type(DEFAULTS + 설정된 것)만, 나머지 type은 전체 bucket만
+ *   (type은 클라이언트가 보낸 문자열 -> 아무 type이나 보내도 bucket/설정 map이 늘어나지 않음)
+ * - 전체/type bucket 둘 다 허용일 때만 둘 다 사용 (거절된 요청이 다른 쪽 토큰을 쓰지 않음)
+ */
+public class RateLimiter {
+    private static final long REPORT_SEC = 60;
+    private static final int REPORT_TOP = 5;
+
+    // 기본값 (초당 개수, burst) - 설정이 없는 type은 전체 bucket만 적용
+    private static final Map<String, Limit> DEFAULTS = Map.of(
+        "conn",             new Limit(30, 60),
+        "login",            new Limit(1, 5),
+        "register",         new Limit(0.2, 3),
+        "send_message",     new Limit(10, 20),
+        "get_chat_rooms",   new Limit(1, 5),
+        "load_messages",    new Limit(5, 10),
+        "create_chat_room", new Limit(1, 5),
+        "create_poll",      new Limit(0.5, 3),
+        "vote",             new Limit(5, 10),
+        "game_input",       new Limit(30, 60)
+    );
+    private static final Limit NONE = new Limit(0, 0);
+
+    private final Map<String, Limit> limits = new HashMap<>(); // 생성 후 읽기만
+    private final Map<Integer, LongAdder> throttled = new ConcurrentHashMap<>(); // userId(로그인 전 -1) -> 거절 수
+    private final LongAdder throttledSinceReport = new LongAdder();
+
+    private static class Limit {
+        final long interval;  // 토큰 1개 간격 (ns)
+        final long tolerance; // burst만큼 미리 당겨 쓸 수 있는 시간 (ns)
+
+        Limit(double perSec, int burst) {
+            interval = perSec>0 ? (long)(1_000_000_000L/perSec) : 0;
+            tolerance = interval*Math.max(burst-1, 0);
+        }
+    }
+
+    /**
+     * GCRA bucket: tat(다음 토큰이 정상적으로 도착할 시각)만 저장
+     */
+    private static class Bucket {
+        final Limit limit;
+        final AtomicLong tat = new AtomicLong(Long.MIN_VALUE);
+
+        Bucket(Limit limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * 토큰을 쓰지 않고 확인만
+         * @return 0이면 허용, 아니면 기다려야 할 시간 (ns)
+         */
+        long check(long now) {
+            return Math.max(0, Math.max(tat.get(), now) - limit.tolerance - now);
+        }
+
+        /**
+         * @return 0이면 허용(토큰 사용), 아니면 기다려야 할 시간 (ns)
+         */
+        long tryAcquire(long now) {
+            while(true) {
+                long t = tat.get();
+                long base = Math.max(t, now);
+                long wait = base - limit.tolerance - now;
+                if(wait>0) return wait;
+                if(tat.compareAndSet(t, base+limit.interval)) return 0;
+            }
+        }
+    }
+
+    /**
+     * 연결 하나의 bucket들 (ClientHandler가 보관)
+     */
+    public class Conn {
+        private final Bucket all = newBucket("conn");
+        private final Map<String, Bucket> perType = new ConcurrentHashMap<>(); // limits에 있는 type만
+
+        /**
+         * - 둘 다 확인한 뒤 둘 다 사용 (연결의 요청은 ClientHandler 스레드 하나에서 -> 확인과 사용 사이에 끼는 요청 없음)
+         * @return 0이면 허용, 아니면 retry_after (ms)
+         */
+        public long acquire(String type, int userId) {
+            long now = System.nanoTime();
+            Bucket b = limits.containsKey(type) ? perType.computeIfAbsent(type, RateLimiter.this::newBucket) : null;
+            long wait = Math.max(b==null ? 0 : b.check(now), all==null ? 0 : all.check(now));
+            if(wait==0 && b!=null) wait = b.tryAcquire(now);
+            if(wait==0 && all!=null) wait = all.tryAcquire(now);
+            if(wait==0) return 0;
+            throttled.computeIfAbsent(userId>0 ? userId : -1, k -> new LongAdder()).increment();
+            throttledSinceReport.increment();
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait));
+        }
+    }
+
+    public RateLimiter() {
+        for(String type : DEFAULTS.keySet()) limits.put(type, loadLimit(type));
+        for(String key : System.getProperties().stringPropertyNames()) {
+            if(key.startsWith("ratelimit.")) {
+                String type = key.substring("ratelimit.".length());
+                limits.put(type, loadLimit(type));
+            }
+        }
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rate-limit-report");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::report, REPORT_SEC, REPORT_SEC, TimeUnit.SECONDS);
+    }
+
+    public Conn newConnection() {
+        return new Conn();
+    }
+
+    /**
+     * 유저별 누적 거절 수 (많은 순, 최대 n명) - "userId=count"
+     */
+    public List<String> topThrottled(int n) {
+        List<Map.Entry<Integer, LongAdder>> list = new ArrayList<>(throttled.entrySet());
+        list.sort((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()));
+        List<String> out = new ArrayList<>();
+        for(int i=0; i<Math.min(n, list.size()); i++) {
+            out.add(list.get(i).getKey()+"="+list.get(i).getValue().sum());
+        }
+        return out;
+    }
+
+    private void report() {
+        long n = throttledSinceReport.sumThenReset();
+        if(n>0) {
+            System.out.println("[ratelimit] throttled "+n+" requests in "+REPORT_SEC+"s, top users "+topThrottled(REPORT_TOP));
+        }
+    }
+
+    // 제한 없는 type이면 null
+    private Bucket newBucket(String type) {
+        Limit l = limits.getOrDefault(type, NONE);
+        return l==NONE ? null : new Bucket(l);
+    }
+
+    private static Limit loadLimit(String type) {
+        String v = System.getProperty("ratelimit."+type);
+        if(v==null) return DEFAULTS.getOrDefault(type, NONE);
+        try {
+            if(v.equals("off")) return NONE;
+            String[] p = v.split("/");
+            double perSec = Double.parseDouble(p[0]);
+            int burst = p.length>1 ? Integer.parseInt(p[1]) : (int)Math.max(1, perSec);
+            return perSec>0 ? new Limit(perSec, burst) : NONE;
+        } catch(Exception e) {
+            System.out.println("Invalid ratelimit."+type+"="+v+", using default");
+            return DEFAULTS.getOrDefault(type, NONE);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * ReadMarkManager:
+ * - (방, 멤버)별 마지막으로 읽은 메시지 ID(watermark)를 메모리에 보관
+ * - 변경분은 FLUSH_MS마다 DB에 일괄 반영 (스크롤 중 mark_read 폭주 -> 쓰기 1회), DB에 쓴 것은 메모리에서 뺌
+ * - 안 읽은 수는 DB 값에 아직 안 쓴 watermark를 덮어서 계산 (요청 스레드에서 DB 쓰기 없음)
+ * - read_receipt 이벤트도 RECEIPT_MS 단위로 방별 1프레임으로 묶어서 push
+ */
+public class ReadMarkManager {
+    private static final long RECEIPT_MS = 500;
+    private static final long FLUSH_MS   = 3000;
+
+    private final DBManager db;
+    private final ServerMain server;
+
+    // key = (roomId<<32 | userId)
+    private final Map<Long, Integer> marks = new ConcurrentHashMap<>();          // 최근 갱신된 watermark (DB에 쓰면 뺌)
+    private final Map<Long, Integer> dirty = new ConcurrentHashMap<>();          // 아직 DB에 안 쓴 것
+    private final Map<Integer, Map<Integer, Integer>> receipts = new ConcurrentHashMap<>(); // roomId -> (userId -> msgId), compute 안에서만 수정
+    private final ScheduledExecutorService timer;
+
+    public ReadMarkManager(DBManager db, ServerMain server) {
+        this.db = db;
+        this.server = server;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "read-marks");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(this::sendReceipts, RECEIPT_MS, RECEIPT_MS, TimeUnit.MILLISECONDS);
+        timer.scheduleWithFixedDelay(this::flush, FLUSH_MS, FLUSH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    static long key(int roomId, int userId) {
+        return ((long)roomId<<32) | (userId & 0xffffffffL);
+    }
+
+    /**
+     * 이 값이 현재 메모리 watermark보다 앞서는지 (아니면 처리할 필요 없음)
+     */
+    public boolean isAhead(int roomId, int userId, int messageId) {
+        Integer cur = marks.get(key(roomId, userId));
+        return cur==null || messageId>cur;
+    }
+
+    /**
+     * watermark 갱신 (뒤로 가는 값은 무시)
+     * @return 실제로 앞으로 이동했으면 true
+     */
+    public boolean markRead(int roomId, int userId, int messageId) {
+        long k = key(roomId, userId);
+        int after = marks.merge(k, messageId, Math::max);
+        if(after!=messageId) return false;
+        dirty.merge(k, messageId, Math::max);
+        // sendReceipts가 방 맵을 통째로 떼어가는 것과 겹쳐도 빠지지 않게 compute 안에서 합침
+        receipts.compute(roomId, (r, reads) -> {
+            if(reads==null) reads = new HashMap<>();
+            reads.merge(userId, messageId, Math::max);
+            return reads;
+        });
+        return true;
+    }
+
+    /**
+     * 아직 DB에 안 썼을 수 있는 이 유저의 watermark
+     * - DB 조회보다 먼저 가져올 것 (flush가 DB에 쓴 뒤에 빼므로, 먼저 가져오면 둘 중 하나에는 있음)
+     * @return roomId -> msgId
+     */
+    public Map<Integer, Integer> pendingFor(int userId) {
+        Map<Integer, Integer> res = new HashMap<>();
+        for(Map.Entry<Long, Integer> e : marks.entrySet()) {
+            long k = e.getKey();
+            if((int)k==userId) res.put((int)(k>>>32), e.getValue());
+        }
+        return res;
+    }
+
+    /**
+     * 방별로 모인 읽음 정보를 멤버에게 한 프레임씩 push
+     */
+    private void sendReceipts() {
+        try {
+            for(Integer roomId : receipts.keySet()) {
+                Map<Integer, Integer> reads = receipts.remove(roomId);
+                if(reads==null || reads.isEmpty()) continue;
+
+                JSONArray arr = new JSONArray();
+                for(Map.Entry<Integer, Integer> e : reads.entrySet()) {
+                    JSONObject o = new JSONObject();
+                    o.put("user_id", e.getKey());
+                    o.put("message_id", e.getValue());
+                    arr.put(o);
+                }
+                JSONObject data = new JSONObject();
+                data.put("room_id", roomId);
+                data.put("reads", arr);
+                String ev = MessageProtocol.createEvent("read_receipt", data);
+
+                server.sendToRoom(roomId, ev);
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 밀린 watermark를 DB에 일괄 반영 (타이머, 종료 시)
+     */
+    public synchronized void flush() {
+        if(dirty.isEmpty()) return;
+        Map<Long, Integer> batch = new HashMap<>();
+        for(Long k : dirty.keySet()) {
+            Integer v = dirty.remove(k);
+            if(v!=null) batch.put(k, v);
+        }
+        if(!db.updateReadMarks(batch)) {
+            // 실패분은 다음 주기에 다시 시도
+            batch.forEach((k, v) -> dirty.merge(k, v, Math::max));
+            return;
+        }
+        // DB에 반영됨 -> 그 사이 더 앞서지 않았으면 메모리에서 뺌 (계속 늘어나지 않게)
+        batch.forEach(marks::remove);
+    }
+
+    public void shutdown() {
+        flush();
+        timer.shutdown();
+    }
+}
@@ -4,6 +4,12 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * RequestHandler:
@@ -16,10 +22,22 @@ import java.sql.ResultSet;
  *  - 로그인(login)
  *  - 친구 리스트(get_friend_list), 친구 요청(send_friend_request), 수락(accept_friend_request)
  *  - 채팅방 생성(create_chat_room), 나가기(leave_chat_room), 메시지 전송(send_message) 등
+ *  - 예약 메시지(schedule_message), 투표(create_poll, vote, poll_results)
+ *  - 미니게임(start_game, game_input, stop_game), 입력 중 표시(typing_start, typing_stop)
+ *  - 재접속 sync(sync): 놓친 메시지/목록 변경분만
+ *  - 프로필 이미지(set_profile_image): 파일 자체는 FileServer 채널로 올리고 여기선 해시만
  */
 public class RequestHandler {
+    private static final int MAX_POLL_OPTIONS = 10;
+    private static final int PROFILE_THUMB_SIZE = 256;
+    private static final int MAX_SYNC_ROOMS = 100;
+    private static final int SYNC_PAGE_SIZE = 50;
+    private static final int LOAD_PAGE_SIZE = 50;
+    private static final int SYNC_MAX_MESSAGES = 500; // 방당 이보다 많이 놓쳤으면 최신 것만
+
     private DBManager db;         // DB 접근
     private ServerMain server;    // 서버(이벤트 push 등)
+    private AuthExecutor auth;    // 로그인/회원가입 전용 스레드풀
 
     /**
      * 생성자
@@ -27,20 +45,43 @@ public class RequestHandler {
     public RequestHandler(DBManager db, ServerMain server) {
         this.db = db;
         this.server = server;
+        this.auth = new AuthExecutor();
     }
 
     /**
      * handleRequest:
+     * - 요청에 request_id(숫자)가 있으면 응답에 그대로 붙여 줌 (클라이언트가 응답을 요청과 짝지음)
      * @param handler  ClientHandler (userId등 보관)
      * @param request  클라이언트 -> 서버 JSON string
      * @return         서버 -> 클라이언트 응답(JSON string)
      */
     public String handleRequest(ClientHandler handler, String request) {
-        JSONObject reqObj = new JSONObject(request);    // {"type":"xxx", "data":{...}}
+        JSONObject reqObj = new JSONObject(request);    // {"type":"xxx", "data":{...}, "request_id":n}
+        long reqId = reqObj.optLong("request_id", 0);
+        String resp = handle(handler, reqObj, reqId);
+        return resp==null ? null : withRequestId(resp, reqId);
+    }
+
+    /**
+     * 응답 JSON 끝에 request_id 추가 (다시 파싱하지 않음)
+     */
+    private static String withRequestId(String resp, long reqId) {
+        return reqId<=0 ? resp : resp.substring(0, resp.length()-1)+",\"request_id\":"+reqId+"}";
+    }
+
+    private String handle(ClientHandler handler, JSONObject reqObj, long reqId) {
         String type = reqObj.getString("type");
         JSONObject data = reqObj.getJSONObject("data");
         JSONObject respData = new JSONObject();         // 응답 data
 
+        // 요청 제한 (switch로 넘어가기 전에 -> DB에 닿지 않음)
+        long retryAfter = handler.getRateLimits().acquire(type, handler.getUserId());
+        if(retryAfter>0) {
+            respData.put("reason","Too many requests");
+            respData.put("retry_after", retryAfter);
+            return MessageProtocol.createResponse(type,"fail",respData);
+        }
+
         try {
             switch(type) {
                 // ------------------------------------------------
@@ -54,7 +95,12 @@ public class RequestHandler {
                     String uname = data.getString("username");
                     String pass  = data.getString("password");
                     String nick  = data.getString("nickname");
-                    boolean regOk = db.registerUser(uname, pass, nick);
+                    boolean regOk;
+                    try {
+                        regOk = auth.call(() -> db.registerUser(uname, pass, nick));
+                    } catch(RejectedExecutionException | TimeoutException e) {
+                        return failResp(type,"Server busy, try again");
+                    }
                     if(regOk) {
                         return MessageProtocol.createResponse("register","ok",respData);
                     } else {
@@ -73,15 +119,27 @@ public class RequestHandler {
                     }
                     String uname = data.getString("username");
                     String pass  = data.getString("password");
-                    int uid = db.loginCheck(uname, pass);
-                    if(uid>0) {
+                    JSONObject uinfo; // 인증 + user info (쿼리 1회)
+                    try {
+                        uinfo = auth.call(() -> db.authenticate(uname, pass));
+                    } catch(RejectedExecutionException | TimeoutException e) {
+                        return failResp(type,"Server busy, try again");
+                    }
+                    if(uinfo!=null) {
                         // 로그인 성공
+                        int uid = uinfo.getInt("id");
                         handler.setUserId(uid);
                         server.setUserOnline(uid, handler);
 
-                        JSONObject uinfo = db.getUserInfo(uid); // user info
+                        // 오프라인 동안 받은 메시지 -> offline_messages 한 프레임
+                        // (응답보다 먼저 보내야 클라이언트가 메인 화면을 열 때 이미 받아 둔 상태)
+                        handler.sendMessage(MessageProtocol.createEvent("offline_messages",
+                            server.drainOfflineMessages(uid)));
+
                         respData.put("user_id", uid);
                         respData.put("user_info", uinfo);
+                        respData.put("file_port", server.getFileServer().getPort());
+                        respData.put("session_token", server.getSessionManager().issue(uid, uinfo));
                         return MessageProtocol.createResponse("login","ok",respData);
                     } else {
                         respData.put("reason","Invalid username or password");
@@ -89,13 +147,51 @@ public class RequestHandler {
                     }
                 }
 
+                // ------------------------------------------------
+                // 세션 재개 (재접속 시 비밀번호/DB 없이)
+                // ------------------------------------------------
+                case "resume": {
+                    // data: {session_token}
+                    if(!data.has("session_token")) return failResp(type,"Invalid data");
+                    String token = data.getString("session_token");
+                    SessionManager.Session sess = server.getSessionManager().verify(token);
+                    if(sess==null) {
+                        respData.put("reason","Invalid or expired session");
+                        return MessageProtocol.createResponse("resume","fail",respData);
+                    }
+                    int uid = sess.getUserInfo().getInt("id");
+                    JSONArray missed;
+                    synchronized(sess) {
+                        // 놓친 이벤트를 응답 한 프레임에 담아 먼저 보내고, 그 다음 온라인 등록
+                        missed = server.getSessionManager().drainMissed(sess);
+                        respData.put("user_id", uid);
+                        respData.put("user_info", sess.getUserInfo());
+                        respData.put("session_token", token);
+                        respData.put("file_port", server.getFileServer().getPort());
+                        if(missed!=null) {
+                            respData.put("missed_events", missed);
+                        } else {
+                            respData.put("resync", true); // 유예시간 초과 -> 전체 재로딩 필요
+                        }
+                        handler.setUserId(uid);
+                        handler.sendMessage(withRequestId(MessageProtocol.createResponse("resume","ok",respData), reqId));
+                        server.setUserOnline(uid, handler);
+                    }
+                    if(missed==null) {
+                        // 유예시간이 지나 수신함에 쌓인 메시지도 비움 (내용은 클라이언트가 sync로 받음, 미리보기용으로 로그인처럼 전달)
+                        handler.sendMessage(MessageProtocol.createEvent("offline_messages", server.drainOfflineMessages(uid)));
+                    }
+                    return null;
+                }
+
                 // ------------------------------------------------
                 // 친구 목록
                 // ------------------------------------------------
                 case "get_friend_list": {
                     // data: {}
                     if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
-                    JSONArray flist = db.getFriendList(handler.getUserId());
+                    putVersion(respData, handler.getUserId(), ListVersions.FRIENDS);
+                    JSONArray flist = friendListWithPresence(handler.getUserId());
                     respData.put("friends", flist);
                     return MessageProtocol.createResponse("get_friend_list","ok",respData);
                 }
@@ -113,10 +209,10 @@ public class RequestHandler {
                         respData.put("reason","User not found");
                         return MessageProtocol.createResponse("send_friend_request","fail",respData);
                     }
-                    boolean frOk = db.sendFriendRequest(handler.getUserId(), toId);
-                    if(frOk) {
-                        // 상대방에게 friend_request_list_updated push
-                        server.pushFriendRequestListUpdated(toId);
+                    int frId = db.sendFriendRequest(handler.getUserId(), toId);
+                    if(frId>0) {
+                        // 상대방에게 friend_request_added push (목록 전체 대신 추가분만)
+                        server.notifyFriendRequest(toId, frId, handler.getUserId());
                         return MessageProtocol.createResponse("send_friend_request","ok",respData);
                     } else {
                         respData.put("reason","Already requested or DB error");
@@ -130,6 +226,7 @@ public class RequestHandler {
                 case "get_friend_requests": {
                     // data: {}
                     if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
+                    putVersion(respData, handler.getUserId(), ListVersions.REQUESTS);
                     JSONArray reqs = db.getPendingFriendRequests(handler.getUserId());
                     respData.put("requests", reqs);
                     return MessageProtocol.createResponse("get_friend_requests","ok",respData);
@@ -145,10 +242,16 @@ public class RequestHandler {
                     int rqid = data.getInt("request_id");
                     boolean accepted = db.acceptFriendRequest(rqid, handler.getUserId());
                     if(accepted) {
-                        // fromUser, toUser 모두 friend_list_updated push
+                        // fromUser, toUser 모두 friend_added push + 수락한 쪽 요청 목록에서 제거
+                        int myId = handler.getUserId();
                         int fromId = getFromUserIdOfRequest(rqid);
-                        if(fromId>0) server.pushFriendListUpdated(fromId);
-                        server.pushFriendListUpdated(handler.getUserId());
+                        if(fromId>0) {
+                            server.notifyFriendAdded(fromId, myId);
+                            server.notifyFriendAdded(myId, fromId);
+                        }
+                        JSONObject removed = new JSONObject();
+                        removed.put("request_id", rqid);
+                        server.pushDelta(myId, ListVersions.REQUESTS, "friend_request_removed", removed);
                         return MessageProtocol.createResponse("accept_friend_request","ok",respData);
                     } else {
                         respData.put("reason","Request not found or DB error");
@@ -162,11 +265,75 @@ public class RequestHandler {
                 case "get_chat_rooms": {
                     // data: {}
                     if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
+                    putVersion(respData, handler.getUserId(), ListVersions.ROOMS);
                     JSONArray rooms = db.getChatRoomsForUser(handler.getUserId());
+                    // 안 읽은 메시지 수 (아직 DB에 안 쓴 watermark는 쿼리에 덮어씀)
+                    Map<Integer, Integer> pending = server.getReadMarks().pendingFor(handler.getUserId());
+                    Map<Integer, Integer> unread = db.getUnreadCounts(handler.getUserId(), pending);
+                    for(int i=0; i<rooms.length(); i++){
+                        JSONObject r = rooms.getJSONObject(i);
+                        r.put("unread", unread.getOrDefault(r.getInt("id"), 0));
+                    }
                     respData.put("rooms", rooms);
                     return MessageProtocol.createResponse("get_chat_rooms","ok",respData);
                 }
 
+                // ------------------------------------------------
+                // 목록 변경분 (delta를 놓쳤을 때)
+                // ------------------------------------------------
+                case "get_list_changes": {
+                    // data: {list, epoch, version}
+                    if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
+                    if(!data.has("list")) return failResp(type,"Invalid data");
+                    JSONObject lc = listChanges(handler.getUserId(), data.getString("list"),
+                        data.optLong("epoch", -1), data.optLong("version", -1));
+                    if(lc==null) return failResp(type,"Unknown list");
+                    return MessageProtocol.createResponse("get_list_changes","ok",lc);
+                }
+
+                // ------------------------------------------------
+                // 재접속 sync (놓친 메시지/목록 변경분만)
+                // ------------------------------------------------
+                case "sync": {
+                    // data: {rooms:[{room_id, last_id}], lists:{rooms:{epoch,version}, friends:{...}, requests:{...}}}
+                    if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
+                    int uid = handler.getUserId();
+                    JSONArray rooms = data.optJSONArray("rooms");
+                    if(rooms!=null && rooms.length()>MAX_SYNC_ROOMS) return failResp(type,"Too many rooms");
+
+                    // 1) 열려 있던 방의 놓친 메시지 -> sync_messages 이벤트로 페이지씩 먼저 보냄
+                    JSONArray leftRooms = new JSONArray();
+                    int count = 0;
+                    for(int i=0; rooms!=null && i<rooms.length(); i++){
+                        JSONObject r = rooms.getJSONObject(i);
+                        int roomId = r.getInt("room_id");
+                        if(!server.getMembers().isMember(roomId, uid)) {
+                            leftRooms.put(roomId);
+                            continue;
+                        }
+                        count += streamMissedMessages(handler, roomId, r.optInt("last_id", 0));
+                    }
+
+                    // 2) 목록 변경분 (get_list_changes와 같은 형식, 너무 오래됐으면 스냅샷)
+                    JSONObject lists = new JSONObject();
+                    JSONObject lv = data.optJSONObject("lists");
+                    if(lv!=null) {
+                        for(String list : lv.keySet()) {
+                            JSONObject v = lv.getJSONObject(list);
+                            JSONObject lc = listChanges(uid, list, v.optLong("epoch", -1), v.optLong("version", -1));
+                            if(lc!=null) lists.put(list, lc);
+                        }
+                    }
+
+                    // 3) 안 열린 방은 안 읽은 수만
+                    Map<Integer, Integer> pending = server.getReadMarks().pendingFor(uid);
+                    respData.put("unread", new JSONObject(db.getUnreadCounts(uid, pending)));
+                    respData.put("lists", lists);
+                    respData.put("left_rooms", leftRooms);
+                    respData.put("message_count", count);
+                    return MessageProtocol.createResponse("sync","ok",respData);
+                }
+
                 // ------------------------------------------------
                 // 채팅방 생성
                 // ------------------------------------------------
@@ -179,20 +346,20 @@ public class RequestHandler {
                     String rname = data.getString("name");
                     String rtype = data.getString("type");
                     JSONArray parts = data.getJSONArray("participants");
+                    LinkedHashSet<Integer> memberIds = new LinkedHashSet<>();
+                    for(int i=0; i<parts.length(); i++){
+                        memberIds.add(parts.getInt(i));
+                    }
 
-                    int newRoomId = db.createChatRoom(rname, rtype);
+                    // 방 생성 + 멤버 등록 (트랜잭션 1회)
+                    int newRoomId = db.createChatRoomWithMembers(rname, rtype, memberIds);
                     if(newRoomId<=0) {
                         respData.put("reason","DB error creating room");
                         return MessageProtocol.createResponse("create_chat_room","fail",respData);
                     }
-                    // 멤버 등록
-                    for(int i=0; i<parts.length(); i++){
-                        db.addChatRoomMember(newRoomId, parts.getInt(i));
-                    }
-                    // 참가자 모두에게 chat_rooms_updated
-                    for(int i=0; i<parts.length(); i++){
-                        server.pushChatRoomsUpdated(parts.getInt(i));
-                    }
+                    // 참가자 모두에게 room_added (방 정보는 한 번만 조회)
+                    server.onRoomMembersChanged(newRoomId);
+                    server.notifyRoomAdded(newRoomId);
                     respData.put("room_id", newRoomId);
                     return MessageProtocol.createResponse("create_chat_room","ok",respData);
                 }
@@ -205,18 +372,16 @@ public class RequestHandler {
                     if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
                     if(!data.has("room_id")) return failResp(type,"Invalid data");
                     int roomId = data.getInt("room_id");
+                    respData.put("room_id", roomId); // 클라이언트가 해당 방 창에만 전달
                     boolean left = db.removeChatRoomMember(roomId, handler.getUserId());
                     if(left) {
-                        // 본인에게 chat_rooms_updated
-                        server.pushChatRoomsUpdated(handler.getUserId());
-                        // 방이 아직 살아있다면 남은 멤버에게도 push
-                        if(db.getChatRoomInfo(roomId)!=null) {
-                            JSONArray remain = db.getMembersOfRoom(roomId);
-                            for(int i=0; i<remain.length(); i++){
-                                int uid = remain.getJSONObject(i).getInt("user_id");
-                                server.pushChatRoomsUpdated(uid);
-                            }
-                        }
+                        server.onRoomMembersChanged(roomId);
+                        // 본인에게 room_removed
+                        JSONObject removed = new JSONObject();
+                        removed.put("room_id", roomId);
+                        server.pushDelta(handler.getUserId(), ListVersions.ROOMS, "room_removed", removed);
+                        // 방이 아직 살아있다면 남은 멤버에게 member_left
+                        server.notifyMemberLeft(roomId, handler.getUserId());
                         return MessageProtocol.createResponse("leave_chat_room","ok",respData);
                     } else {
                         respData.put("reason","DB error or invalid room");
@@ -233,9 +398,19 @@ public class RequestHandler {
                     if(!data.has("room_id")||!data.has("message")) return failResp(type,"Invalid data");
                     int roomId = data.getInt("room_id");
                     String msg = data.getString("message");
-                    boolean saved = db.saveMessage(roomId, handler.getUserId(), msg);
-                    if(saved) {
-                        server.broadcastMessageToRoom(roomId, handler.getUserId(), msg);
+                    JSONObject m;
+                    try {
+                        m = server.postMessage(roomId, handler.getUserId(), msg);
+                    } catch(TimeoutException e) {
+                        return failResp(type,"Server busy, try again");
+                    }
+                    if(m!=null) {
+                        int msgId = m.getInt("id");
+                        // 보낸 사람은 자기 메시지를 읽은 것으로
+                        server.getReadMarks().markRead(roomId, handler.getUserId(), msgId);
+                        respData.put("id", msgId);
+                        respData.put("seq", m.getLong("seq"));
+                        respData.put("timestamp", m.getLong("timestamp"));
                         return MessageProtocol.createResponse("send_message","ok",respData);
                     } else {
                         respData.put("reason","DB error");
@@ -243,19 +418,207 @@ public class RequestHandler {
                     }
                 }
 
+                // ------------------------------------------------
+                // 입력 중 표시 (응답 없음, 저장 안 함)
+                // ------------------------------------------------
+                case "typing_start":
+                case "typing_stop": {
+                    // data: {room_id}
+                    if(!handler.isAuthenticated() || !data.has("room_id")) return null;
+                    int roomId = data.getInt("room_id");
+                    if(!server.getMembers().isMember(roomId, handler.getUserId())) return null;
+                    try {
+                        server.setTyping(roomId, handler.getUserId(), type.equals("typing_start"));
+                    } catch(TimeoutException e) {
+                        // 표시용이므로 버림
+                    }
+                    return null;
+                }
+
+                // ------------------------------------------------
+                // 예약 메시지
+                // ------------------------------------------------
+                case "schedule_message": {
+                    // data: {room_id, message, send_at(epoch ms)}
+                    if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
+                    if(!data.has("room_id")||!data.has("message")||!data.has("send_at")) return failResp(type,"Invalid data");
+                    int roomId = data.getInt("room_id");
+                    long sendAt = data.getLong("send_at");
+                    if(sendAt<=System.currentTimeMillis()) return failResp(type,"send_at must be in the future");
+                    if(!server.getMembers().isMember(roomId, handler.getUserId())) return failResp(type,"Not a member");
+                    long id = server.getScheduler().schedule(roomId, handler.getUserId(), data.getString("message"), sendAt);
+                    if(id<0) return failResp(type,"DB error");
+                    respData.put("schedule_id", id);
+                    respData.put("send_at", sendAt);
+                    return MessageProtocol.createResponse(type,"ok",respData);
+                }
+
+                // ------------------------------------------------
+                // 투표
+                // ------------------------------------------------
+                case "create_poll": {
+                    // data: {room_id, question, options:[...]}
+                    if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
+                    if(!data.has("room_id")||!data.has("question")||!data.has("options")) return failResp(type,"Invalid data");
+                    int roomId = data.getInt("room_id");
+                    JSONArray opts = data.getJSONArray("options");
+                    if(opts.length()<2 || opts.length()>MAX_POLL_OPTIONS) return failResp(type,"Need 2-"+MAX_POLL_OPTIONS+" options");
+                    if(!server.getMembers().isMember(roomId, handler.getUserId())) return failResp(type,"Not a member");
+                    List<String> options = new ArrayList<>();
+                    for(int i=0; i<opts.length(); i++) options.add(opts.getString(i));
+                    JSONObject poll = server.getPolls().create(roomId, handler.getUserId(), data.getString("question"), options);
+                    if(poll==null) return failResp(type,"DB error");
+                    respData.put("poll", poll);
+                    return MessageProtocol.createResponse(type,"ok",respData);
+                }
+
+                case "vote": {
+                    // data: {room_id, poll_id, option}
+                    if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
+                    if(!data.has("room_id")||!data.has("poll_id")||!data.has("option")) return failResp(type,"Invalid data");
+                    int roomId = data.getInt("room_id");
+                    if(!server.getMembers().isMember(roomId, handler.getUserId())) return failResp(type,"Not a member");
+                    JSONObject result;
+                    try {
+                        result = server.vote(roomId, data.getInt("poll_id"), handler.getUserId(), data.getInt("option"));
+                    } catch(TimeoutException e) {
+                        return failResp(type,"Server busy, try again");
+                    }
+                    if(result==null) return failResp(type,"Invalid poll or option");
+                    respData.put("poll", result);
+                    respData.put("my_option", data.getInt("option"));
+                    return MessageProtocol.createResponse(type,"ok",respData);
+                }
+
+                case "poll_results": {
+                    // data: {room_id, poll_id}
+                    if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
+                    if(!data.has("room_id")||!data.has("poll_id")) return failResp(type,"Invalid data");
+                    int roomId = data.getInt("room_id");
+                    if(!server.getMembers().isMember(roomId, handler.getUserId())) return failResp(type,"Not a member");
+                    JSONObject result;
+                    try {
+                        result = server.pollResults(roomId, data.getInt("poll_id"));
+                    } catch(TimeoutException e) {
+                        return failResp(type,"Server busy, try again");
+                    }
+                    if(result==null) return failResp(type,"Invalid poll");
+                    respData.put("poll", result);
+                    return MessageProtocol.createResponse(type,"ok",respData);
+                }
+
+                // ------------------------------------------------
+                // 미니게임
+                // ------------------------------------------------
+                case "start_game": {
+                    // data: {room_id, game}
+                    if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
+                    if(!data.has("room_id")||!data.has("game")) return failResp(type,"Invalid data");
+                    int roomId = data.getInt("room_id");
+                    if(!server.getMembers().isMember(roomId, handler.getUserId())) return failResp(type,"Not a member");
+                    JSONObject started;
+                    try {
+                        started = server.startGame(roomId, data.getString("game"));
+                    } catch(TimeoutException e) {
+                        return failResp(type,"Server busy, try again");
+                    }
+                    if(started==null) return failResp(type,"Game already running or unknown game");
+                    return MessageProtocol.createResponse(type,"ok",started);
+                }
+
+                case "game_input": {
+                    // data: {room_id, input:{...}} - 참가자 확인은 게임 세션이 함 (입력마다 DB 조회 안 함)
+                    if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
+                    if(!data.has("room_id")||!data.has("input")) return failResp(type,"Invalid data");
+                    int roomId = data.getInt("room_id");
+                    try {
+                        if(!server.gameInput(roomId, handler.getUserId(), data.getJSONObject("input"))) {
+                            return failResp(type,"No game running");
+                        }
+                    } catch(TimeoutException e) {
+                        return failResp(type,"Server busy, try again");
+                    }
+                    return MessageProtocol.createResponse(type,"ok",respData);
+                }
+
+                case "stop_game": {
+                    // data: {room_id}
+                    if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
+                    if(!data.has("room_id")) return failResp(type,"Invalid data");
+                    int roomId = data.getInt("room_id");
+                    if(!server.getMembers().isMember(roomId, handler.getUserId())) return failResp(type,"Not a member");
+                    try {
+                        if(!server.stopGame(roomId)) return failResp(type,"No game running");
+                    } catch(TimeoutException e) {
+                        return failResp(type,"Server busy, try again");
+                    }
+                    return MessageProtocol.createResponse(type,"ok",respData);
+                }
+
                 // ------------------------------------------------
                 // 메시지 로드
                 // ------------------------------------------------
                 case "load_messages": {
-                    // data: {room_id}
+                    // data: {room_id, before_id?, after_id?}
+                    // - 없으면 최신 페이지, before_id면 그 이전 페이지 (최신 순)
+                    // - after_id면 그 다음 페이지 (오래된 순)
                     if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
                     if(!data.has("room_id")) return failResp(type,"Invalid data");
                     int roomId = data.getInt("room_id");
-                    JSONArray arr = db.loadMessages(roomId);
+                    int beforeId = data.optInt("before_id", 0);
+                    int afterId = data.optInt("after_id", 0);
+                    JSONArray arr;
+                    if(afterId>0) {
+                        arr = db.loadMessagesAfter(roomId, afterId, LOAD_PAGE_SIZE);
+                        respData.put("after_id", afterId);
+                    } else if(beforeId>0) {
+                        arr = db.loadMessagesBefore(roomId, beforeId, LOAD_PAGE_SIZE);
+                        respData.put("before_id", beforeId);
+                    } else {
+                        arr = db.loadMessagesBefore(roomId, Integer.MAX_VALUE, LOAD_PAGE_SIZE);
+                    }
+                    respData.put("room_id", roomId);
                     respData.put("messages", arr);
+                    respData.put("has_more", arr.length()==LOAD_PAGE_SIZE);
                     return MessageProtocol.createResponse("load_messages","ok",respData);
                 }
 
+                // ------------------------------------------------
+                // 읽음 표시
+                // ------------------------------------------------
+                case "mark_read": {
+                    // data: {room_id, message_id}
+                    if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
+                    if(!data.has("room_id")||!data.has("message_id")) return failResp(type,"Invalid data");
+                    int roomId = data.getInt("room_id");
+                    int msgId  = data.getInt("message_id");
+                    int uid    = handler.getUserId();
+                    // 이미 더 뒤까지 읽었으면 DB 없이 바로 ok (스크롤 중 중복 요청)
+                    if(server.getReadMarks().isAhead(roomId, uid, msgId)) {
+                        if(!server.getMembers().isMember(roomId, uid)) return failResp(type,"Not a member");
+                        // 방에 없는 큰 ID로 watermark가 고정되지 않게 방의 마지막 메시지까지만
+                        int maxId = db.getMaxMessageId(roomId);
+                        if(maxId<0) return failResp(type,"DB error");
+                        msgId = Math.min(msgId, maxId);
+                        if(msgId>0) server.getReadMarks().markRead(roomId, uid, msgId);
+                    }
+                    return MessageProtocol.createResponse("mark_read","ok",respData);
+                }
+
+                // ------------------------------------------------
+                // 프로필 이미지 변경
+                // ------------------------------------------------
+                case "set_profile_image": {
+                    // data: {hash}  (FileServer로 먼저 업로드한 파일)
+                    if(!handler.isAuthenticated()) return failResp(type,"Not authenticated");
+                    String hash = data.optString("hash");
+                    if(!server.getFileServer().getStore().exists(hash)) return failResp(type,"File not uploaded");
+                    if(!db.updateProfileImage(handler.getUserId(), hash)) return failResp(type,"DB error");
+                    respData.put("profile_image", hash);
+                    respData.put("profile_thumb", ThumbnailCache.id(hash, PROFILE_THUMB_SIZE));
+                    return MessageProtocol.createResponse("set_profile_image","ok",respData);
+                }
+
                 // ------------------------------------------------
                 // 프로필 조회
                 // ------------------------------------------------
@@ -265,6 +628,10 @@ public class RequestHandler {
                     int pid = data.getInt("user_id");
                     JSONObject pf = db.getUserInfo(pid);
                     if(pf!=null) {
+                        // 업로드한 사진이면 원본 대신 받을 썸네일 ID
+                        if(FileStore.isValidHash(pf.optString("profile_image"))) {
+                            pf.put("profile_thumb", ThumbnailCache.id(pf.getString("profile_image"), PROFILE_THUMB_SIZE));
+                        }
                         respData.put("profile", pf);
                         return MessageProtocol.createResponse("get_profile","ok",respData);
                     } else {
@@ -339,6 +706,80 @@ public class RequestHandler {
         return -1;
     }
 
+    /**
+     * 스냅샷 응답에 목록 버전 표시 (조회 전에 읽어야 그 사이 delta를 놓치지 않음)
+     */
+    private void putVersion(JSONObject respData, int userId, String list) {
+        respData.put("epoch", server.getListVersions().getEpoch());
+        respData.put("version", server.getListVersions().currentVersion(userId, list));
+    }
+
+    /**
+     * 목록 변경분 {list, epoch, version, changes 또는 snapshot}
+     * @return 모르는 목록이면 null
+     */
+    private JSONObject listChanges(int userId, String list, long epoch, long since) {
+        JSONObject r = new JSONObject();
+        putVersion(r, userId, list);
+        r.put("list", list);
+        JSONArray changes = server.getListVersions().changesSince(userId, list, epoch, since);
+        if(changes!=null) {
+            r.put("changes", changes);
+        } else if(list.equals(ListVersions.ROOMS)) {
+            // 너무 오래됨 -> 전체 스냅샷
+            r.put("snapshot", db.getChatRoomsForUser(userId));
+        } else if(list.equals(ListVersions.FRIENDS)) {
+            r.put("snapshot", friendListWithPresence(userId));
+        } else if(list.equals(ListVersions.REQUESTS)) {
+            r.put("snapshot", db.getPendingFriendRequests(userId));
+        } else {
+            return null;
+        }
+        return r;
+    }
+
+    /**
+     * lastId 이후 메시지를 SYNC_PAGE_SIZE개씩 sync_messages {room_id, messages, gap} 이벤트로 전송
+     * - SYNC_MAX_MESSAGES보다 많이 놓쳤으면 최신 SYNC_MAX_MESSAGES개만 보내고 gap=true (그 앞은 필요할 때 따로 로드)
+     * - 한 페이지씩 쓰고 다음 페이지를 읽으므로 느린 클라이언트면 쓰기에서 자연히 기다림
+     * @return 보낸 메시지 수
+     */
+    private int streamMissedMessages(ClientHandler handler, int roomId, int lastId) {
+        boolean gap = false;
+        int cut = db.getNthNewestMessageId(roomId, SYNC_MAX_MESSAGES+1);
+        if(cut>lastId) {
+            lastId = cut;
+            gap = true;
+        }
+        int sent = 0;
+        while(sent<SYNC_MAX_MESSAGES) {
+            JSONArray page = db.loadMessagesAfter(roomId, lastId, Math.min(SYNC_PAGE_SIZE, SYNC_MAX_MESSAGES-sent));
+            if(page.length()==0) break;
+            JSONObject ev = new JSONObject();
+            ev.put("room_id", roomId);
+            ev.put("messages", page);
+            ev.put("gap", gap);
+            handler.sendMessage(MessageProtocol.createEvent("sync_messages", ev));
+            gap = false;
+            sent += page.length();
+            lastId = page.getJSONObject(page.length()-1).getInt("id");
+            if(page.length()<SYNC_PAGE_SIZE) break;
+        }
+        return sent;
+    }
+
+    /**
+     * 친구 목록 + 접속 상태 스냅샷 (이후 변경은 presence 이벤트로)
+     */
+    private JSONArray friendListWithPresence(int userId) {
+        JSONArray flist = db.getFriendList(userId);
+        for(int i=0; i<flist.length(); i++){
+            JSONObject f = flist.getJSONObject(i);
+            f.put("online", server.isUserOnline(f.getInt("friend_id")));
+        }
+        return flist;
+    }
+
     /**
      * 실패 응답
      */
@@ -0,0 +1,86 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import org.json.JSONObject;
+
+/**
+ * RoomSequencer:
+ * - 방마다 주인(owner) 스레드 1개 (HashRing으로 결정) -> 한 방의 메시지는 한 스레드가 차례로 처리
+ *   (같은 방에 동시에 보내도 락 경쟁 없음, 다른 방은 다른 스레드에서 병렬)
+ * - 주인 스레드가 seq(방별 1씩 증가)와 서버 timestamp를 매긴 뒤 저장 -> 방 안의 순서가 seq로 확정
+ * - seq는 방을 처음 맡을 때 DB의 MAX(seq)에서 이어감
+ *   저장 실패(다른 노드가 주인이던 동안 쓴 seq와 겹침 등)면 MAX(seq)를 다시 읽고 1회 재시도
+ */
+public class RoomSequencer {
+    private static final int OWNERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final DBManager db;
+    private final ExecutorService[] owners = new ExecutorService[OWNERS];
+    private final HashRing<Integer> ring = new HashRing<>();
+    private final Map<Integer, long[]> rooms = new ConcurrentHashMap<>(); // roomId -> {lastSeq, lastTs}
+
+    public RoomSequencer(DBManager db) {
+        this.db = db;
+        for(int i=0; i<OWNERS; i++) {
+            String name = "room-owner-"+i;
+            owners[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+            ring.add(i);
+        }
+    }
+
+    /**
+     * roomId의 주인 스레드에서 task 실행
+     */
+    public <T> CompletableFuture<T> submit(int roomId, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, owners[ring.get(roomId)]);
+    }
+
+    /**
+     * seq/timestamp를 매기고 저장 (주인 스레드에서만 호출)
+     * @return {id, seq, timestamp} 또는 null
+     */
+    public JSONObject store(int roomId, int senderId, String msg) {
+        for(int attempt=0; attempt<2; attempt++) {
+            long[] st = rooms.get(roomId);
+            if(st==null || attempt>0) {
+                long max = db.getMaxSeq(roomId);
+                if(max<0) return null;
+                st = new long[]{max, st==null ? 0 : st[1]};
+                rooms.put(roomId, st);
+            }
+            long seq = st[0]+1;
+            long ts = Math.max(System.currentTimeMillis(), st[1]); // seq와 같이 줄어들지 않게
+            int id = db.saveMessage(roomId, senderId, msg, seq, ts);
+            if(id>0) {
+                st[0] = seq;
+                st[1] = ts;
+                JSONObject m = new JSONObject();
+                m.put("id", id);
+                m.put("seq", seq);
+                m.put("timestamp", ts);
+                return m;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 다른 노드로 주인이 넘어간 방 -> 나중에 다시 맡을 때 DB에서 이어받도록 캐시 삭제
+     */
+    public void forget(int roomId) {
+        rooms.remove(roomId);
+    }
+
+    public void shutdown() {
+        for(ExecutorService e : owners) e.shutdown();
+    }
+}
@@ -2,7 +2,11 @@ package server;
 
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -10,29 +14,79 @@ import org.json.JSONObject;
  * ServerMain:
  * - 서버소켓 열고 클라이언트 accept
  * - 온라인 유저 관리
- * - 이벤트 push (chat_rooms_updated, friend_list_updated, etc.)
+ * - 이벤트 push (new_message, 목록 delta: room_added, friend_added, etc.)
+ * - 메시지는 방 주인(RoomSequencer 스레드, 클러스터면 주인 노드)이 seq를 매기고 fan-out
+ * - 접속 안 한 멤버에게 간 메시지는 OfflineInbox에 ID만 모았다가 로그인 때 한 번에
+ * - 클러스터 모드: 다른 노드 유저에게는 ClusterBus로 전달
+ *
+ * 실행: ServerMain [port] [nodeId clusterPort peers]
+ *   파일 채널: -Dfile.port (기본 port+100), -Dfile.dir (기본 ./files)
+ *   클러스터: -Dcluster.secret (필수, 모든 노드 같은 값), -Dcluster.bind (대기 주소, 기본 loopback)
+ *   예) ServerMain 5007 1 6007 2@localhost:6008
+ *       ServerMain 5008 2 6008 1@localhost:6007
  */
 public class ServerMain {
+    private static final long OWNER_CALL_TIMEOUT_MS = 5000;
+    private static final int ACCEPT_BACKLOG = 1024; // 재시작 직후 클라이언트들이 한꺼번에 재접속해도 연결이 거절되지 않도록 (기본 50)
+
     private DBManager dbManager;                // DB
     private RequestHandler requestHandler;      // 요청 처리
     private Map<Integer, ClientHandler> onlineUsers; // userId -> handler
+    private SessionManager sessions;            // 세션 토큰 + 재접속 유예
+    private ReadMarkManager readMarks;          // 읽음 표시 watermark
+    private ListVersions listVersions;          // 목록 버전 + delta 로그
+    private PresenceManager presence;           // 친구 접속상태 push
+    private EventBus eventBus;                  // push 계산을 요청 스레드 밖으로
+    private RoomSequencer sequencer;            // 방별 주인 스레드 (seq, timestamp)
+    private RateLimiter rateLimiter;            // 연결/요청 type별 요청 제한
+    private MessageScheduler scheduler;         // 예약 메시지
+    private PollManager polls;                  // 방 안의 투표
+    private GameEngine games;                   // 방 안의 미니게임 (고정 tick)
+    private MemberCache members;                // 방 멤버 / 닉네임 캐시
+    private TypingManager typing;               // 입력 중 표시
+    private OfflineInbox inbox;                 // 접속 안 한 멤버에게 간 메시지 ID (로그인 때 drain)
+    private FileServer fileServer;              // 파일/이미지 전송 채널 (채팅 포트+100)
+    private ClusterBus cluster;                 // 클러스터 모드가 아니면 null
     private int port = 5007;
 
     public ServerMain() {
         // Thread-safe map
         onlineUsers = Collections.synchronizedMap(new HashMap<>());
+        sessions = new SessionManager();
+        listVersions = new ListVersions();
+        eventBus = new EventBus();
+        rateLimiter = new RateLimiter();
+        inbox = new OfflineInbox();
+    }
+
+    public ServerMain(int port) {
+        this();
+        this.port = port;
+    }
+
+    /**
+     * 클러스터 모드 (startServer 전에 호출)
+     */
+    public void enableCluster(int nodeId, int clusterPort, String peers) {
+        cluster = new ClusterBus(nodeId, System.getProperty("cluster.bind"), clusterPort, peers,
+            System.getProperty("cluster.secret"), this);
     }
 
     public void startServer() {
         try {
             // DB 접속
-            dbManager = new DBManager(
+            initComponents(new DBManager(
                 "jdbc:mysql://localhost:3306/chat_app?useSSL=false&serverTimezone=UTC",
                 "root","jakewe03210519!!"
-            );
-            requestHandler = new RequestHandler(dbManager, this);
+            ));
+            Path fileDir = Paths.get(System.getProperty("file.dir", "files"));
+            FileStore store = new FileStore(fileDir);
+            ThumbnailCache thumbs = new ThumbnailCache(store, fileDir.resolve("thumbs"));
+            fileServer = new FileServer(Integer.getInteger("file.port", port+100), store, thumbs, sessions);
+            fileServer.start();
+            if(cluster!=null) cluster.start();
 
-            ServerSocket ss = new ServerSocket(port);
+            ServerSocket ss = new ServerSocket(port, ACCEPT_BACKLOG);
             System.out.println("Server started on port "+port);
 
             while(true) {
@@ -45,6 +99,29 @@ public class ServerMain {
         }
     }
 
+    /**
+     * DB를 쓰는 구성요소 생성 (startServer에서, bench는 메모리 DB로 직접 호출)
+     */
+    void initComponents(DBManager db) {
+        dbManager = db;
+        members = new MemberCache(db);
+        readMarks = new ReadMarkManager(db, this);
+        presence = new PresenceManager(db, this);
+        sequencer = new RoomSequencer(db);
+        scheduler = new MessageScheduler(db, this);
+        polls = new PollManager(db, this);
+        games = new GameEngine(this);
+        typing = new TypingManager(this);
+        requestHandler = new RequestHandler(db, this);
+    }
+
+    /**
+     * 클러스터 모드가 아니면 null
+     */
+    public ClusterBus getCluster() {
+        return cluster;
+    }
+
     /**
      * RequestHandler getter
      */
@@ -52,97 +129,460 @@ public class ServerMain {
         return requestHandler;
     }
 
+    public SessionManager getSessionManager() {
+        return sessions;
+    }
+
+    public ListVersions getListVersions() {
+        return listVersions;
+    }
+
+    public ReadMarkManager getReadMarks() {
+        return readMarks;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public MessageScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public PollManager getPolls() {
+        return polls;
+    }
+
+    public MemberCache getMembers() {
+        return members;
+    }
+
+    public TypingManager getTyping() {
+        return typing;
+    }
+
+    public FileServer getFileServer() {
+        return fileServer;
+    }
+
+    /**
+     * 방 멤버가 바뀜 (생성/나가기) -> 캐시 무효화, 클러스터면 다른 노드에도
+     */
+    public void onRoomMembersChanged(int roomId) {
+        members.invalidateRoom(roomId);
+        if(cluster!=null) cluster.roomChanged(roomId);
+    }
+
     /**
      * 유저 온라인 등록
      */
     public void setUserOnline(int userId, ClientHandler handler) {
         onlineUsers.put(userId, handler);
+        if(cluster!=null) cluster.announce(userId, true);
+        presence.onOnline(userId);
     }
 
     /**
      * 유저 오프라인
+     * - resume으로 이미 새 소켓에 바인딩됐다면 (handler 불일치) 아무것도 하지 않음
      */
-    public void setUserOffline(int userId) {
-        onlineUsers.remove(userId);
+    public void setUserOffline(int userId, ClientHandler handler) {
+        if(onlineUsers.remove(userId, handler)) {
+            sessions.onDisconnect(userId);
+            if(cluster!=null) cluster.announce(userId, false);
+            presence.onOffline(userId);
+        }
     }
 
     /**
-     * 유저가 온라인인지
+     * 유저가 온라인인지 (클러스터 모드면 다른 노드 포함)
      */
     public boolean isUserOnline(int userId) {
-        return onlineUsers.containsKey(userId);
+        return onlineUsers.containsKey(userId) || !remoteNodes(userId).isEmpty();
+    }
+
+    /**
+     * 유저가 접속한 다른 노드들 (같은 계정으로 여러 노드에 접속 가능)
+     */
+    private Set<Integer> remoteNodes(int userId) {
+        return cluster==null ? Collections.emptySet() : cluster.nodesOf(userId);
+    }
+
+    /**
+     * 이 노드에 접속한 유저 ID 목록
+     */
+    public List<Integer> getLocalUserIds() {
+        synchronized(onlineUsers) {
+            return new ArrayList<>(onlineUsers.keySet());
+        }
+    }
+
+    /**
+     * 이벤트를 받을 대상인지 (온라인이거나 재접속 유예시간 중)
+     */
+    private boolean isReachable(int userId) {
+        return onlineUsers.containsKey(userId) || sessions.isInGrace(userId);
+    }
+
+    /**
+     * 유저에게 이벤트 전송
+     * - 다른 노드에 접속해 있으면 그 노드(들)로 한 번씩
+     * - 이 노드에 접속해 있으면 바로 전송, 유예시간 중이면 세션에 보관 (resume 때 재전송)
+     */
+    public void sendToUser(int userId, String ev) {
+        Set<Integer> nodes = remoteNodes(userId);
+        for(int node : nodes) {
+            cluster.deliver(node, Collections.singletonList(userId), ev);
+        }
+        if(nodes.isEmpty() || onlineUsers.containsKey(userId)) {
+            deliverLocal(userId, ev);
+        }
+    }
+
+    /**
+     * 이 노드에서 전송 (다른 노드에서 넘어온 이벤트도 여기로)
+     */
+    public void deliverLocal(int userId, String ev) {
+        ClientHandler h = onlineUsers.get(userId);
+        if(h!=null) {
+            h.sendMessage(ev);
+            return;
+        }
+        if(!sessions.buffer(userId, ev)) {
+            // buffer 도중 resume이 끝났을 수 있음 -> 한 번 더 확인
+            h = onlineUsers.get(userId);
+            if(h!=null) h.sendMessage(ev);
+        }
+    }
+
+    /**
+     * 방 주인에게 요청 (클러스터 모드에서 주인이 다른 노드면 그 노드로 넘기고 결과를 기다림)
+     * @return 결과 (실패 시 null)
+     */
+    private JSONObject callRoomOwner(int roomId, String kind, JSONObject args) throws Exception {
+        if(cluster!=null) {
+            int owner = cluster.ownerOf(roomId);
+            if(owner!=cluster.getNodeId()) {
+                sequencer.forget(roomId); // 다시 맡게 되면 DB에서 이어받음
+                return cluster.callOwner(owner, kind, args);
+            }
+        }
+        return handleOwnerCall(kind, args).get(OWNER_CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 이 노드가 방 주인일 때 처리 (다른 노드에서 넘어온 요청도 여기로)
+     */
+    public CompletableFuture<JSONObject> handleOwnerCall(String kind, JSONObject args) {
+        int roomId = args.optInt("room_id", -1); // inbox_drain은 방과 무관
+        switch(kind) {
+            case "post":
+                return sequencer.submit(roomId, () -> {
+                    int senderId = args.getInt("sender_id");
+                    String msg = args.getString("message");
+                    typing.clear(roomId, senderId);
+                    JSONObject m = sequencer.store(roomId, senderId, msg);
+                    if(m!=null) {
+                        // 주인 스레드에서 fan-out -> 방 안에서는 seq 순서대로 나감
+                        // (연결별 보내기 큐에 넣기만 함 -> 안 읽는 클라이언트가 있어도 주인 스레드는 막히지 않음)
+                        broadcastMessageToRoom(roomId, senderId, m.getInt("id"), m.getLong("seq"), m.getLong("timestamp"), msg);
+                    }
+                    return m;
+                });
+            case "vote":
+                return CompletableFuture.completedFuture(
+                    polls.vote(args.getInt("poll_id"), roomId, args.getInt("user_id"), args.getInt("option")));
+            case "poll_results":
+                return CompletableFuture.completedFuture(polls.results(args.getInt("poll_id"), roomId));
+            case "game_start": {
+                // 참가자 = 지금 방 멤버
+                List<Integer> players = new ArrayList<>(members.getMembers(roomId));
+                return CompletableFuture.completedFuture(games.start(roomId, args.getString("game"), players));
+            }
+            case "game_input":
+                return CompletableFuture.completedFuture(
+                    games.input(roomId, args.getInt("user_id"), args.getJSONObject("input")) ? new JSONObject() : null);
+            case "game_stop":
+                return CompletableFuture.completedFuture(games.stop(roomId) ? new JSONObject() : null);
+            case "typing":
+                typing.update(roomId, args.getInt("user_id"), args.getBoolean("start"));
+                return CompletableFuture.completedFuture(new JSONObject());
+            case "inbox_drain":
+                return CompletableFuture.completedFuture(inbox.drain(args.getInt("user_id")));
+            default:
+                return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * 메시지 전송 (방 주인이 seq/timestamp를 매기고 저장 + fan-out)
+     * @return {id, seq, timestamp} 또는 null (저장 실패)
+     */
+    public JSONObject postMessage(int roomId, int senderId, String msg) throws Exception {
+        JSONObject args = new JSONObject();
+        args.put("room_id", roomId);
+        args.put("sender_id", senderId);
+        args.put("message", msg);
+        return callRoomOwner(roomId, "post", args);
+    }
+
+    /**
+     * 투표 (집계는 방 주인이 가짐)
+     * @return 결과 스냅샷 (잘못된 투표/선택지면 null)
+     */
+    public JSONObject vote(int roomId, int pollId, int userId, int option) throws Exception {
+        JSONObject args = new JSONObject();
+        args.put("room_id", roomId);
+        args.put("poll_id", pollId);
+        args.put("user_id", userId);
+        args.put("option", option);
+        return callRoomOwner(roomId, "vote", args);
+    }
+
+    public JSONObject pollResults(int roomId, int pollId) throws Exception {
+        JSONObject args = new JSONObject();
+        args.put("room_id", roomId);
+        args.put("poll_id", pollId);
+        return callRoomOwner(roomId, "poll_results", args);
+    }
+
+    /**
+     * 미니게임 (세션은 방 주인에서 돌아감)
+     * @return 시작 상태 (이미 진행 중이거나 모르는 게임이면 null)
+     */
+    public JSONObject startGame(int roomId, String game) throws Exception {
+        JSONObject args = new JSONObject();
+        args.put("room_id", roomId);
+        args.put("game", game);
+        return callRoomOwner(roomId, "game_start", args);
+    }
+
+    public boolean gameInput(int roomId, int userId, JSONObject input) throws Exception {
+        JSONObject args = new JSONObject();
+        args.put("room_id", roomId);
+        args.put("user_id", userId);
+        args.put("input", input);
+        return callRoomOwner(roomId, "game_input", args)!=null;
+    }
+
+    public boolean stopGame(int roomId) throws Exception {
+        JSONObject args = new JSONObject();
+        args.put("room_id", roomId);
+        return callRoomOwner(roomId, "game_stop", args)!=null;
+    }
+
+    /**
+     * 입력 중 표시 (throttle 통과한 것만 방 주인으로)
+     */
+    public void setTyping(int roomId, int userId, boolean start) throws Exception {
+        if(!typing.shouldForward(roomId, userId, start)) return;
+        JSONObject args = new JSONObject();
+        args.put("room_id", roomId);
+        args.put("user_id", userId);
+        args.put("start", start);
+        callRoomOwner(roomId, "typing", args);
+    }
+
+    /**
+     * 오프라인 동안 쌓인 메시지 꺼내기 (로그인 때 1번)
+     * - 클러스터 모드면 메시지를 fan-out한 방 주인 노드마다 쌓여 있으므로 연결된 노드 전부에서
+     * @return {messages:[...], overflow_rooms:[...]}
+     */
+    public JSONObject drainOfflineMessages(int userId) {
+        JSONObject local = inbox.drain(userId);
+        List<Integer> ids = new ArrayList<>();
+        Set<Integer> overflow = new LinkedHashSet<>();
+        collectInbox(local, ids, overflow);
+        if(cluster!=null) {
+            JSONObject args = new JSONObject();
+            args.put("user_id", userId);
+            for(int node : cluster.upPeers()) {
+                try {
+                    collectInbox(cluster.callOwner(node, "inbox_drain", args), ids, overflow);
+                } catch(Exception e) {
+                    // 못 꺼낸 노드 몫은 다음 로그인 때 (그 사이 메시지는 history로 볼 수 있음)
+                    System.out.println("inbox_drain to node "+node+" failed: "+e);
+                }
+            }
+        }
+        JSONObject data = new JSONObject();
+        data.put("messages", dbManager.getMessagesByIds(ids));
+        data.put("overflow_rooms", new JSONArray(overflow));
+        return data;
+    }
+
+    private static void collectInbox(JSONObject box, List<Integer> ids, Set<Integer> overflow) {
+        if(box==null) return;
+        JSONArray arr = box.getJSONArray("ids");
+        for(int i=0; i<arr.length(); i++) ids.add(arr.getInt(i));
+        JSONArray of = box.getJSONArray("overflow_rooms");
+        for(int i=0; i<of.length(); i++) overflow.add(of.getInt(i));
     }
 
     /**
      * 특정 방에 메시지 broadcast
+     * - 접속 안 한 멤버(유예시간도 지남)는 받을 곳이 없으므로 수신함에 메시지 ID만
      */
-    public void broadcastMessageToRoom(int roomId, int senderId, String msg) {
+    private void broadcastMessageToRoom(int roomId, int senderId, int messageId, long seq, long timestamp, String msg) {
+        String senderNick = members.getNickname(senderId);
+
+        for(int uid : members.getMembers(roomId)) {
+            if(uid!=senderId && !isUserOnline(uid) && !sessions.isInGrace(uid)) {
+                inbox.add(uid, roomId, messageId);
+            }
+        }
+
+        JSONObject data = new JSONObject();
+        data.put("id", messageId);
+        data.put("seq", seq);
+        data.put("room_id", roomId);
+        data.put("sender_id", senderId);
+        data.put("sender_nickname", senderNick);
+        data.put("message", msg);
+        data.put("timestamp", timestamp);
+
+        sendToRoom(roomId, MessageProtocol.createEvent("new_message", data));
+    }
+
+    /**
+     * 방 멤버 전체에게 이벤트 (멤버는 캐시에서, 다른 노드 멤버는 노드별로 모아서 한 프레임)
+     */
+    public void sendToRoom(int roomId, String ev) {
+        sendToUsers(members.getMembers(roomId), ev);
+    }
+
+    /**
+     * 여러 유저에게 같은 이벤트 (다른 노드 유저는 노드별로 모아서 한 프레임)
+     */
+    public void sendToUsers(Collection<Integer> userIds, String ev) {
         try {
-            String senderNick = dbManager.getNicknameByUserId(senderId);
-            JSONArray members = dbManager.getMembersOfRoom(roomId);
-
-            JSONObject data = new JSONObject();
-            data.put("room_id", roomId);
-            data.put("sender_id", senderId);
-            data.put("sender_nickname", senderNick);
-            data.put("message", msg);
-            data.put("timestamp", System.currentTimeMillis());
-
-            String ev = MessageProtocol.createEvent("new_message", data);
-
-            // 멤버에게 전송
-            for(int i=0; i<members.length(); i++){
-                int uid = members.getJSONObject(i).getInt("user_id");
-                if(onlineUsers.containsKey(uid)) {
-                    onlineUsers.get(uid).sendMessage(ev);
+            Map<Integer, List<Integer>> remote = new HashMap<>();
+            for(int uid : userIds){
+                for(int node : remoteNodes(uid)) {
+                    remote.computeIfAbsent(node, n -> new ArrayList<>()).add(uid);
+                }
+                if(isReachable(uid)) {
+                    deliverLocal(uid, ev);
                 }
             }
+            for(Map.Entry<Integer, List<Integer>> e : remote.entrySet()) {
+                cluster.deliver(e.getKey(), e.getValue(), ev);
+            }
         } catch(Exception e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * 방 목록 갱신 push (chat_rooms_updated)
+     * 목록 변경 delta push (room_added, room_removed, member_left, friend_added, ...)
+     * - ListVersions가 버전을 붙이고 최근 변경분을 보관
      */
-    public void pushChatRoomsUpdated(int userId) {
-        if(onlineUsers.containsKey(userId)) {
-            JSONArray rooms = dbManager.getChatRoomsForUser(userId);
-            JSONObject data = new JSONObject();
-            data.put("rooms", rooms);
-            String msg = MessageProtocol.createEvent("chat_rooms_updated", data);
-            onlineUsers.get(userId).sendMessage(msg);
+    public void pushDelta(int userId, String list, String type, JSONObject data) {
+        // 다른 노드 유저면 버전은 그 노드에서 매김
+        Set<Integer> nodes = remoteNodes(userId);
+        for(int node : nodes) {
+            cluster.forwardDelta(node, userId, list, type, data);
+        }
+        if(nodes.isEmpty() || onlineUsers.containsKey(userId)) {
+            pushDeltaLocal(userId, list, type, data);
         }
     }
 
+    public void pushDeltaLocal(int userId, String list, String type, JSONObject data) {
+        listVersions.publish(userId, list, type, data, ev -> deliverLocal(userId, ev));
+    }
+
     /**
-     * 친구 목록 갱신 push
+     * 여러 유저에게 같은 delta push (payload는 한 번만 만들고 유저별 버전만 다름)
      */
-    public void pushFriendListUpdated(int userId) {
-        if(onlineUsers.containsKey(userId)) {
-            JSONArray flist = dbManager.getFriendList(userId);
-            JSONObject data = new JSONObject();
-            data.put("friends", flist);
-            String ev = MessageProtocol.createEvent("friend_list_updated", data);
-            onlineUsers.get(userId).sendMessage(ev);
+    public void pushDelta(Collection<Integer> userIds, String list, String type, JSONObject data) {
+        for(int uid : userIds) {
+            pushDelta(uid, list, type, new JSONObject(data, JSONObject.getNames(data)));
         }
     }
 
+    // ------------------------------------------------
+    // 비동기 알림 (EventBus 경유, 요청 스레드는 등록만 하고 바로 반환)
+    // ------------------------------------------------
+
     /**
-     * 친구 요청 목록 갱신 push
+     * 새 방 -> 참가자들에게 room_added (방 정보 조회 1회)
      */
-    public void pushFriendRequestListUpdated(int userId) {
-        if(onlineUsers.containsKey(userId)) {
-            JSONArray reqs = dbManager.getPendingFriendRequests(userId);
-            JSONObject data = new JSONObject();
-            data.put("requests", reqs);
-            String ev = MessageProtocol.createEvent("friend_request_list_updated", data);
-            onlineUsers.get(userId).sendMessage(ev);
-        }
+    public void notifyRoomAdded(int roomId) {
+        eventBus.publish("room_added:"+roomId, roomId, ids -> {
+            JSONObject room = dbManager.getChatRoomInfo(roomId);
+            if(room==null) return;
+            List<Integer> members = new ArrayList<>();
+            JSONArray parts = room.getJSONArray("participants");
+            for(int i=0; i<parts.length(); i++) {
+                members.add(parts.getJSONObject(i).getInt("user_id"));
+            }
+            JSONObject delta = new JSONObject();
+            delta.put("room", room);
+            pushDelta(members, ListVersions.ROOMS, "room_added", delta);
+        });
+    }
+
+    /**
+     * 방 나가기 -> 남은 멤버에게 member_left (같은 방이면 남은 멤버 조회 1회)
+     */
+    public void notifyMemberLeft(int roomId, int userId) {
+        eventBus.publish("member_left:"+roomId, userId, leavers -> {
+            Set<Integer> remainIds = members.getMembers(roomId);
+            for(int leaver : new LinkedHashSet<>(leavers)) {
+                JSONObject delta = new JSONObject();
+                delta.put("room_id", roomId);
+                delta.put("user_id", leaver);
+                pushDelta(remainIds, ListVersions.ROOMS, "member_left", delta);
+            }
+        });
+    }
+
+    /**
+     * 친구 추가 -> targetId에게 friend_added
+     */
+    public void notifyFriendAdded(int targetId, int friendId) {
+        eventBus.publish("friend_added:"+targetId, friendId, friendIds -> {
+            for(int fid : new LinkedHashSet<>(friendIds)) {
+                JSONObject info = dbManager.getUserInfo(fid);
+                if(info==null) continue;
+                JSONObject f = new JSONObject();
+                f.put("friend_id", fid);
+                f.put("nickname", info.getString("nickname"));
+                f.put("username", info.getString("username"));
+                f.put("online", isUserOnline(fid));
+                JSONObject delta = new JSONObject();
+                delta.put("friend", f);
+                pushDelta(targetId, ListVersions.FRIENDS, "friend_added", delta);
+            }
+        });
+    }
+
+    /**
+     * 친구 요청 -> toId에게 friend_request_added
+     */
+    public void notifyFriendRequest(int toId, int requestId, int fromId) {
+        eventBus.publish("friend_request_added:"+toId, new int[]{requestId, fromId}, reqs -> {
+            for(int[] r : reqs) {
+                JSONObject from = dbManager.getUserInfo(r[1]);
+                if(from==null) continue;
+                JSONObject fr = new JSONObject();
+                fr.put("request_id", r[0]);
+                fr.put("from_user_id", r[1]);
+                fr.put("from_nickname", from.getString("nickname"));
+                fr.put("from_username", from.getString("username"));
+                JSONObject delta = new JSONObject();
+                delta.put("request", fr);
+                pushDelta(toId, ListVersions.REQUESTS, "friend_request_added", delta);
+            }
+        });
     }
 
     public static void main(String[] args) {
-        ServerMain server = new ServerMain();
+        ServerMain server = args.length>=1 ? new ServerMain(Integer.parseInt(args[0])) : new ServerMain();
+        if(args.length>=3) {
+            server.enableCluster(Integer.parseInt(args[1]), Integer.parseInt(args[2]), args.length>=4 ? args[3] : "");
+        }
         server.startServer();
     }
 }
@@ -0,0 +1,178 @@
+package server;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * SessionManager:
+ * - 로그인 시 서명된(HMAC-SHA256) 만료 토큰 발급
+ * - resume 요청의 토큰을 메모리에서만 검증 (users 테이블 조회 없음)
+ * - 연결이 끊긴 뒤 GRACE_MS 동안 그 유저에게 가는 이벤트를 보관했다가 resume 때 재전송
+ *
+ * 토큰 형식: userId.sessionId.expiresAt.signature(hex)
+ */
+public class SessionManager {
+    private static final long TOKEN_TTL_MS = 12L*60*60*1000; // 토큰 유효기간 12시간
+    private static final long GRACE_MS     = 30_000;         // 재접속 유예시간
+    private static final int  MAX_MISSED   = 200;            // 유예시간 동안 보관할 최대 이벤트 수
+
+    private final SecureRandom random = new SecureRandom();
+    private final byte[] secret = new byte[32];              // 서버 재시작 시 새로 생성
+    private final Map<Integer, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 유저별 세션 상태
+     */
+    public static class Session {
+        final int userId;
+        final long sessionId;
+        final long expiresAt;
+        final JSONObject userInfo;                  // 로그인 시 받은 프로필 (resume 응답용)
+        private long disconnectedAt = 0;            // 0이면 연결 중
+        private boolean overflowed = false;         // 보관 한도 초과 여부
+        private final ArrayDeque<String> missed = new ArrayDeque<>();
+
+        Session(int userId, long sessionId, long expiresAt, JSONObject userInfo) {
+            this.userId = userId;
+            this.sessionId = sessionId;
+            this.expiresAt = expiresAt;
+            this.userInfo = userInfo;
+        }
+
+        public JSONObject getUserInfo() {
+            return userInfo;
+        }
+
+        private boolean inGrace(long now) {
+            return disconnectedAt>0 && now-disconnectedAt<=GRACE_MS;
+        }
+    }
+
+    public SessionManager() {
+        random.nextBytes(secret);
+    }
+
+    /**
+     * 로그인 성공 시 세션 생성 + 토큰 발급 (이전 세션 토큰은 무효화)
+     */
+    public String issue(int userId, JSONObject userInfo) {
+        long sid = random.nextLong() & Long.MAX_VALUE;
+        long exp = System.currentTimeMillis() + TOKEN_TTL_MS;
+        sessions.put(userId, new Session(userId, sid, exp, userInfo));
+        String payload = userId+"."+sid+"."+exp;
+        return payload+"."+sign(payload);
+    }
+
+    /**
+     * 토큰 검증 (서명, 만료, 현재 세션 일치)
+     * @return 유효하면 Session, 아니면 null
+     */
+    public Session verify(String token) {
+        try {
+            String[] parts = token.split("\\.");
+            if(parts.length!=4) return null;
+            String payload = parts[0]+"."+parts[1]+"."+parts[2];
+            if(!MessageDigest.isEqual(sign(payload).getBytes(), parts[3].getBytes())) return null;
+            int uid  = Integer.parseInt(parts[0]);
+            long sid = Long.parseLong(parts[1]);
+            long exp = Long.parseLong(parts[2]);
+            if(exp<System.currentTimeMillis()) return null;
+            Session s = sessions.get(uid);
+            if(s==null || s.sessionId!=sid) return null;
+            return s;
+        } catch(Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 연결 종료 -> 유예시간 시작
+     */
+    public void onDisconnect(int userId) {
+        Session s = sessions.get(userId);
+        if(s==null) return;
+        synchronized(s) {
+            s.disconnectedAt = System.currentTimeMillis();
+            s.missed.clear();
+            s.overflowed = false;
+        }
+    }
+
+    /**
+     * 유예시간 중인지 (이벤트를 계산해서 보관할 가치가 있는지)
+     */
+    public boolean isInGrace(int userId) {
+        Session s = sessions.get(userId);
+        if(s==null) return false;
+        synchronized(s) {
+            return s.inGrace(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 유예시간 중이면 이벤트 보관
+     * @return 보관했으면 true
+     */
+    public boolean buffer(int userId, String event) {
+        Session s = sessions.get(userId);
+        if(s==null) return false;
+        synchronized(s) {
+            long now = System.currentTimeMillis();
+            if(!s.inGrace(now)) {
+                s.missed.clear();
+                return false;
+            }
+            if(s.missed.size()>=MAX_MISSED) {
+                s.overflowed = true;
+                s.missed.clear();
+            }
+            if(!s.overflowed) s.missed.add(event);
+            return true;
+        }
+    }
+
+    /**
+     * resume: 보관된 이벤트를 꺼내고 연결 상태로 전환
+     * - 호출자는 이 세션 객체로 synchronized 한 상태에서 응답 전송 + setUserOnline까지 마쳐야
+     *   그 사이에 들어온 이벤트가 유실/역전되지 않음
+     * - 아직 이전 소켓이 끊긴 것을 모르는 상태(disconnectedAt==0)면 그 소켓에 쓴 이벤트가 유실됐을 수 있으므로
+     *   "놓친 것 없음"이 아니라 null
+     * @return 보관된 이벤트 목록, 이전 연결이 아직 살아 있거나 유예시간이 지났거나 한도를 넘었으면 null (전체 재로딩 필요)
+     */
+    public JSONArray drainMissed(Session s) {
+        long now = System.currentTimeMillis();
+        JSONArray arr = null;
+        if(s.inGrace(now) && !s.overflowed) {
+            arr = new JSONArray();
+            for(String ev : s.missed) {
+                arr.put(new JSONObject(ev));
+            }
+        }
+        s.missed.clear();
+        s.overflowed = false;
+        s.disconnectedAt = 0;
+        return arr;
+    }
+
+    private String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            byte[] h = mac.doFinal(payload.getBytes());
+            StringBuilder sb = new StringBuilder(h.length*2);
+            for(byte b : h) {
+                sb.append(Character.forDigit((b>>4)&0x0f, 16)).append(Character.forDigit(b&0x0f, 16));
+            }
+            return sb.toString();
+        } catch(Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
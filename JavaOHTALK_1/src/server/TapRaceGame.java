@@ -0,0 +1,73 @@
+package server;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.json.JSONObject;
+
+/**
+ * TapRaceGame:
+ * - "tap" 입력 1번 = 한 칸 전진, 먼저 GOAL에 닿은 사람이 승리
+ * - tick당 한 사람의 전진은 MAX_STEP_PER_TICK까지 (매크로 연타 방지)
+ * - delta: 이번 tick에 움직인 사람의 위치만 {"p":{"userId":pos,...}}
+ */
+public class TapRaceGame implements Game {
+    private static final int GOAL = 100;
+    private static final int MAX_STEP_PER_TICK = 2;
+
+    private final Map<Integer, Integer> pos = new HashMap<>();
+    private final Map<Integer, Integer> taps = new HashMap<>();  // 이번 tick 입력 수
+    private final Set<Integer> moved = new HashSet<>();
+    private int winner = -1;
+    private long lastTick = 0;
+
+    @Override
+    public void start(Collection<Integer> players) {
+        for(int uid : players) pos.put(uid, 0);
+    }
+
+    @Override
+    public void onInput(int userId, JSONObject input) {
+        if(!pos.containsKey(userId) || winner>0) return;
+        if("tap".equals(input.optString("action"))) {
+            taps.merge(userId, 1, Integer::sum);
+        }
+    }
+
+    @Override
+    public void tick(long tick) {
+        lastTick = tick;
+        for(Map.Entry<Integer, Integer> t : taps.entrySet()) {
+            int uid = t.getKey();
+            int p = Math.min(GOAL, pos.get(uid) + Math.min(t.getValue(), MAX_STEP_PER_TICK));
+            pos.put(uid, p);
+            moved.add(uid);
+            if(p>=GOAL && winner<0) winner = uid;
+        }
+        taps.clear();
+    }
+
+    @Override
+    public JSONObject delta() {
+        if(moved.isEmpty()) return null;
+        JSONObject p = new JSONObject();
+        for(int uid : moved) p.put(String.valueOf(uid), pos.get(uid));
+        moved.clear();
+        return new JSONObject().put("p", p);
+    }
+
+    @Override
+    public JSONObject snapshot() {
+        JSONObject p = new JSONObject();
+        for(Map.Entry<Integer, Integer> e : pos.entrySet()) p.put(String.valueOf(e.getKey()), e.getValue());
+        return new JSONObject().put("game", "tap_race").put("goal", GOAL).put("p", p);
+    }
+
+    @Override
+    public JSONObject result() {
+        if(winner<0) return null;
+        return new JSONObject().put("winner", winner).put("tick", lastTick);
+    }
+}
@@ -0,0 +1,285 @@
+package server;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * ThumbnailCache:
+ * - 업로드가 끝나면 SIZES 크기 썸네일을 한 번 만들어 둠 (썸네일 스레드에서, 요청 스레드 아님)
+ * - 썸네일 ID = 원본해시@크기 (예: ab12...@256), 클라이언트는 필요할 때 파일 채널 thumb으로 받음
+ * - 메모리 LRU(MAX_MEM_BYTES) -> 디스크 LRU(MAX_DISK_BYTES) -> 없으면 그때 생성
+ * - 원본은 한 번만 decode (큰 이미지는 subsampling으로 읽어서 메모리 절약)
+ * - STATS_MS마다 hit율 출력 (요청이 있었을 때만)
+ */
+public class ThumbnailCache {
+    public static final int[] SIZES = {64, 256};     // 목록/아바타용, 채팅용
+    private static final long MAX_MEM_BYTES  = 32L*1024*1024;
+    private static final long MAX_DISK_BYTES = 256L*1024*1024;
+    private static final long MAX_PIXELS = 50_000_000; // 이보다 큰 이미지는 만들지 않음 (decompression bomb)
+    private static final long WAIT_MS = 10_000;
+    private static final long STATS_MS = 60_000;
+
+    private final FileStore store;
+    private final Path dir;
+    private final ExecutorService workers;
+    private final Map<String, CompletableFuture<Boolean>> pending = new ConcurrentHashMap<>(); // 원본해시 -> 생성 중
+    private final Set<String> notImages = ConcurrentHashMap.newKeySet(); // 이미지가 아닌 원본 (다시 decode하지 않음)
+    private final LinkedHashMap<String, byte[]> mem = new LinkedHashMap<>(16, 0.75f, true);  // id -> 썸네일
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);   // id -> 파일 크기
+    private long memBytes = 0;  // mem으로 동기화
+    private long diskBytes = 0; // disk로 동기화
+
+    private final LongAdder memHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+
+    public ThumbnailCache(FileStore store, Path dir) throws IOException {
+        this.store = store;
+        this.dir = dir;
+        Files.createDirectories(dir);
+        loadDiskIndex();
+        workers = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "thumbnail");
+            t.setDaemon(true);
+            return t;
+        });
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "thumbnail-stats");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(new Runnable() {
+            long lastTotal = 0;
+            public void run() {
+                long total = memHits.sum()+diskHits.sum()+misses.sum();
+                if(total!=lastTotal) System.out.println("[thumbnail] "+getStats());
+                lastTotal = total;
+            }
+        }, STATS_MS, STATS_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static String id(String hash, int size) {
+        return hash+"@"+size;
+    }
+
+    /**
+     * 원본해시@크기 형식이고 크기가 SIZES 중 하나인지
+     */
+    public static boolean isValidId(String id) {
+        int at = id==null ? -1 : id.indexOf('@');
+        if(at<0 || !FileStore.isValidHash(id.substring(0, at))) return false;
+        String size = id.substring(at+1);
+        for(int s : SIZES) {
+            if(size.equals(String.valueOf(s))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 업로드 직후 생성 예약 (이미 생성 중이면 그것을 기다림)
+     */
+    public CompletableFuture<Boolean> generateAsync(String hash) {
+        CompletableFuture<Boolean> f = new CompletableFuture<>();
+        CompletableFuture<Boolean> cur = pending.putIfAbsent(hash, f);
+        if(cur!=null) return cur;
+        workers.execute(() -> {
+            try {
+                f.complete(generate(hash));
+            } finally {
+                pending.remove(hash, f);
+            }
+        });
+        return f;
+    }
+
+    /**
+     * 썸네일 바이트 (메모리 -> 디스크 -> 생성)
+     * @return 원본이 없거나 이미지가 아니면 null
+     */
+    public byte[] get(String id) throws Exception {
+        synchronized(mem) {
+            byte[] b = mem.get(id);
+            if(b!=null) {
+                memHits.increment();
+                return b;
+            }
+        }
+        boolean onDisk;
+        synchronized(disk) {
+            onDisk = disk.get(id)!=null;
+        }
+        if(onDisk) {
+            diskHits.increment();
+        } else {
+            misses.increment();
+            String hash = id.substring(0, id.indexOf('@'));
+            if(notImages.contains(hash) || !store.exists(hash)) return null;
+            if(!generateAsync(hash).get(WAIT_MS, TimeUnit.MILLISECONDS)) return null;
+        }
+        byte[] b;
+        try {
+            b = Files.readAllBytes(path(id));
+        } catch(IOException e) {
+            return null; // 그 사이 디스크에서 밀려남
+        }
+        putMem(id, b);
+        return b;
+    }
+
+    public String getStats() {
+        long m = memHits.sum(), d = diskHits.sum(), x = misses.sum();
+        long total = Math.max(1, m+d+x);
+        synchronized(mem) {
+            synchronized(disk) {
+                return "memHit="+(m*100/total)+"% diskHit="+(d*100/total)+"% miss="+(x*100/total)+"%"
+                     + " requests="+(m+d+x)+" generated="+generated.sum()
+                     + " mem="+mem.size()+"/"+(memBytes>>10)+"KB disk="+disk.size()+"/"+(diskBytes>>10)+"KB";
+            }
+        }
+    }
+
+    private boolean generate(String hash) {
+        try {
+            BufferedImage src = decode(store.path(hash));
+            if(src==null) { // 이미지가 아님
+                notImages.add(hash);
+                return false;
+            }
+            for(int size : SIZES) {
+                byte[] b = encode(scale(src, size));
+                String id = id(hash, size);
+                Path p = path(id);
+                Files.createDirectories(p.getParent());
+                Files.write(p, b);
+                putDisk(id, b.length);
+            }
+            generated.increment();
+            return true;
+        } catch(Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 원본 decode (가장 큰 썸네일의 2배 정도로 subsampling해서 읽음)
+     */
+    private static BufferedImage decode(Path p) throws IOException {
+        try(ImageInputStream in = ImageIO.createImageInputStream(p.toFile())) {
+            if(in==null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if(!readers.hasNext()) return null;
+            ImageReader r = readers.next();
+            try {
+                r.setInput(in, true, true);
+                int w = r.getWidth(0), h = r.getHeight(0);
+                if((long)w*h>MAX_PIXELS) return null;
+                ImageReadParam param = r.getDefaultReadParam();
+                int sub = Math.max(1, Math.max(w, h)/(SIZES[SIZES.length-1]*2));
+                param.setSourceSubsampling(sub, sub, 0, 0);
+                return r.read(0, param);
+            } finally {
+                r.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage src, int size) {
+        double k = Math.min(1.0, (double)size/Math.max(src.getWidth(), src.getHeight()));
+        int w = Math.max(1, (int)Math.round(src.getWidth()*k));
+        int h = Math.max(1, (int)Math.round(src.getHeight()*k));
+        boolean alpha = src.getColorModel().hasAlpha();
+        BufferedImage dst = new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = dst.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(src, 0, 0, w, h, null);
+        g.dispose();
+        return dst;
+    }
+
+    /**
+     * 투명도가 있으면 PNG, 아니면 JPEG
+     */
+    private static byte[] encode(BufferedImage img) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(img, img.getColorModel().hasAlpha() ? "png" : "jpg", out);
+        return out.toByteArray();
+    }
+
+    private Path path(String id) {
+        return dir.resolve(id.substring(0, 2)).resolve(id);
+    }
+
+    private void putMem(String id, byte[] b) {
+        synchronized(mem) {
+            if(mem.put(id, b)==null) memBytes += b.length;
+            for(Iterator<byte[]> it = mem.values().iterator(); memBytes>MAX_MEM_BYTES && it.hasNext(); ) {
+                memBytes -= it.next().length;
+                it.remove();
+            }
+        }
+    }
+
+    private void putDisk(String id, long len) {
+        List<String> evicted = new ArrayList<>();
+        synchronized(disk) {
+            Long old = disk.put(id, len);
+            diskBytes += len-(old==null ? 0 : old);
+            for(Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator(); diskBytes>MAX_DISK_BYTES && it.hasNext(); ) {
+                Map.Entry<String, Long> e = it.next();
+                diskBytes -= e.getValue();
+                evicted.add(e.getKey());
+                it.remove();
+            }
+        }
+        for(String e : evicted) {
+            try { Files.deleteIfExists(path(e)); } catch(IOException ignore) {}
+        }
+    }
+
+    /**
+     * 재시작 때 디스크에 있는 썸네일을 수정 시각 순으로 LRU에 다시 등록
+     */
+    private void loadDiskIndex() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try(Stream<Path> s = Files.walk(dir)) {
+            s.filter(Files::isRegularFile).forEach(files::add);
+        }
+        files.sort((a, b) -> {
+            try {
+                return Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+            } catch(IOException e) {
+                return 0;
+            }
+        });
+        for(Path p : files) {
+            String id = p.getFileName().toString();
+            if(isValidId(id)) putDisk(id, Files.size(p));
+        }
+    }
+}
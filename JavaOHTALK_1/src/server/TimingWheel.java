@@ -0,0 +1,136 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * TimingWheel:
+ * - 계층형 타이밍 휠 (LEVELS단, 단마다 SLOTS칸)
+ *   0단 한 칸 = TICK_MS, 1단 한 칸 = 0단 한 바퀴, ...
+ * - 등록 O(1): 남은 시간에 맞는 단의 칸에 넣기만 함
+ * - 아래 단이 한 바퀴 돌 때마다 윗단 한 칸을 아래로 내림 (cascade)
+ *   -> 항목마다 최대 LEVELS번 옮겨지고, 0단 칸에 오면 그 tick에 실행
+ * - 스레드는 tick 하나뿐 (항목별 타이머 없음)
+ * - 최상단 범위(약 19일)보다 먼 항목은 최상단에서 한 바퀴씩 다시 넣으며 기다림
+ */
+public class TimingWheel<T> {
+    public static final long TICK_MS = 100;
+    private static final int BITS = 6;
+    private static final int SLOTS = 1<<BITS;
+    private static final int MASK = SLOTS-1;
+    private static final int LEVELS = 4;
+
+    private static class Entry<T> {
+        final long dueTick;
+        final T item;
+        Entry(long dueTick, T item) {
+            this.dueTick = dueTick;
+            this.item = item;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Entry<T>>[][] wheels = new ArrayDeque[LEVELS][SLOTS];
+    private final Consumer<T> onFire;
+    private final ScheduledExecutorService ticker;
+    private long currentTick; // 다음에 처리할 tick (epoch ms / TICK_MS)
+    private int size = 0;
+
+    /**
+     * @param onFire 시간이 된 항목 처리 (tick 스레드에서 호출 -> 오래 걸리는 일은 넘길 것)
+     */
+    public TimingWheel(String name, Consumer<T> onFire) {
+        this.onFire = onFire;
+        for(int l=0; l<LEVELS; l++) {
+            for(int s=0; s<SLOTS; s++) wheels[l][s] = new ArrayDeque<>();
+        }
+        currentTick = System.currentTimeMillis()/TICK_MS;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::advance, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * dueAt(epoch ms)에 item 실행 (이미 지났으면 다음 tick)
+     */
+    public synchronized void add(T item, long dueAt) {
+        long due = Math.max((dueAt+TICK_MS-1)/TICK_MS, currentTick);
+        place(new Entry<>(due, item));
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public void shutdown() {
+        ticker.shutdown();
+    }
+
+    private void place(Entry<T> e) {
+        long delta = e.dueTick - currentTick;
+        if(delta<0) delta = 0;
+        for(int l=0; l<LEVELS; l++) {
+            if(delta < (1L<<(BITS*(l+1)))) {
+                int slot = (int)((e.dueTick>>(BITS*l)) & MASK);
+                if(l==0 && e.dueTick<currentTick) slot = (int)(currentTick & MASK); // 늦은 항목 -> 지금 칸
+                wheels[l][slot].add(e);
+                return;
+            }
+        }
+        // 최상단보다 멂 -> 최상단의 마지막 칸 (한 바퀴 뒤 cascade 때 다시 자리 찾음)
+        int top = LEVELS-1;
+        int slot = (int)(((currentTick>>(BITS*top))-1) & MASK);
+        wheels[top][slot].add(e);
+    }
+
+    /**
+     * 현재 시각까지 밀린 tick 처리
+     */
+    private void advance() {
+        try {
+            long nowTick = System.currentTimeMillis()/TICK_MS;
+            while(true) {
+                List<T> due = new ArrayList<>();
+                synchronized(this) {
+                    if(currentTick>nowTick) break;
+                    cascade();
+                    ArrayDeque<Entry<T>> slot = wheels[0][(int)(currentTick & MASK)];
+                    for(Entry<T> e; (e=slot.poll())!=null; ) {
+                        due.add(e.item);
+                    }
+                    size -= due.size();
+                    currentTick++;
+                }
+                for(T item : due) {
+                    try {
+                        onFire.accept(item);
+                    } catch(Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 아래 단 인덱스가 0으로 돌아온 단마다 윗단 현재 칸을 풀어서 다시 배치
+    private void cascade() {
+        for(int l=1; l<LEVELS; l++) {
+            if(((currentTick>>(BITS*(l-1))) & MASK) != 0) return;
+            ArrayDeque<Entry<T>> slot = wheels[l][(int)((currentTick>>(BITS*l)) & MASK)];
+            List<Entry<T>> moved = new ArrayList<>(slot);
+            slot.clear();
+            for(Entry<T> e : moved) place(e);
+        }
+    }
+}
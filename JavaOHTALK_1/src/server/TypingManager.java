@@ -0,0 +1,107 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * TypingManager:
+ * - "입력 중" 표시 (DB에 저장하지 않음)
+ * - 받는 노드에서 보낸 사람별로 throttle: typing_start는 THROTTLE_MS에 1번만 방 주인으로 넘김
+ * - 방 주인은 방별 입력 중 목록을 갖고, INTERVAL_MS마다 바뀐 방에만 typing {room_id, user_ids, nicknames} 1번
+ *   (키 입력마다 멤버에게 중계하지 않음)
+ * - typing_stop이 안 와도 TYPING_TTL_MS 뒤에 빠짐, 메시지를 보내면 바로 빠짐
+ */
+public class TypingManager {
+    private static final long THROTTLE_MS   = 1000;
+    private static final long INTERVAL_MS   = 500;
+    private static final long TYPING_TTL_MS = 5000;
+
+    private final ServerMain server;
+    private final Map<Long, Long> lastForwarded = new ConcurrentHashMap<>();          // room<<32|user -> 마지막 start 전달 시각
+    private final Map<Integer, Map<Integer, Long>> typing = new ConcurrentHashMap<>(); // roomId -> (userId -> 만료 시각)
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, String> lastSent = new ConcurrentHashMap<>();           // roomId -> 마지막으로 보낸 목록
+
+    public TypingManager(ServerMain server) {
+        this.server = server;
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "typing");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::flush, INTERVAL_MS, INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 받는 노드: 방 주인으로 넘길지 (start는 THROTTLE_MS마다 1번, stop은 start를 넘긴 적 있을 때만)
+     */
+    public boolean shouldForward(int roomId, int userId, boolean start) {
+        long key = ((long)roomId<<32) | (userId & 0xffffffffL);
+        long now = System.currentTimeMillis();
+        if(!start) return lastForwarded.remove(key)!=null;
+        Long last = lastForwarded.get(key);
+        if(last!=null && now-last<THROTTLE_MS) return false;
+        lastForwarded.put(key, now);
+        return true;
+    }
+
+    /**
+     * 방 주인: 입력 중 상태 변경
+     */
+    public void update(int roomId, int userId, boolean start) {
+        Map<Integer, Long> m = typing.computeIfAbsent(roomId, k -> new ConcurrentHashMap<>());
+        if(start) {
+            m.put(userId, System.currentTimeMillis()+TYPING_TTL_MS);
+        } else {
+            m.remove(userId);
+        }
+        dirty.add(roomId);
+    }
+
+    /**
+     * 방 주인: 메시지를 보냈으면 입력 중 해제
+     */
+    public void clear(int roomId, int userId) {
+        Map<Integer, Long> m = typing.get(roomId);
+        if(m!=null && m.remove(userId)!=null) dirty.add(roomId);
+    }
+
+    private void flush() {
+        try {
+            long now = System.currentTimeMillis();
+            // 만료된 것 정리 (stop 없이 끊긴 경우)
+            for(Map.Entry<Integer, Map<Integer, Long>> e : typing.entrySet()) {
+                if(e.getValue().values().removeIf(exp -> exp<now)) dirty.add(e.getKey());
+            }
+            lastForwarded.values().removeIf(t -> now-t>TYPING_TTL_MS);
+
+            for(Iterator<Integer> it = dirty.iterator(); it.hasNext(); ) {
+                int roomId = it.next();
+                it.remove();
+                Map<Integer, Long> m = typing.get(roomId);
+                List<Integer> users = m==null ? new ArrayList<>() : new ArrayList<>(m.keySet());
+                String key = users.toString();
+                if(key.equals(lastSent.getOrDefault(roomId, "[]"))) continue; // 바뀐 게 없음
+                if(users.isEmpty()) lastSent.remove(roomId); else lastSent.put(roomId, key);
+                JSONArray nicks = new JSONArray();
+                for(int uid : users) nicks.put(server.getMembers().getNickname(uid));
+                JSONObject data = new JSONObject();
+                data.put("room_id", roomId);
+                data.put("user_ids", new JSONArray(users));
+                data.put("nicknames", nicks);
+                server.sendToRoom(roomId, MessageProtocol.createEvent("typing", data));
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+}